@@ -0,0 +1,456 @@
+package com.itns.springsecurityclient.benchmark;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.itns.springsecurityclient.SpringSecurityClientApplication;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Boots the whole app against an in-memory H2 database in MySQL mode, the MockAuthorizationServer
+ * as the OIDC issuer, the MockResourceServer and a GreenMail SMTP server, then starts user
+ * journeys at a fixed rate and reports throughput and latency percentiles per endpoint:
+ *
+ * - register: POST /register, wait for the verification email, GET /verifyRegistration.
+ * - reset: a registered and verified user posts /resetPassword, then /savePassword with its link.
+ * - users: a new browser session logs in through the authorization code flow, following every
+ *   redirect between the app and the issuer, then calls GET /api/users a few times.
+ *
+ * The rate is an open model: journeys are started on schedule whether the earlier ones have
+ * finished or not, so a saturated app shows up as growing latencies rather than a lower rate.
+ * Run with: mvn -Pbenchmark test -Dtest=LoadHarnessBenchmark
+ *   -Dload.rate=20          journeys started per second
+ *   -Dload.duration=PT30S   how long journeys are started for, after a warm-up of WARM_UP_JOURNEYS
+ *   -Dload.mix=register:1,reset:1,users:2   relative weight of each journey
+ */
+@Tag("benchmark")
+class LoadHarnessBenchmark {
+
+	private static final int RATE = Integer.getInteger("load.rate", 20);
+
+	private static final Duration DURATION = Duration.parse(System.getProperty("load.duration", "PT30S"));
+
+	private static final String MIX = System.getProperty("load.mix", "register:1,reset:1,users:2");
+
+	private static final int WARM_UP_JOURNEYS = 20;
+
+	private static final int USERS_CALLS_PER_LOGIN = 5;
+
+	private static final long DOWNSTREAM_LATENCY_MILLIS = 50;
+
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+	private static final Pattern TOKEN = Pattern.compile("token=([A-Za-z0-9_.-]+)");
+
+	@Test
+	void runMixedLoad() throws Exception {
+		GreenMail mailServer = new GreenMail(ServerSetupTest.SMTP);
+		mailServer.start();
+		try (MockAuthorizationServer issuer = new MockAuthorizationServer(0, Duration.ofHours(1));
+			 MockResourceServer resourceServer = new MockResourceServer(0, DOWNSTREAM_LATENCY_MILLIS);
+			 ConfigurableApplicationContext app = startApplication("load", issuer, resourceServer)) {
+			try (Journeys journeys = new Journeys(baseUrl(app), mailServer)) {
+				Stats warmUp = new Stats();
+				for (int i = 0; i < WARM_UP_JOURNEYS; i++) {
+					CompletableFuture.allOf(journeys.register(warmUp), journeys.reset(warmUp), journeys.users(warmUp))
+							.get(1, TimeUnit.MINUTES);
+				}
+				warmUp.print("warm-up", Duration.ZERO);
+
+				Stats stats = new Stats();
+				long elapsedNanos = new LoadGenerator(RATE, parseMix(journeys)).run(DURATION, stats);
+				stats.print(RATE + " journeys/s, mix " + MIX, Duration.ofNanos(elapsedNanos));
+			}
+		} finally {
+			mailServer.stop();
+		}
+	}
+
+	/**
+	 * It starts the app against the stubs, with the GreenMail server on ServerSetupTest.SMTP.
+	 *
+	 * @param database The name of the in-memory database, one per app started.
+	 * @param extraArgs More properties, as --name=value arguments.
+	 */
+	static ConfigurableApplicationContext startApplication(String database, MockAuthorizationServer issuer,
+			MockResourceServer resourceServer, String... extraArgs) {
+		List<String> args = new ArrayList<>(List.of(
+				"--server.port=0",
+				// NON_KEYWORDS: the user table is named after a reserved word of H2.
+				"--spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+						+ "NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1",
+				"--spring.datasource.driver-class-name=org.h2.Driver",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=",
+				"--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+				"--spring.jpa.show-sql=false",
+				"--spring.mail.host=127.0.0.1",
+				"--spring.mail.port=" + ServerSetupTest.SMTP.getPort(),
+				"--spring.security.oauth2.client.provider.spring.issuer-uri=" + issuer.getIssuer(),
+				"--spring.security.oauth2.client.registration.api-client-oidc.redirect-uri="
+						+ "{baseUrl}/login/oauth2/code/{registrationId}",
+				"--spring.security.oauth2.client.registration.api-client-authorization-code.redirect-uri="
+						+ "{baseUrl}/authorized",
+				"--app.resource-server.users-uri=http://127.0.0.1:" + resourceServer.getPort() + "/api/users",
+				// Every test user has its own address, but they would all share a rate otherwise.
+				"--app.mail.per-domain-rate=100000",
+				"--app.rate-limit.enabled=false"));
+		args.addAll(List.of(extraArgs));
+		return new SpringApplicationBuilder(SpringSecurityClientApplication.class)
+				.initializers(context -> context.getBeanFactory()
+						.registerSingleton("benchmarkExcludeFilter", new BenchmarkExcludeFilter()))
+				// Arguments, so that they take precedence over application.yml.
+				.run(args.toArray(new String[0]));
+	}
+
+	static String baseUrl(ConfigurableApplicationContext app) {
+		return "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+	}
+
+	private static Map<Function<Stats, CompletableFuture<?>>, Integer> parseMix(Journeys journeys) {
+		Map<Function<Stats, CompletableFuture<?>>, Integer> mix = new LinkedHashMap<>();
+		for (String entry : MIX.split(",")) {
+			String[] nameAndWeight = entry.trim().split(":");
+			int weight = Integer.parseInt(nameAndWeight[1]);
+			switch (nameAndWeight[0]) {
+				case "register":
+					mix.put(journeys::register, weight);
+					break;
+				case "reset":
+					mix.put(journeys::reset, weight);
+					break;
+				case "users":
+					mix.put(journeys::users, weight);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown journey " + nameAndWeight[0] + " in load.mix");
+			}
+		}
+		return mix;
+	}
+
+	/**
+	 * Keeps the component scan of the app away from the configurations of the other benchmarks,
+	 * which share its package, and from those nested in the unit tests, which are on the same
+	 * classpath.
+	 */
+	static class BenchmarkExcludeFilter extends TypeExcludeFilter {
+
+		@Override
+		public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+			String className = metadataReader.getClassMetadata().getClassName();
+			return className.startsWith(LoadHarnessBenchmark.class.getPackageName() + ".")
+					|| className.contains("Tests$");
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj != null && obj.getClass() == getClass();
+		}
+
+		@Override
+		public int hashCode() {
+			return getClass().hashCode();
+		}
+	}
+
+	/**
+	 * Starts a journey picked by weight every 1/rate second and waits for the started ones to end.
+	 */
+	static class LoadGenerator {
+
+		private final long periodNanos;
+
+		private final List<Function<Stats, CompletableFuture<?>>> weighted = new ArrayList<>();
+
+		LoadGenerator(int rate, Map<Function<Stats, CompletableFuture<?>>, Integer> mix) {
+			this.periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+			mix.forEach((journey, weight) -> {
+				for (int i = 0; i < weight; i++) {
+					weighted.add(journey);
+				}
+			});
+		}
+
+		long run(Duration duration, Stats stats) throws InterruptedException {
+			List<CompletableFuture<?>> started = new ArrayList<>();
+			ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+			long start = System.nanoTime();
+			try {
+				scheduler.scheduleAtFixedRate(() -> {
+					Function<Stats, CompletableFuture<?>> journey
+							= weighted.get(ThreadLocalRandom.current().nextInt(weighted.size()));
+					synchronized (started) {
+						started.add(journey.apply(stats));
+					}
+				}, 0, periodNanos, TimeUnit.NANOSECONDS);
+				Thread.sleep(duration.toMillis());
+			} finally {
+				scheduler.shutdownNow();
+				scheduler.awaitTermination(1, TimeUnit.SECONDS);
+			}
+			CompletableFuture<?>[] all;
+			synchronized (started) {
+				all = started.toArray(new CompletableFuture<?>[0]);
+			}
+			try {
+				CompletableFuture.allOf(all).get(2, TimeUnit.MINUTES);
+			} catch (Exception e) {
+				// Failed journeys are already counted in the stats.
+			}
+			return System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * The user journeys. Each one is a chain of non-blocking requests, so thousands can be in
+	 * flight on a few threads. A browser session is a JSESSIONID cookie kept by the journey.
+	 */
+	static class Journeys implements AutoCloseable {
+
+		private final String baseUrl;
+
+		private final URI appUri;
+
+		private final GreenMail mailServer;
+
+		private final HttpClient client = HttpClient.newBuilder()
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.connectTimeout(Duration.ofSeconds(5))
+				.build();
+
+		private final ScheduledExecutorService mailPoller = Executors.newSingleThreadScheduledExecutor();
+
+		private final AtomicLong users = new AtomicLong();
+
+		Journeys(String baseUrl, GreenMail mailServer) {
+			this.baseUrl = baseUrl;
+			this.appUri = URI.create(baseUrl);
+			this.mailServer = mailServer;
+		}
+
+		CompletableFuture<?> register(Stats stats) {
+			return registerAndVerify(stats, "user" + users.incrementAndGet() + "@load.test");
+		}
+
+		CompletableFuture<?> reset(Stats stats) {
+			String email = "user" + users.incrementAndGet() + "@load.test";
+			Session session = new Session();
+			return registerAndVerify(stats, email)
+					.thenCompose(ignored -> stats.time("POST /resetPassword",
+							send(session, post("/resetPassword", "{\"email\":\"" + email + "\"}"))))
+					.thenCompose(response -> stats.time("POST /savePassword",
+							send(session, post("/savePassword?token=" + token(response.body()),
+									"{\"email\":\"" + email + "\",\"newPassword\":\"changed-Secret1\"}"))));
+		}
+
+		CompletableFuture<?> users(Stats stats) {
+			CompletableFuture<Session> journey = login(stats);
+			for (int i = 1; i < USERS_CALLS_PER_LOGIN; i++) {
+				journey = journey.thenCompose(session -> callUsers(session, stats).thenApply(ignored -> session));
+			}
+			return journey;
+		}
+
+		// A new browser session logged in through the authorization code flow; the flow ends on /api/users.
+		CompletableFuture<Session> login(Stats stats) {
+			Session session = new Session();
+			return stats.time("login (authorization code flow)",
+					followRedirects(session, URI.create(baseUrl + "/api/users"), 0))
+					.thenApply(ignored -> session);
+		}
+
+		CompletableFuture<?> callUsers(Session session, Stats stats) {
+			return stats.time("GET /api/users", send(session, get(baseUrl + "/api/users")));
+		}
+
+		// Only the POST /register of a new user, whose email is not waited for.
+		CompletableFuture<?> registerOnly(Stats stats) {
+			return registration(stats, new Session(), "user" + users.incrementAndGet() + "@load.test");
+		}
+
+		private CompletableFuture<?> registerAndVerify(Stats stats, String email) {
+			Session session = new Session();
+			return registration(stats, session, email)
+					.thenCompose(ignored -> stats.time("verification email", verificationEmail(email)))
+					.thenCompose(token -> stats.time("GET /verifyRegistration",
+							send(session, get(baseUrl + "/verifyRegistration?token=" + token))));
+		}
+
+		private CompletableFuture<HttpResponse<String>> registration(Stats stats, Session session, String email) {
+			String registration = "{\"firstName\":\"Load\",\"lastName\":\"Test\",\"email\":\"" + email
+					+ "\",\"password\":\"Secret1\",\"matchingPassword\":\"Secret1\"}";
+			return stats.time("POST /register", send(session, post("/register", registration)));
+		}
+
+		// Polls the SMTP server until the email of the user arrives, without holding a thread.
+		private CompletableFuture<String> verificationEmail(String email) {
+			CompletableFuture<String> token = new CompletableFuture<>();
+			long deadline = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+			Runnable poll = new Runnable() {
+				@Override
+				public void run() {
+					MimeMessage[] messages = mailServer.getReceivedMessagesForDomain(email);
+					if (messages.length > 0) {
+						token.complete(token(GreenMailUtil.getBody(messages[0])));
+					} else if (System.nanoTime() > deadline) {
+						token.completeExceptionally(new IllegalStateException("No verification email for " + email));
+					} else {
+						mailPoller.schedule(this, 50, TimeUnit.MILLISECONDS);
+					}
+				}
+			};
+			mailPoller.execute(poll);
+			return token;
+		}
+
+		private CompletableFuture<HttpResponse<String>> followRedirects(Session session, URI uri, int redirects) {
+			return send(session, get(uri.toString())).thenCompose(response -> {
+				if (response.statusCode() / 100 != 3) {
+					return CompletableFuture.completedFuture(response);
+				}
+				if (redirects > 10) {
+					throw new IllegalStateException("Too many redirects, last to " + uri);
+				}
+				return followRedirects(session, uri.resolve(response.headers().firstValue("Location").orElseThrow()),
+						redirects + 1);
+			});
+		}
+
+		// Only the app gets the session cookie; the issuer keeps no session.
+		private CompletableFuture<HttpResponse<String>> send(Session session, HttpRequest.Builder builder) {
+			HttpRequest request = builder.build();
+			boolean toApp = request.uri().getPort() == appUri.getPort();
+			if (toApp && session.cookie != null) {
+				request = builder.header("Cookie", session.cookie).build();
+			}
+			return client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+				if (toApp) {
+					response.headers().firstValue("Set-Cookie")
+							.filter(cookie -> cookie.startsWith("JSESSIONID="))
+							.ifPresent(cookie -> session.cookie = cookie.substring(0, cookie.indexOf(';')));
+				}
+				if (response.statusCode() >= 400) {
+					throw new UnexpectedStatusException(response.statusCode());
+				}
+				return response;
+			});
+		}
+
+		private HttpRequest.Builder get(String url) {
+			return HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT).GET();
+		}
+
+		private HttpRequest.Builder post(String path, String json) {
+			return HttpRequest.newBuilder(URI.create(baseUrl + path))
+					.timeout(REQUEST_TIMEOUT)
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofString(json));
+		}
+
+		@Override
+		public void close() {
+			mailPoller.shutdownNow();
+		}
+
+		private static String token(String link) {
+			Matcher matcher = TOKEN.matcher(link);
+			if (!matcher.find()) {
+				throw new IllegalStateException("No token in " + link);
+			}
+			return matcher.group(1);
+		}
+	}
+
+	static class Session {
+
+		private volatile String cookie;
+	}
+
+	static class UnexpectedStatusException extends RuntimeException {
+
+		UnexpectedStatusException(int status) {
+			super(String.valueOf(status), null, false, false);
+		}
+	}
+
+	/**
+	 * The latency histogram and the errors of each endpoint.
+	 */
+	static class Stats {
+
+		private final Map<String, ConcurrentHistogram> latencies = new ConcurrentHashMap<>();
+
+		private final Map<String, Map<String, LongAdder>> errors = new ConcurrentHashMap<>();
+
+		<T> CompletableFuture<T> time(String endpoint, CompletableFuture<T> call) {
+			long start = System.nanoTime();
+			return call.whenComplete((result, failure) -> {
+				if (failure == null) {
+					latencies.computeIfAbsent(endpoint, key -> new ConcurrentHistogram(3))
+							.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+				} else {
+					Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+					String reason = cause instanceof UnexpectedStatusException
+							? "HTTP " + cause.getMessage()
+							: cause.getClass().getSimpleName();
+					errors.computeIfAbsent(endpoint, key -> new ConcurrentHashMap<>())
+							.computeIfAbsent(reason, key -> new LongAdder()).increment();
+				}
+			});
+		}
+
+		void print(String title, Duration elapsed) {
+			System.out.printf("%n%s%s%n", title, elapsed.isZero() ? "" : String.format(", %.1f s", elapsed.toMillis() / 1e3));
+			System.out.printf("%-34s %7s %7s %8s %8s %8s %8s %8s%n",
+					"endpoint", "ok", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+			List<String> endpoints = new ArrayList<>(latencies.keySet());
+			errors.keySet().stream().filter(endpoint -> !endpoints.contains(endpoint)).forEach(endpoints::add);
+			endpoints.sort(null);
+			for (String endpoint : endpoints) {
+				Histogram histogram = latencies.getOrDefault(endpoint, new ConcurrentHistogram(3));
+				long failed = errors.getOrDefault(endpoint, Map.of()).values().stream().mapToLong(LongAdder::sum).sum();
+				double seconds = elapsed.toNanos() / 1e9;
+				System.out.printf("%-34s %7d %7d %8s %8.1f %8.1f %8.1f %8.1f%n",
+						endpoint, histogram.getTotalCount(), failed,
+						seconds > 0 ? String.format("%.1f", histogram.getTotalCount() / seconds) : "-",
+						histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+						histogram.getValueAtPercentile(99) / 1e3, histogram.getMaxValue() / 1e3);
+				errors.getOrDefault(endpoint, Map.of()).forEach((reason, count) ->
+						System.out.printf("%-34s %15s x %d%n", "", reason, count.sum()));
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package com.itns.springsecurityclient.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in for the OIDC issuer at auth-server:9000. It serves the discovery document and the
+ * JWKS, approves every authorization request right away with a new subject, and issues opaque
+ * access tokens and RS256 ID tokens, so the app goes through the real authorization code flow
+ * without a login page.
+ */
+public class MockAuthorizationServer implements AutoCloseable {
+
+	private static final ObjectMapper JSON = new ObjectMapper();
+
+	private final RSAKey signingKey;
+
+	private final Duration accessTokenTtl;
+
+	private final DisposableServer server;
+
+	// Codes waiting to be exchanged, and refresh tokens, each with the subject and scope granted.
+	private final Map<String, Grant> codes = new ConcurrentHashMap<>();
+
+	private final Map<String, Grant> refreshTokens = new ConcurrentHashMap<>();
+
+	private final AtomicLong subjects = new AtomicLong();
+
+	private final String issuer;
+
+	public MockAuthorizationServer(int port, Duration accessTokenTtl) throws JOSEException {
+		this.signingKey = new RSAKeyGenerator(2048).keyID("mock").generate();
+		this.accessTokenTtl = accessTokenTtl;
+		this.server = HttpServer.create()
+				.host("127.0.0.1")
+				.port(port)
+				.route(routes -> routes
+						.get("/.well-known/openid-configuration", (request, response) -> json(response, discovery()))
+						.get("/oauth2/jwks", (request, response) -> json(response,
+								new JWKSet(signingKey.toPublicJWK()).toString()))
+						.get("/oauth2/authorize", this::authorize)
+						.post("/oauth2/token", this::token))
+				.bindNow();
+		this.issuer = "http://127.0.0.1:" + server.port();
+	}
+
+	public String getIssuer() {
+		return issuer;
+	}
+
+	@Override
+	public void close() {
+		server.disposeNow();
+	}
+
+	private String discovery() {
+		Map<String, Object> metadata = new LinkedHashMap<>();
+		metadata.put("issuer", issuer);
+		metadata.put("authorization_endpoint", issuer + "/oauth2/authorize");
+		metadata.put("token_endpoint", issuer + "/oauth2/token");
+		metadata.put("jwks_uri", issuer + "/oauth2/jwks");
+		metadata.put("response_types_supported", List.of("code"));
+		metadata.put("grant_types_supported", List.of("authorization_code", "refresh_token"));
+		metadata.put("subject_types_supported", List.of("public"));
+		metadata.put("id_token_signing_alg_values_supported", List.of("RS256"));
+		metadata.put("token_endpoint_auth_methods_supported", List.of("client_secret_basic"));
+		metadata.put("scopes_supported", List.of("openid", "api.read"));
+		return write(metadata);
+	}
+
+	// Consents on behalf of a new user and sends the browser straight back to the client.
+	private Mono<Void> authorize(HttpServerRequest request, HttpServerResponse response) {
+		Map<String, List<String>> parameters = new QueryStringDecoder(request.uri()).parameters();
+		String code = UUID.randomUUID().toString();
+		codes.put(code, new Grant("user" + subjects.incrementAndGet(), first(parameters, "scope"),
+				first(parameters, "nonce")));
+		String redirectUri = first(parameters, "redirect_uri");
+		String location = redirectUri + (redirectUri.contains("?") ? "&" : "?")
+				+ "code=" + code + "&state=" + URLEncoder.encode(first(parameters, "state"), StandardCharsets.UTF_8);
+		return response.status(HttpResponseStatus.FOUND).header("Location", location).send();
+	}
+
+	private Mono<Void> token(HttpServerRequest request, HttpServerResponse response) {
+		String clientId = clientId(request.requestHeaders().get("Authorization"));
+		return request.receive().aggregate().asString(StandardCharsets.UTF_8).flatMap(body -> {
+			Map<String, List<String>> form = new QueryStringDecoder(body, false).parameters();
+			String grantType = first(form, "grant_type");
+			Grant grant = "refresh_token".equals(grantType)
+					? refreshTokens.get(first(form, "refresh_token"))
+					: codes.remove(first(form, "code"));
+			if (grant == null) {
+				return response.status(HttpResponseStatus.BAD_REQUEST)
+						.header("Content-Type", "application/json")
+						.sendString(Mono.just("{\"error\":\"invalid_grant\"}"))
+						.then();
+			}
+			return json(response, tokenResponse(grant, clientId, "authorization_code".equals(grantType))).then();
+		});
+	}
+
+	private String tokenResponse(Grant grant, String clientId, boolean newLogin) {
+		String refreshToken = UUID.randomUUID().toString();
+		refreshTokens.put(refreshToken, grant);
+		Map<String, Object> token = new LinkedHashMap<>();
+		token.put("access_token", UUID.randomUUID().toString());
+		token.put("token_type", "Bearer");
+		token.put("expires_in", accessTokenTtl.getSeconds());
+		token.put("scope", grant.scope);
+		token.put("refresh_token", refreshToken);
+		if (newLogin && grant.scope != null && grant.scope.contains("openid")) {
+			token.put("id_token", idToken(grant, clientId));
+		}
+		return write(token);
+	}
+
+	private String idToken(Grant grant, String clientId) {
+		Instant now = Instant.now();
+		JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+				.issuer(issuer)
+				.subject(grant.subject)
+				.audience(clientId)
+				.issueTime(Date.from(now))
+				.expirationTime(Date.from(now.plus(accessTokenTtl)));
+		if (grant.nonce != null) {
+			claims.claim("nonce", grant.nonce);
+		}
+		SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(),
+				claims.build());
+		try {
+			jwt.sign(new RSASSASigner(signingKey));
+		} catch (JOSEException e) {
+			throw new IllegalStateException(e);
+		}
+		return jwt.serialize();
+	}
+
+	// client_secret_basic; the secret itself is not checked.
+	private static String clientId(String authorization) {
+		if (authorization == null || !authorization.startsWith("Basic ")) {
+			return "unknown";
+		}
+		String credentials = new String(Base64.getDecoder().decode(authorization.substring(6)), StandardCharsets.UTF_8);
+		return credentials.substring(0, Math.max(0, credentials.indexOf(':')));
+	}
+
+	private static Mono<Void> json(HttpServerResponse response, String body) {
+		return response.header("Content-Type", "application/json").sendString(Mono.just(body)).then();
+	}
+
+	private static String first(Map<String, List<String>> parameters, String name) {
+		List<String> values = parameters.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+
+	private static String write(Object value) {
+		try {
+			return JSON.writeValueAsString(value);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class Grant {
+
+		private final String subject;
+
+		private final String scope;
+
+		private final String nonce;
+
+		private Grant(String subject, String scope, String nonce) {
+			this.subject = subject;
+			this.scope = scope;
+			this.nonce = nonce;
+		}
+	}
+}
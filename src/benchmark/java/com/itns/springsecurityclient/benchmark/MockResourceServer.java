@@ -0,0 +1,38 @@
+package com.itns.springsecurityclient.benchmark;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+
+/**
+ * A stand-in for the resource server on 127.0.0.1:8090. GET /api/users answers after a fixed
+ * latency without holding a thread, so the benchmarks measure how the app waits on a slow
+ * downstream, not the downstream itself.
+ */
+public class MockResourceServer implements AutoCloseable {
+
+	private static final String USERS = "[\"user1\",\"user2\",\"user3\"]";
+
+	private final DisposableServer server;
+
+	public MockResourceServer(int port, long latencyMillis) {
+		server = HttpServer.create()
+				.host("127.0.0.1")
+				.port(port)
+				.route(routes -> routes.get("/api/users", (request, response) -> response
+						.header("Content-Type", "application/json")
+						.sendString(Mono.just(USERS).delayElement(Duration.ofMillis(latencyMillis)))))
+				.bindNow();
+	}
+
+	public int getPort() {
+		return server.port();
+	}
+
+	@Override
+	public void close() {
+		server.disposeNow();
+	}
+}
@@ -0,0 +1,173 @@
+package com.itns.springsecurityclient.benchmark;
+
+import com.itns.springsecurityclient.SpringSecurityClientApplication;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures the startup of the app in a new JVM, from launch to ready, with the default settings
+ * (ddl-auto: validate, eager beans and repositories), with the fast-startup profile, and with the
+ * fast-startup profile and an AppCDS archive made by a training run, as mvn -Pcds package does.
+ * Each JVM exits once ready (app.startup.exit-when-ready) against its own in-memory H2 database.
+ * The default mode records the JFR summaries, which the fast-startup profile turns off.
+ *
+ * The app classes are put in a jar first, since a CDS archive cannot be made with a non-empty
+ * directory on the class path.
+ * Run with: mvn -Pbenchmark test -Dtest=StartupBenchmark [-Dstartup.runs=5]
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+	private static final int RUNS = Integer.getInteger("startup.runs", 3);
+
+	private static final Path WORK_DIR = Paths.get("target", "startup-benchmark");
+
+	private static final Pattern STARTED = Pattern.compile(
+			"Started SpringSecurityClientApplication in ([0-9.]+) seconds \\(JVM running for ([0-9.]+)\\)");
+
+	@Test
+	void compareStartupModes() throws Exception {
+		Files.createDirectories(WORK_DIR);
+		String classPath = classPath();
+		Path classList = WORK_DIR.resolve("classes.lst");
+		Path archive = WORK_DIR.resolve("application.jsa");
+
+		List<String> fastStartup = List.of("--spring.profiles.active=fast-startup");
+		measure("default", classPath, List.of(), List.of());
+		measure("fast-startup", classPath, List.of(), fastStartup);
+
+		// The training run, then the archive of the classes it loaded.
+		launch(classPath, List.of("-XX:DumpLoadedClassList=" + classList), fastStartup);
+		run(command(classPath, List.of("-Xshare:dump", "-XX:SharedClassListFile=" + classList,
+				"-XX:SharedArchiveFile=" + archive), null, List.of()));
+		measure("fast-startup + AppCDS", classPath, List.of("-XX:SharedArchiveFile=" + archive, "-Xshare:auto"),
+				fastStartup);
+	}
+
+	private static void measure(String mode, String classPath, List<String> jvmArgs, List<String> appArgs)
+			throws Exception {
+		double[] ready = new double[RUNS];
+		double[] wall = new double[RUNS];
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			ready[i] = launch(classPath, jvmArgs, appArgs);
+			wall[i] = (System.nanoTime() - start) / 1e9;
+		}
+		Arrays.sort(ready);
+		Arrays.sort(wall);
+		System.out.printf("%-24s ready in %5.2f s (JVM uptime, median of %d), %5.2f s launch to exit%n",
+				mode, ready[RUNS / 2], RUNS, wall[RUNS / 2]);
+	}
+
+	// Starts the app, waits for it to exit, and returns the JVM uptime when it was ready.
+	private static double launch(String classPath, List<String> jvmArgs, List<String> appArgs) throws Exception {
+		List<String> args = new ArrayList<>(List.of(
+				"--server.port=0",
+				// NON_KEYWORDS: the user table is named after a reserved word of H2.
+				"--spring.datasource.url=jdbc:h2:mem:startup;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+						+ "NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1",
+				"--spring.datasource.driver-class-name=org.h2.Driver",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=",
+				"--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+				// Nothing listens there; the issuer is only read on first use.
+				"--spring.security.oauth2.client.provider.spring.issuer-uri=http://127.0.0.1:9",
+				"--app.oauth2.provider-metadata.warm-up=false",
+				"--app.startup.exit-when-ready=true"));
+		args.addAll(appArgs);
+		List<String> output = run(command(classPath, jvmArgs, SpringSecurityClientApplication.class.getName(), args));
+		return output.stream()
+				.map(STARTED::matcher)
+				.filter(Matcher::find)
+				.mapToDouble(matcher -> Double.parseDouble(matcher.group(2)))
+				.findFirst()
+				.orElseThrow(() -> new IllegalStateException("The app did not start:\n"
+						+ String.join("\n", output.subList(Math.max(0, output.size() - 40), output.size()))));
+	}
+
+	private static List<String> command(String classPath, List<String> jvmArgs, String mainClass, List<String> args) {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(jvmArgs);
+		command.add("-cp");
+		command.add(classPath);
+		if (mainClass != null) {
+			command.add(mainClass);
+		}
+		command.addAll(args);
+		return command;
+	}
+
+	private static List<String> run(List<String> command) throws IOException, InterruptedException {
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		List<String> output;
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			output = reader.lines().collect(Collectors.toList());
+		}
+		if (!process.waitFor(5, TimeUnit.MINUTES)) {
+			process.destroyForcibly();
+			throw new IllegalStateException("Timed out: " + command);
+		}
+		if (process.exitValue() != 0) {
+			throw new IllegalStateException("Exit code " + process.exitValue() + " of " + command + ":\n"
+					+ String.join("\n", output.subList(Math.max(0, output.size() - 40), output.size())));
+		}
+		return output;
+	}
+
+	// The test class path, with the app classes in a jar and without the test and benchmark classes.
+	private static String classPath() throws IOException {
+		Path classes = Paths.get("target", "classes").toAbsolutePath();
+		Path testClasses = Paths.get("target", "test-classes").toAbsolutePath();
+		Path applicationJar = WORK_DIR.resolve("application.jar").toAbsolutePath();
+		jar(classes, applicationJar);
+		List<String> entries = new ArrayList<>();
+		entries.add(applicationJar.toString());
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			Path path = Paths.get(entry).toAbsolutePath();
+			if (!path.equals(classes) && !path.equals(testClasses) && Files.isRegularFile(path)) {
+				entries.add(entry);
+			}
+		}
+		return String.join(File.pathSeparator, entries);
+	}
+
+	private static void jar(Path directory, Path jar) throws IOException {
+		try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+			 Stream<Path> files = Files.walk(directory)) {
+			// With the directory entries, which the component scan looks the packages up by.
+			for (Path file : (Iterable<Path>) files.filter(file -> !file.equals(directory))::iterator) {
+				String name = directory.relativize(file).toString().replace(File.separatorChar, '/');
+				if (Files.isDirectory(file)) {
+					out.putNextEntry(new JarEntry(name + "/"));
+				} else {
+					out.putNextEntry(new JarEntry(name));
+					Files.copy(file, (OutputStream) out);
+				}
+				out.closeEntry();
+			}
+		}
+	}
+}
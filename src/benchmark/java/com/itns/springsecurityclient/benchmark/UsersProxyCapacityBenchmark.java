@@ -0,0 +1,144 @@
+package com.itns.springsecurityclient.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * Compares how many concurrent /api/users calls a small Tomcat pool can serve when the handler
+ * blocks on the WebClient, as HelloController.users used to, and when it returns the Mono.
+ *
+ * Only the waiting strategy differs between the two endpoints; the OAuth2 filter is left out.
+ * Run with: mvn -Pbenchmark test -Dtest=UsersProxyCapacityBenchmark
+ */
+@Tag("benchmark")
+class UsersProxyCapacityBenchmark {
+
+	private static final int TOMCAT_THREADS = 16;
+
+	private static final int CONCURRENT_REQUESTS = 200;
+
+	private static final long DOWNSTREAM_LATENCY_MILLIS = 1000;
+
+	@Test
+	void compareBlockingAndNonBlockingProxy() throws Exception {
+		try (MockResourceServer downstream = new MockResourceServer(0, DOWNSTREAM_LATENCY_MILLIS);
+			 ConfigurableApplicationContext app = new SpringApplicationBuilder(ProxyApplication.class)
+					 .properties(
+							 "server.port=0",
+							 "server.tomcat.threads.max=" + TOMCAT_THREADS,
+							 "server.tomcat.threads.min-spare=" + TOMCAT_THREADS,
+							 "downstream.url=http://127.0.0.1:" + downstream.getPort() + "/api/users")
+					 .run()) {
+			String baseUrl = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+			// A non-blocking load client with one connection per concurrent request.
+			HttpClient client = HttpClient.create(ConnectionProvider.builder("load")
+					.maxConnections(CONCURRENT_REQUESTS)
+					.pendingAcquireMaxCount(-1)
+					.build());
+
+			// Warm up both paths before measuring.
+			fire(client, baseUrl + "/blocking", TOMCAT_THREADS);
+			fire(client, baseUrl + "/non-blocking", TOMCAT_THREADS);
+
+			report("downstream only", fire(client, "http://127.0.0.1:" + downstream.getPort() + "/api/users",
+					CONCURRENT_REQUESTS));
+			report("blocking (.block())", fire(client, baseUrl + "/blocking", CONCURRENT_REQUESTS));
+			report("non-blocking (Mono)", fire(client, baseUrl + "/non-blocking", CONCURRENT_REQUESTS));
+		}
+	}
+
+	private static long fire(HttpClient client, String url, int requests) {
+		long start = System.nanoTime();
+		Flux.range(0, requests)
+				.flatMap(i -> client.get().uri(url).responseSingle((response, body) -> {
+					if (response.status().code() != 200) {
+						return Mono.error(new IllegalStateException("Unexpected status " + response.status()));
+					}
+					return body.asString();
+				}), requests)
+				.blockLast(Duration.ofMinutes(1));
+		return System.nanoTime() - start;
+	}
+
+	private static void report(String name, long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		System.out.printf("%-22s %d requests, %d Tomcat threads, %d ms downstream: %.2f s, %.0f req/s%n",
+				name, CONCURRENT_REQUESTS, TOMCAT_THREADS, DOWNSTREAM_LATENCY_MILLIS,
+				seconds, CONCURRENT_REQUESTS / seconds);
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ImportAutoConfiguration({
+			ServletWebServerFactoryAutoConfiguration.class,
+			EmbeddedWebServerFactoryCustomizerAutoConfiguration.class,
+			DispatcherServletAutoConfiguration.class,
+			WebMvcAutoConfiguration.class,
+			HttpMessageConvertersAutoConfiguration.class,
+			JacksonAutoConfiguration.class})
+	@Import(ProxyController.class)
+	static class ProxyApplication {
+
+		// Large enough that the client pool is not what limits the comparison.
+		@Bean
+		WebClient webClient() {
+			ConnectionProvider provider = ConnectionProvider.builder("benchmark")
+					.maxConnections(CONCURRENT_REQUESTS)
+					.pendingAcquireMaxCount(-1)
+					.build();
+			return WebClient.builder()
+					.clientConnector(new ReactorClientHttpConnector(HttpClient.create(provider)))
+					.build();
+		}
+	}
+
+	@RestController
+	static class ProxyController {
+
+		private final WebClient webClient;
+
+		private final String downstreamUrl;
+
+		ProxyController(WebClient webClient, @Value("${downstream.url}") String downstreamUrl) {
+			this.webClient = webClient;
+			this.downstreamUrl = downstreamUrl;
+		}
+
+		@GetMapping("/blocking")
+		String[] blocking() {
+			return call().block();
+		}
+
+		@GetMapping("/non-blocking")
+		Mono<String[]> nonBlocking() {
+			return call();
+		}
+
+		private Mono<String[]> call() {
+			return webClient.get().uri(downstreamUrl).retrieve().bodyToMono(String[].class);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.itns.springsecurityclient.benchmark;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.itns.springsecurityclient.benchmark.LoadHarnessBenchmark.Journeys;
+import com.itns.springsecurityclient.benchmark.LoadHarnessBenchmark.Session;
+import com.itns.springsecurityclient.benchmark.LoadHarnessBenchmark.Stats;
+import com.itns.springsecurityclient.config.VirtualThreads;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Compares the platform thread mode with the virtual thread mode (app.virtual-threads.enabled) on
+ * the real controllers of the app: GET /api/users, which waits on a slow resource server, and
+ * POST /register, which hashes the password on the hashing pool and then writes to the database.
+ *
+ * The app runs against the stubs of the LoadHarnessBenchmark: H2 in MySQL mode, the
+ * MockAuthorizationServer, the MockResourceServer and GreenMail. Each mode keeps
+ * CONCURRENT_REQUESTS requests in flight on a Tomcat of TOMCAT_THREADS threads. The virtual mode is
+ * skipped on a runtime without virtual threads (before Java 21).
+ * Run with: mvn -Pbenchmark test -Dtest=VirtualThreadsBenchmark
+ */
+@Tag("benchmark")
+class VirtualThreadsBenchmark {
+
+	private static final int TOMCAT_THREADS = 50;
+
+	private static final int CONCURRENT_REQUESTS = 400;
+
+	private static final int REQUESTS = 2000;
+
+	// Logged in before measuring; the calls to /api/users are spread over them.
+	private static final int SESSIONS = 50;
+
+	private static final long DOWNSTREAM_LATENCY_MILLIS = 200;
+
+	@Test
+	void comparePlatformAndVirtualThreads() throws Exception {
+		GreenMail mailServer = new GreenMail(ServerSetupTest.SMTP);
+		mailServer.start();
+		try (MockAuthorizationServer issuer = new MockAuthorizationServer(0, Duration.ofHours(1));
+			 MockResourceServer resourceServer = new MockResourceServer(0, DOWNSTREAM_LATENCY_MILLIS)) {
+			run("platform", false, issuer, resourceServer, mailServer);
+			if (VirtualThreads.isSupported()) {
+				run("virtual", true, issuer, resourceServer, mailServer);
+			} else {
+				System.out.printf("virtual: skipped, Java %d has no virtual threads%n", Runtime.version().feature());
+			}
+		} finally {
+			mailServer.stop();
+		}
+	}
+
+	private static void run(String mode, boolean virtualThreads, MockAuthorizationServer issuer,
+			MockResourceServer resourceServer, GreenMail mailServer) throws Exception {
+		try (ConfigurableApplicationContext app = LoadHarnessBenchmark.startApplication(mode, issuer, resourceServer,
+				"--server.tomcat.threads.max=" + TOMCAT_THREADS,
+				"--server.tomcat.threads.min-spare=" + TOMCAT_THREADS,
+				"--app.virtual-threads.enabled=" + virtualThreads,
+				// A cheap hash and a queue deep enough that no registration is refused, so that the
+				// modes differ by how they wait rather than by the CPU.
+				"--app.security.password-hashing.strength=4",
+				"--app.security.password-hashing.queue-capacity=" + REQUESTS);
+			 Journeys journeys = new Journeys(LoadHarnessBenchmark.baseUrl(app), mailServer)) {
+			Stats warmUp = new Stats();
+			List<Session> sessions = new ArrayList<>();
+			for (int i = 0; i < SESSIONS; i++) {
+				sessions.add(journeys.login(warmUp).get(1, TimeUnit.MINUTES));
+			}
+			AtomicInteger next = new AtomicInteger();
+			Supplier<CompletableFuture<?>> users = () -> journeys.callUsers(
+					sessions.get(Math.floorMod(next.getAndIncrement(), SESSIONS)), warmUp);
+			runClosed(TOMCAT_THREADS, users);
+			runClosed(TOMCAT_THREADS, () -> journeys.registerOnly(warmUp));
+
+			Stats usersStats = new Stats();
+			long usersNanos = runClosed(REQUESTS, () -> journeys.callUsers(
+					sessions.get(Math.floorMod(next.getAndIncrement(), SESSIONS)), usersStats));
+			usersStats.print(mode + " threads, " + CONCURRENT_REQUESTS + " in flight", Duration.ofNanos(usersNanos));
+
+			Stats registerStats = new Stats();
+			long registerNanos = runClosed(REQUESTS, () -> journeys.registerOnly(registerStats));
+			registerStats.print(mode + " threads, " + CONCURRENT_REQUESTS + " in flight", Duration.ofNanos(registerNanos));
+		}
+	}
+
+	/**
+	 * It sends the requests with CONCURRENT_REQUESTS of them in flight: each one that ends starts
+	 * the next, so a slower app shows up as a lower throughput.
+	 *
+	 * @return The nanoseconds until the last request ended.
+	 */
+	private static long runClosed(int requests, Supplier<CompletableFuture<?>> request) throws Exception {
+		AtomicInteger remaining = new AtomicInteger(requests);
+		long start = System.nanoTime();
+		CompletableFuture<?>[] loops = new CompletableFuture<?>[Math.min(CONCURRENT_REQUESTS, requests)];
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = loop(remaining, request);
+		}
+		CompletableFuture.allOf(loops).get(5, TimeUnit.MINUTES);
+		return System.nanoTime() - start;
+	}
+
+	// Failed requests are counted in the stats and do not stop the loop.
+	private static CompletableFuture<?> loop(AtomicInteger remaining, Supplier<CompletableFuture<?>> request) {
+		if (remaining.getAndDecrement() <= 0) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return request.get()
+				.handle((response, failure) -> null)
+				.thenCompose(ignored -> loop(remaining, request));
+	}
+}
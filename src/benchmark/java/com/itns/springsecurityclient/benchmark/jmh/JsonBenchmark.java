@@ -0,0 +1,83 @@
+package com.itns.springsecurityclient.benchmark.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.itns.springsecurityclient.model.PasswordModel;
+import com.itns.springsecurityclient.model.UserModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing the request bodies of /register and of the password endpoints with
+ * Jackson, as the message converters do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+	private static final String USER_JSON = "{\"firstName\":\"Jean\",\"lastName\":\"Dupont\","
+			+ "\"email\":\"jean.dupont@itns.com\",\"password\":\"secret\",\"matchingPassword\":\"secret\"}";
+
+	private static final String PASSWORD_JSON = "{\"email\":\"jean.dupont@itns.com\","
+			+ "\"oldPassword\":\"secret\",\"newPassword\":\"n3wS3cret\"}";
+
+	private ObjectReader userModelReader;
+
+	private ObjectWriter userModelWriter;
+
+	private ObjectReader passwordModelReader;
+
+	private ObjectWriter passwordModelWriter;
+
+	private UserModel userModel;
+
+	private PasswordModel passwordModel;
+
+	@Setup
+	public void setUp() throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper();
+		userModelReader = objectMapper.readerFor(UserModel.class);
+		userModelWriter = objectMapper.writerFor(UserModel.class);
+		passwordModelReader = objectMapper.readerFor(PasswordModel.class);
+		passwordModelWriter = objectMapper.writerFor(PasswordModel.class);
+		userModel = userModelReader.readValue(USER_JSON);
+		passwordModel = passwordModelReader.readValue(PASSWORD_JSON);
+	}
+
+	@Benchmark
+	public UserModel readUserModel() throws IOException {
+		return userModelReader.readValue(USER_JSON);
+	}
+
+	@Benchmark
+	public String writeUserModel() throws IOException {
+		return userModelWriter.writeValueAsString(userModel);
+	}
+
+	@Benchmark
+	public PasswordModel readPasswordModel() throws IOException {
+		return passwordModelReader.readValue(PASSWORD_JSON);
+	}
+
+	@Benchmark
+	public String writePasswordModel() throws IOException {
+		return passwordModelWriter.writeValueAsString(passwordModel);
+	}
+}
@@ -0,0 +1,52 @@
+package com.itns.springsecurityclient.benchmark.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a BCrypt hash and of a password check at the strengths around the configured one
+ * (app.security.password-hashing.strength). Each step of strength doubles the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+	@Param({"10", "11", "12"})
+	int strength;
+
+	private BCryptPasswordEncoder passwordEncoder;
+
+	private String encodedPassword;
+
+	@Setup
+	public void setUp() {
+		passwordEncoder = new BCryptPasswordEncoder(strength);
+		encodedPassword = passwordEncoder.encode("correct horse battery staple");
+	}
+
+	@Benchmark
+	public String encode() {
+		return passwordEncoder.encode("correct horse battery staple");
+	}
+
+	@Benchmark
+	public boolean matches() {
+		return passwordEncoder.matches("correct horse battery staple", encodedPassword);
+	}
+}
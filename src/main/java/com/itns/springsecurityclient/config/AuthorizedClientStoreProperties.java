@@ -0,0 +1,45 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the shared OAuth2 authorized client store and of its local cache.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.oauth2.authorized-clients")
+public class AuthorizedClientStoreProperties {
+
+    private Cache cache = new Cache();
+
+    private Invalidation invalidation = new Invalidation();
+
+    @Data
+    public static class Cache {
+
+        private long maximumSize = 10_000;
+
+        // An entry is dropped when its access token expires, or after this time if that is sooner.
+        private Duration maxTimeToLive = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Invalidation {
+
+        // How long another node may serve a stale authorized client after a change.
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        // Each poll reads again the rows created this long before the previous one, for the rows
+        // of transactions that committed late and for the clock skew between the nodes.
+        private Duration overlap = Duration.ofSeconds(10);
+
+        private int batchSize = 500;
+
+        // Invalidation rows older than this are deleted; longer than any node pause we expect.
+        private Duration retention = Duration.ofHours(1);
+
+        private Duration purgeInterval = Duration.ofMinutes(10);
+    }
+}
@@ -0,0 +1,79 @@
+package com.itns.springsecurityclient.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import lombok.Value;
+
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.security.oauth2.client.oidc.authentication.OidcIdTokenDecoderFactory;
+import org.springframework.security.oauth2.client.oidc.authentication.OidcIdTokenValidator;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.converter.ClaimTypeConverter;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtDecoderFactory;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.web.client.RestOperations;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The JwtDecoderFactory of the ID tokens. It validates them like Spring Security's
+ * OidcIdTokenDecoderFactory, but the JWK sets are kept in a shared cache that refreshes them in
+ * the background, so a login never waits for the provider's jwks_uri once it has been read.
+ */
+public class CachingIdTokenDecoderFactory implements JwtDecoderFactory<ClientRegistration> {
+
+    private final CaffeineCache jwkSets;
+
+    private final RestOperations restOperations;
+
+    // The decoders by registration, built again when the jwk-set-uri of the registration changes.
+    private final ConcurrentMap<String, Decoder> decoders = new ConcurrentHashMap<>();
+
+    public CachingIdTokenDecoderFactory(ProviderMetadataProperties.Jwks properties, RestOperations restOperations) {
+        this.restOperations = restOperations;
+        LoadingCache<Object, Object> cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .refreshAfterWrite(properties.getRefreshInterval())
+                .build(jwkSetUri -> restOperations.getForObject(jwkSetUri.toString(), String.class));
+        this.jwkSets = new CaffeineCache("oauth2.jwks", cache, false);
+    }
+
+    @Override
+    public JwtDecoder createDecoder(ClientRegistration clientRegistration) {
+        String jwkSetUri = clientRegistration.getProviderDetails().getJwkSetUri();
+        if (jwkSetUri == null || jwkSetUri.isEmpty()) {
+            throw new IllegalStateException("Missing jwk-set-uri of client registration "
+                    + clientRegistration.getRegistrationId());
+        }
+        Decoder decoder = decoders.get(clientRegistration.getRegistrationId());
+        if (decoder == null || !decoder.getJwkSetUri().equals(jwkSetUri)) {
+            decoder = new Decoder(jwkSetUri, newDecoder(clientRegistration, jwkSetUri));
+            decoders.put(clientRegistration.getRegistrationId(), decoder);
+        }
+        return decoder.getJwtDecoder();
+    }
+
+    private JwtDecoder newDecoder(ClientRegistration clientRegistration, String jwkSetUri) {
+        NimbusJwtDecoder jwtDecoder = NimbusJwtDecoder.withJwkSetUri(jwkSetUri)
+                .restOperations(restOperations)
+                .cache(jwkSets)
+                .build();
+        jwtDecoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+                new JwtTimestampValidator(), new OidcIdTokenValidator(clientRegistration)));
+        jwtDecoder.setClaimSetConverter(
+                new ClaimTypeConverter(OidcIdTokenDecoderFactory.createDefaultClaimTypeConverters()));
+        return jwtDecoder;
+    }
+
+    @Value
+    private static class Decoder {
+
+        String jwkSetUri;
+        JwtDecoder jwtDecoder;
+    }
+}
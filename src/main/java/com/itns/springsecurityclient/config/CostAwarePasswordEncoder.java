@@ -0,0 +1,59 @@
+package com.itns.springsecurityclient.config;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A BCrypt PasswordEncoder that reports every hash with a lower cost than the current one as
+ * needing an upgrade, the same way DelegatingPasswordEncoder does for hashes with an old id. A hash
+ * with a higher cost is kept: it is at least as strong, and two nodes with different costs would
+ * otherwise rehash each other's passwords on every login.
+ */
+public class CostAwarePasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    private final int strength;
+
+    private final BCryptPasswordEncoder delegate;
+
+    public CostAwarePasswordEncoder(int strength) {
+        this.strength = strength;
+        this.delegate = new BCryptPasswordEncoder(strength);
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegate.matches(rawPassword, encodedPassword);
+    }
+
+    /**
+     * It reads the cost from the stored hash and compares it with the current one.
+     *
+     * @param encodedPassword The password stored in the database.
+     * @return true if the hash is not BCrypt or has a lower cost than the current one.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        if (!matcher.matches()) {
+            return true;
+        }
+        return Integer.parseInt(matcher.group(1)) < strength;
+    }
+}
@@ -0,0 +1,105 @@
+package com.itns.springsecurityclient.config;
+
+import com.itns.springsecurityclient.datasource.ReadWriteRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+/**
+ * The opt-in read/write split (app.datasource.routing.enabled). The read-only transactions, which
+ * include the findByEmail and findByToken lookups, go to the replicas and the rest to the primary
+ * of spring.datasource. Each route has its own Hikari pool, named after the route, so the
+ * hikaricp.* meters are tagged pool=primary, pool=replica-1 and so on.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.routing", name = "enabled", havingValue = "true")
+@Slf4j
+public class DataSourceRoutingConfiguration {
+
+    /**
+     * It builds the pools of the primary, with the spring.datasource.hikari settings, and of the
+     * replicas.
+     *
+     * @param dataSourceProperties The spring.datasource settings, those of the primary.
+     * @param properties The replicas.
+     * @param environment Where the spring.datasource.hikari settings are bound from.
+     * @param meterRegistry Where the pool meters are registered.
+     * @return The routing DataSource, which closes the pools on shutdown.
+     */
+    @Bean
+    ReadWriteRoutingDataSource routingDataSource(DataSourceProperties dataSourceProperties,
+                                                 DataSourceRoutingProperties properties,
+                                                 Environment environment,
+                                                 MeterRegistry meterRegistry) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName(ReadWriteRoutingDataSource.PRIMARY);
+        primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (DataSourceRoutingProperties.Replica replica : properties.getReplicas()) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + (replicas.size() + 1));
+            pool.setDriverClassName(dataSourceProperties.determineDriverClassName());
+            pool.setJdbcUrl(replica.getUrl());
+            pool.setUsername(replica.getUsername());
+            pool.setPassword(replica.getPassword());
+            pool.setMaximumPoolSize(replica.getMaximumPoolSize());
+            pool.setReadOnly(true);
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(pool);
+        }
+        if (replicas.isEmpty()) {
+            log.warn("app.datasource.routing.enabled is set without replicas; every transaction goes to the primary");
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas);
+    }
+
+    /**
+     * The DataSource of JPA, JDBC and the SQL initialization. It obtains the connection on the
+     * first statement, once the transaction is known to be read-only or not.
+     *
+     * @param routingDataSource The routing DataSource.
+     * @return The DataSource.
+     */
+    @Bean
+    @Primary
+    DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Hibernate holds its connection until the EntityManager is closed by default, which with the
+     * open EntityManager of the web requests would keep a request on the route of its first
+     * transaction. It releases the connection after each transaction instead.
+     *
+     * @return The customizer.
+     */
+    @Bean
+    HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
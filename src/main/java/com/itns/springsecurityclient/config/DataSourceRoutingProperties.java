@@ -0,0 +1,42 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the read/write split between the primary database (spring.datasource) and its
+ * read-only replicas.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.datasource.routing")
+public class DataSourceRoutingProperties {
+
+    // Send the read-only transactions to the replicas; everything goes to the primary otherwise.
+    private boolean enabled = false;
+
+    // The read-only transactions are spread over these, round robin.
+    private List<Replica> replicas = new ArrayList<>();
+
+    // After a write, the reads of the same user stay on the primary for this long; longer than the
+    // usual replication lag.
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    // Recent writes remembered by each node; the oldest are forgotten first.
+    private long readYourWritesMaximumSize = 100_000;
+
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+}
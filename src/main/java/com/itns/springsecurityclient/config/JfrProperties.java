@@ -0,0 +1,24 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the in-process summaries of the application JFR events.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.jfr")
+public class JfrProperties {
+
+    // Record the application events and summarize them; the events are emitted either way and
+    // are also seen by any recording started with -XX:StartFlightRecording or jcmd.
+    private boolean enabled = true;
+
+    // Length of one summary window, also read by the @Scheduled trigger.
+    private Duration interval = Duration.ofSeconds(10);
+
+    // Number of windows kept; the summaries cover interval x windows.
+    private int windows = 6;
+}
@@ -0,0 +1,144 @@
+package com.itns.springsecurityclient.config;
+
+import com.itns.springsecurityclient.service.ProviderMetadataCache;
+
+import lombok.Value;
+
+import org.springframework.boot.autoconfigure.security.oauth2.client.OAuth2ClientProperties;
+import org.springframework.boot.autoconfigure.security.oauth2.client.OAuth2ClientPropertiesRegistrationAdapter;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * A ClientRegistrationRepository that does not call the providers at startup. The registrations of
+ * a provider configured with an issuer-uri are built on first use from the ProviderMetadataCache,
+ * and built again when the cached metadata is refreshed. The endpoints set in the properties win
+ * over the discovered ones, as with Spring Boot's own repository.
+ */
+public class LazyClientRegistrationRepository implements ClientRegistrationRepository, Iterable<ClientRegistration> {
+
+    private final OAuth2ClientProperties properties;
+
+    private final ProviderMetadataCache metadataCache;
+
+    // Registrations of the providers without an issuer-uri, built once.
+    private final Map<String, ClientRegistration> staticRegistrations;
+
+    private final ConcurrentMap<String, Resolved> resolvedRegistrations = new ConcurrentHashMap<>();
+
+    public LazyClientRegistrationRepository(OAuth2ClientProperties properties, ProviderMetadataCache metadataCache) {
+        this.properties = properties;
+        this.metadataCache = metadataCache;
+        OAuth2ClientProperties withoutIssuers = new OAuth2ClientProperties();
+        properties.getRegistration().forEach((registrationId, registration) -> {
+            if (issuerOf(registrationId) == null) {
+                withoutIssuers.getRegistration().put(registrationId, registration);
+            }
+        });
+        withoutIssuers.getProvider().putAll(properties.getProvider());
+        this.staticRegistrations = OAuth2ClientPropertiesRegistrationAdapter.getClientRegistrations(withoutIssuers);
+    }
+
+    /**
+     * @return The distinct issuer URIs of the configured providers.
+     */
+    public Set<String> getIssuers() {
+        return properties.getRegistration().keySet().stream()
+                .map(this::issuerOf)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public ClientRegistration findByRegistrationId(String registrationId) {
+        ClientRegistration staticRegistration = staticRegistrations.get(registrationId);
+        if (staticRegistration != null || !properties.getRegistration().containsKey(registrationId)) {
+            return staticRegistration;
+        }
+        Map<String, Object> metadata = metadataCache.get(issuerOf(registrationId));
+        Resolved resolved = resolvedRegistrations.get(registrationId);
+        if (resolved == null || resolved.getMetadata() != metadata) {
+            resolved = new Resolved(metadata, build(registrationId, metadata));
+            resolvedRegistrations.put(registrationId, resolved);
+        }
+        return resolved.getRegistration();
+    }
+
+    @Override
+    public Iterator<ClientRegistration> iterator() {
+        List<ClientRegistration> registrations = properties.getRegistration().keySet().stream()
+                .map(this::findByRegistrationId)
+                .collect(Collectors.toList());
+        return registrations.iterator();
+    }
+
+    private ClientRegistration build(String registrationId, Map<String, Object> metadata) {
+        OAuth2ClientProperties.Registration registration = properties.getRegistration().get(registrationId);
+        String providerId = providerIdOf(registrationId);
+        OAuth2ClientProperties.Provider configured = properties.getProvider().get(providerId);
+
+        OAuth2ClientProperties.Provider provider = new OAuth2ClientProperties.Provider();
+        provider.setAuthorizationUri(orElse(configured.getAuthorizationUri(), metadata.get("authorization_endpoint")));
+        provider.setTokenUri(orElse(configured.getTokenUri(), metadata.get("token_endpoint")));
+        provider.setUserInfoUri(orElse(configured.getUserInfoUri(), metadata.get("userinfo_endpoint")));
+        provider.setJwkSetUri(orElse(configured.getJwkSetUri(), metadata.get("jwks_uri")));
+        provider.setUserInfoAuthenticationMethod(configured.getUserInfoAuthenticationMethod());
+        provider.setUserNameAttribute(orElse(configured.getUserNameAttribute(), "sub"));
+
+        OAuth2ClientProperties resolved = new OAuth2ClientProperties();
+        resolved.getRegistration().put(registrationId, registration);
+        resolved.getProvider().put(providerId, provider);
+        ClientRegistration.Builder builder = ClientRegistration.withClientRegistration(
+                OAuth2ClientPropertiesRegistrationAdapter.getClientRegistrations(resolved).get(registrationId))
+                .issuerUri(configured.getIssuerUri())
+                .providerConfigurationMetadata(metadata);
+        if (registration.getClientAuthenticationMethod() == null) {
+            builder.clientAuthenticationMethod(clientAuthenticationMethod(metadata));
+        }
+        return builder.build();
+    }
+
+    // The method Spring Security picks from the metadata when it builds a registration from an issuer.
+    private static ClientAuthenticationMethod clientAuthenticationMethod(Map<String, Object> metadata) {
+        Object supported = metadata.get("token_endpoint_auth_methods_supported");
+        if (!(supported instanceof Collection) || ((Collection<?>) supported).contains("client_secret_basic")) {
+            return ClientAuthenticationMethod.CLIENT_SECRET_BASIC;
+        }
+        if (((Collection<?>) supported).contains("client_secret_post")) {
+            return ClientAuthenticationMethod.CLIENT_SECRET_POST;
+        }
+        return ClientAuthenticationMethod.NONE;
+    }
+
+    private String issuerOf(String registrationId) {
+        OAuth2ClientProperties.Provider provider = properties.getProvider().get(providerIdOf(registrationId));
+        return provider == null ? null : provider.getIssuerUri();
+    }
+
+    private String providerIdOf(String registrationId) {
+        String provider = properties.getRegistration().get(registrationId).getProvider();
+        return provider == null ? registrationId : provider;
+    }
+
+    private static String orElse(String value, Object fallback) {
+        return value != null ? value : (String) fallback;
+    }
+
+    @Value
+    private static class Resolved {
+
+        Map<String, Object> metadata;
+        ClientRegistration registration;
+    }
+}
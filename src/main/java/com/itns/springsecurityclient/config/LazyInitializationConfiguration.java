@@ -0,0 +1,47 @@
+package com.itns.springsecurityclient.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.annotation.Schedules;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * The beans that stay eager when spring.main.lazy-initialization is on, as in the fast-startup
+ * profile. Everything else is created on first use.
+ */
+@Configuration
+public class LazyInitializationConfiguration {
+
+    /**
+     * The @Scheduled methods are only registered once their bean is created, so a lazy job, such
+     * as the outbox dispatcher or the token purge, would never run.
+     *
+     * @return The filter keeping the beans with a @Scheduled method eager.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType != null && hasScheduledMethod(beanType);
+    }
+
+    /**
+     * The encoder calibrates the BCrypt cost when it is created, which would otherwise land on the
+     * first registration.
+     *
+     * @return The filter keeping the PasswordEncoder eager.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter passwordEncoderExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(PasswordEncoder.class);
+    }
+
+    private static boolean hasScheduledMethod(Class<?> beanType) {
+        return !MethodIntrospector.selectMethods(beanType, (MethodIntrospector.MetadataLookup<Boolean>) method ->
+                AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)
+                        || AnnotatedElementUtils.hasAnnotation(method, Schedules.class) ? Boolean.TRUE : null)
+                .isEmpty();
+    }
+}
@@ -0,0 +1,39 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the outgoing mail pipeline. The SMTP server itself is configured with the standard
+ * spring.mail properties; without spring.mail.host the messages are only logged.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.mail")
+public class MailDeliveryProperties {
+
+    private String from = "no-reply@itns.com";
+
+    // Messages waiting in the in-memory queue of the reactive mode. When full, new messages are
+    // refused instead of blocking. The servlet app stores its messages in the outbox.
+    private int queueCapacity = 10_000;
+
+    // Number of sender threads of that queue; none unless the reactive profile sets it.
+    private int workers = 0;
+
+    // Maximum number of messages a sender thread takes from the queue in one go.
+    private int batchSize = 50;
+
+    // Open SMTP connections kept for the next messages.
+    private int maximumIdleConnections = 2;
+
+    // Messages per second sent to a single recipient domain.
+    private double perDomainRate = 10;
+
+    // Recipient domains whose send rate is tracked; the least recently used ones are forgotten.
+    private int maximumDomains = 10_000;
+
+    // A connection unused for this long is closed.
+    private Duration connectionIdleTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,78 @@
+package com.itns.springsecurityclient.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+
+import org.springframework.boot.actuate.metrics.web.client.DefaultRestTemplateExchangeTagsProvider;
+import org.springframework.boot.actuate.metrics.web.client.RestTemplateExchangeTagsProvider;
+import org.springframework.boot.actuate.metrics.web.reactive.client.DefaultWebClientExchangeTagsProvider;
+import org.springframework.boot.actuate.metrics.web.reactive.client.WebClientExchangeTagsProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.web.reactive.function.client.ClientRequest;
+
+/**
+ * The application meters, scraped from /actuator/prometheus next to the ones of Spring Boot
+ * (http.server.requests, hikaricp.*, hibernate.*, jvm.*).
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    // The request attributes set by ServletOAuth2AuthorizedClientExchangeFilterFunction.oauth2AuthorizedClient
+    // and .clientRegistrationId.
+    private static final String AUTHORIZED_CLIENT_ATTRIBUTE = OAuth2AuthorizedClient.class.getName();
+
+    private static final String CLIENT_REGISTRATION_ID_ATTRIBUTE
+            = OAuth2AuthorizedClient.class.getName().concat(".CLIENT_REGISTRATION_ID");
+
+    private static final Tag NO_CLIENT_REGISTRATION = Tag.of("clientRegistrationId", "none");
+
+    /**
+     * It records the methods annotated with @Timed, such as the ones of UserServiceImpl. The
+     * meters are tagged with the class and the method, and with the exception when one is thrown.
+     *
+     * @param meterRegistry Where the timings are recorded.
+     * @return The aspect.
+     */
+    @Bean
+    TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    /**
+     * It adds the client registration to the http.client.requests tags of the WebClient, so the
+     * calls made on behalf of each registration can be told apart.
+     *
+     * @return The tags provider used by the WebClient metrics filter.
+     */
+    @Bean
+    WebClientExchangeTagsProvider webClientExchangeTagsProvider() {
+        DefaultWebClientExchangeTagsProvider defaultTags = new DefaultWebClientExchangeTagsProvider();
+        return (request, response, throwable) -> Tags.of(defaultTags.tags(request, response, throwable))
+                .and(clientRegistrationId(request));
+    }
+
+    /**
+     * The RestTemplate calls, to the provider metadata and the JWKS, share the http.client.requests
+     * meter with the WebClient, and Prometheus wants the same tag keys on every series of a meter.
+     *
+     * @return The tags provider used by the RestTemplate metrics interceptor.
+     */
+    @Bean
+    RestTemplateExchangeTagsProvider restTemplateExchangeTagsProvider() {
+        DefaultRestTemplateExchangeTagsProvider defaultTags = new DefaultRestTemplateExchangeTagsProvider();
+        return (urlTemplate, request, response) -> Tags.of(defaultTags.getTags(urlTemplate, request, response))
+                .and(NO_CLIENT_REGISTRATION);
+    }
+
+    private static Tag clientRegistrationId(ClientRequest request) {
+        Object authorizedClient = request.attribute(AUTHORIZED_CLIENT_ATTRIBUTE).orElse(null);
+        String registrationId = authorizedClient instanceof OAuth2AuthorizedClient
+                ? ((OAuth2AuthorizedClient) authorizedClient).getClientRegistration().getRegistrationId()
+                : (String) request.attribute(CLIENT_REGISTRATION_ID_ATTRIBUTE).orElse(null);
+        return registrationId == null ? NO_CLIENT_REGISTRATION : Tag.of("clientRegistrationId", registrationId);
+    }
+}
@@ -0,0 +1,72 @@
+package com.itns.springsecurityclient.config;
+
+import com.itns.springsecurityclient.service.ProviderMetadataCache;
+
+import org.springframework.boot.autoconfigure.security.oauth2.client.OAuth2ClientProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.jwt.JwtDecoderFactory;
+
+/**
+ * It configures the client registrations and the ID token decoders so that the application starts
+ * without reaching the authorization server.
+ */
+@Configuration
+@EnableConfigurationProperties(OAuth2ClientProperties.class)
+public class OAuth2ProviderConfiguration {
+
+    /**
+     * It replaces Spring Boot's repository, which fetches the configuration of every issuer-uri
+     * while the application starts and fails if the provider cannot be reached.
+     *
+     * @param properties The spring.security.oauth2.client properties.
+     * @param metadataCache The cache of the provider metadata.
+     * @return A LazyClientRegistrationRepository object.
+     */
+    @Bean
+    LazyClientRegistrationRepository clientRegistrationRepository(OAuth2ClientProperties properties,
+                                                                  ProviderMetadataCache metadataCache) {
+        return new LazyClientRegistrationRepository(properties, metadataCache);
+    }
+
+    /**
+     * The oauth2Login configuration picks this bean up to decode the ID tokens.
+     *
+     * @param properties The provider metadata settings.
+     * @param restTemplateBuilder Used to build the client of the jwks_uri.
+     * @return A CachingIdTokenDecoderFactory object.
+     */
+    @Bean
+    JwtDecoderFactory<ClientRegistration> idTokenDecoderFactory(ProviderMetadataProperties properties,
+                                                                RestTemplateBuilder restTemplateBuilder) {
+        return new CachingIdTokenDecoderFactory(properties.getJwks(), restTemplateBuilder
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setReadTimeout(properties.getReadTimeout())
+                .build());
+    }
+
+    /**
+     * It fetches the provider metadata in the background once the application is ready to serve.
+     *
+     * @param properties The provider metadata settings.
+     * @param metadataCache The cache of the provider metadata.
+     * @param clientRegistrationRepository Gives the issuers of the configured providers.
+     * @return The listener of the ApplicationReadyEvent.
+     */
+    @Bean
+    ApplicationListener<ApplicationReadyEvent> providerMetadataWarmUp(
+            ProviderMetadataProperties properties,
+            ProviderMetadataCache metadataCache,
+            LazyClientRegistrationRepository clientRegistrationRepository) {
+        return event -> {
+            if (properties.isWarmUp()) {
+                metadataCache.warmUp(clientRegistrationRepository.getIssuers());
+            }
+        };
+    }
+}
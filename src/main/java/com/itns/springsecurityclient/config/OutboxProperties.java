@@ -0,0 +1,32 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the outbox dispatcher.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.outbox")
+public class OutboxProperties {
+
+    // Delay between two polls of the outbox table.
+    private Duration pollInterval = Duration.ofSeconds(1);
+
+    // Maximum number of events handled per poll.
+    private int batchSize = 100;
+
+    // The events of a poll are claimed for this long, and are sent again by any node once it is
+    // over; it must cover sending a whole batch.
+    private Duration claimTimeout = Duration.ofMinutes(5);
+
+    // After this many failed attempts the event is marked FAILED and no longer retried.
+    private int maxAttempts = 10;
+
+    // The delay before a retry doubles after each failure, up to the maximum.
+    private Duration initialBackoff = Duration.ofSeconds(5);
+
+    private Duration maxBackoff = Duration.ofMinutes(10);
+}
@@ -0,0 +1,64 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Arrays;
+
+/**
+ * It measures BCrypt on the current hardware and picks the cost factor whose median hash time is
+ * closest to the configured target latency.
+ */
+@Slf4j
+public class PasswordEncoderCalibrator {
+
+    private static final String SAMPLE_PASSWORD = "calibration-Passw0rd!";
+
+    private final PasswordHashingProperties properties;
+
+    public PasswordEncoderCalibrator(PasswordHashingProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * It hashes a sample password with each cost from min to max strength and keeps the closest one.
+     * Each step doubles the work, so it stops as soon as a cost is more than twice the target.
+     *
+     * @return The chosen cost factor.
+     */
+    public int calibrate() {
+        long targetNanos = properties.getTargetLatency().toNanos();
+        // Warm up the JIT so the first measured cost is not penalized.
+        new BCryptPasswordEncoder(4).encode(SAMPLE_PASSWORD);
+
+        int bestStrength = properties.getMinStrength();
+        long bestDistance = Long.MAX_VALUE;
+        for (int strength = properties.getMinStrength(); strength <= properties.getMaxStrength(); strength++) {
+            long median = medianEncodeNanos(strength);
+            log.debug("BCrypt cost {} takes {} ms", strength, median / 1_000_000);
+            long distance = Math.abs(median - targetNanos);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestStrength = strength;
+            }
+            if (median > 2 * targetNanos) {
+                break;
+            }
+        }
+        log.info("Calibrated BCrypt cost to {} for a target of {} ms",
+                bestStrength, properties.getTargetLatency().toMillis());
+        return bestStrength;
+    }
+
+    private long medianEncodeNanos(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long[] samples = new long[Math.max(1, properties.getCalibrationSamples())];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+}
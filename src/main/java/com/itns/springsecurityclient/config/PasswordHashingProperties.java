@@ -0,0 +1,41 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the BCrypt cost factor and of the dedicated thread pool that runs the BCrypt work, so
+ * that hashing never runs on the Tomcat request threads.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.security.password-hashing")
+public class PasswordHashingProperties {
+
+    // Number of hashing threads. BCrypt is pure CPU work, so more threads than cores only adds
+    // context switches.
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+
+    // Number of hashing tasks allowed to wait for a thread before new requests are rejected.
+    private int queueCapacity = 64;
+
+    // BCrypt cost used when calibration is disabled.
+    private int strength = 11;
+
+    // When true, the cost is measured at startup instead of using the fixed strength. Each node
+    // would pick its own cost, so keep it off in a cluster: run it once, and set the strength to the
+    // cost it logs.
+    private boolean calibrate = false;
+
+    // Median hash time the calibration tries to get closest to.
+    private Duration targetLatency = Duration.ofMillis(80);
+
+    // Calibration never picks a cost outside of these bounds.
+    private int minStrength = 10;
+
+    private int maxStrength = 14;
+
+    // Number of hashes measured per cost factor.
+    private int calibrationSamples = 5;
+}
@@ -0,0 +1,40 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the OpenID provider metadata and JWKS cache.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.oauth2.provider-metadata")
+public class ProviderMetadataProperties {
+
+    // The metadata is fetched again in the background when read after this time; the old copy is
+    // served meanwhile and kept if the provider cannot be reached.
+    private Duration refreshInterval = Duration.ofHours(1);
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    private Duration readTimeout = Duration.ofSeconds(5);
+
+    // Fetches the metadata in the background once the application is ready, instead of on the first login.
+    private boolean warmUp = true;
+
+    // JSON file of the metadata by issuer, read at startup and written after each fetch; none when not set.
+    private Path snapshotFile;
+
+    private Jwks jwks = new Jwks();
+
+    @Data
+    public static class Jwks {
+
+        // The key set is fetched again in the background when read after this time.
+        private Duration refreshInterval = Duration.ofMinutes(5);
+
+        private int maximumSize = 16;
+    }
+}
@@ -0,0 +1,31 @@
+package com.itns.springsecurityclient.config;
+
+import com.itns.springsecurityclient.filter.RateLimitFilter;
+import com.itns.springsecurityclient.filter.RateLimiter;
+
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * It registers the RateLimitFilter.
+ */
+@Configuration
+public class RateLimitConfiguration {
+
+    /**
+     * The filter runs ahead of the Spring Security filter chain, so a refused request costs neither
+     * a session lookup nor an authentication attempt.
+     *
+     * @param rateLimiter The rate limits of the endpoints.
+     * @return The registration of the RateLimitFilter.
+     */
+    @Bean
+    FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimiter rateLimiter) {
+        FilterRegistrationBean<RateLimitFilter> registration =
+                new FilterRegistrationBean<>(new RateLimitFilter(rateLimiter));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        return registration;
+    }
+}
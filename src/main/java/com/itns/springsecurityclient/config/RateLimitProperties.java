@@ -0,0 +1,53 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of the rate limits of the public endpoints.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Buckets per limit. Keys hashing to the same bucket share it, so keep it well above the
+    // number of clients active within one period. Rounded up to a power of two.
+    private int tableSize = 65_536;
+
+    // Locks per limit, so concurrent requests on different keys rarely wait on each other.
+    private int stripes = 64;
+
+    // The limits by endpoint name; the name is the "endpoint" tag of the metrics.
+    private Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    @Data
+    public static class Endpoint {
+
+        // Servlet paths of the endpoint, matched without a trailing slash or path parameters.
+        private List<String> paths = new ArrayList<>();
+
+        // Checked by the RateLimitFilter, before the security filter chain.
+        private Limit perIp;
+
+        // Checked once the request body is read, by the controller.
+        private Limit perEmail;
+    }
+
+    @Data
+    public static class Limit {
+
+        // Requests allowed in a burst.
+        private int capacity;
+
+        // Time to refill the whole capacity; the bucket refills continuously.
+        private Duration period;
+    }
+}
@@ -0,0 +1,73 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings of the verification and password reset tokens.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.tokens")
+public class TokenProperties {
+
+    private Cache cache = new Cache();
+
+    private Purge purge = new Purge();
+
+    private Generator generator = new Generator();
+
+    private SignedLinks signedLinks = new SignedLinks();
+
+    @Data
+    public static class Cache {
+
+        // Maximum number of tokens kept in memory, per token type.
+        private long maximumSize = 10_000;
+    }
+
+    @Data
+    public static class Generator {
+
+        // Random bits per token, from 96 to 384; 128 bits make a 22 character token.
+        private int entropyBits = 128;
+    }
+
+    @Data
+    public static class SignedLinks {
+
+        // Issue signed links instead of stored random tokens. Signed links are still accepted while
+        // this is off, as long as their key is listed below.
+        private boolean enabled = false;
+
+        // Id of the key that signs the new links; it must be one of the keys.
+        private String activeKey;
+
+        // Signing keys by id, base64 encoded, at least 32 bytes each. Keep a retired key here until
+        // the links it signed have expired.
+        private Map<String, String> keys = new LinkedHashMap<>();
+
+        // Same lifetimes as the stored tokens.
+        private Duration verificationTtl = Duration.ofMinutes(10);
+
+        private Duration passwordResetTtl = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Purge {
+
+        private boolean enabled = true;
+
+        // Delay between the end of a purge run and the start of the next one.
+        private Duration interval = Duration.ofMinutes(5);
+
+        // Number of rows deleted per statement, so that no run holds locks on a large range.
+        private int batchSize = 500;
+
+        // Upper bound of batches per token type and per run; the rest waits for the next run.
+        private int maxBatchesPerRun = 20;
+    }
+}
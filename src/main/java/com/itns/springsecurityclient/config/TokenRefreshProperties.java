@@ -0,0 +1,33 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the OAuth2 access token refresh.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.oauth2.token-refresh")
+public class TokenRefreshProperties {
+
+    // Runs the background refresh of the access tokens about to expire.
+    private boolean background = true;
+
+    // Delay between two background refresh runs.
+    private Duration interval = Duration.ofMinutes(1);
+
+    // Tokens expiring within this margin are refreshed in the background. Keep it above the interval.
+    private Duration margin = Duration.ofMinutes(5);
+
+    // Tokens refreshed per run at most; the rest waits for the next run.
+    private int batchSize = 100;
+
+    // A request refreshes a token expiring within this time itself, when the background missed it.
+    private Duration requestClockSkew = Duration.ofSeconds(60);
+
+    // The refresh lease of a node that died expires after this time. Keep it above the response
+    // timeout of the token endpoint.
+    private Duration lease = Duration.ofSeconds(30);
+}
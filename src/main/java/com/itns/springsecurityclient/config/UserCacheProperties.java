@@ -0,0 +1,24 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the in-memory cache of the users by email.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.users.cache")
+public class UserCacheProperties {
+
+    private long maximumSize = 10_000;
+
+    // Each node invalidates its own writes; a write made on another node is seen after this time.
+    private Duration timeToLive = Duration.ofSeconds(60);
+
+    // Also remembers the emails that have no user, for a shorter time.
+    private boolean negativeCaching = true;
+
+    private Duration negativeTimeToLive = Duration.ofSeconds(10);
+}
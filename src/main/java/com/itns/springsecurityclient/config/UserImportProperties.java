@@ -0,0 +1,24 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the bulk user import.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.users.import")
+public class UserImportProperties {
+
+    // Number of users hashed, inserted and committed together. Should match
+    // spring.jpa.properties.hibernate.jdbc.batch_size.
+    private int batchSize = 50;
+
+    // How many times a batch is retried when the hashing pool is full, and how long to wait
+    // between two tries.
+    private int hashingRetries = 20;
+
+    private Duration hashingRetryDelay = Duration.ofMillis(200);
+}
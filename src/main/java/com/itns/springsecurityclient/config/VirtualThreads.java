@@ -0,0 +1,64 @@
+package com.itns.springsecurityclient.config;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of Java 21 from code compiled for Java 11. The API is looked up
+ * by reflection, so the same build runs on both; on an older runtime, or on Java 19 and 20
+ * without --enable-preview, nothing is returned.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the runtime can start virtual threads.
+     */
+    public static boolean isSupported() {
+        return executor("virtual-check-").map(executor -> {
+            executor.shutdown();
+            return true;
+        }).orElse(false);
+    }
+
+    /**
+     * It creates an executor that starts a new virtual thread per task.
+     *
+     * @param namePrefix The prefix of the thread names, followed by a counter.
+     * @return The executor, or empty if the runtime has no virtual threads.
+     */
+    public static Optional<ExecutorService> executor(String namePrefix) {
+        return threadFactory(namePrefix).flatMap(threadFactory -> {
+            try {
+                Method newThreadPerTaskExecutor =
+                        Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return Optional.of((ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    /**
+     * It creates a factory of named virtual threads: Thread.ofVirtual().name(prefix, 0).factory().
+     *
+     * @param namePrefix The prefix of the thread names, followed by a counter.
+     * @return The factory, or empty if the runtime has no virtual threads.
+     */
+    public static Optional<ThreadFactory> threadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return Optional.of((ThreadFactory) builderType.getMethod("factory").invoke(builder));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // NoSuchMethodException before Java 19, UnsupportedOperationException for a disabled preview.
+            return Optional.empty();
+        }
+    }
+}
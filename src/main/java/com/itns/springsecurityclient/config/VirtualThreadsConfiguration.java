@@ -0,0 +1,93 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The opt-in virtual thread mode (app.virtual-threads.enabled). Each Tomcat request and each task
+ * of the application task executor, used by Spring MVC for the async requests, runs on its own
+ * virtual thread, so a request waiting on the database or a downstream service no longer holds
+ * one of server.tomcat.threads.max platform threads. The password hashing pool is CPU bound and
+ * stays on its bounded platform threads, and the database still admits as many requests at a
+ * time as the connection pool has connections. The beans are only defined when the mode is
+ * enabled and the runtime has virtual threads.
+ */
+@Configuration
+@EnableConfigurationProperties(VirtualThreadsProperties.class)
+@Slf4j
+public class VirtualThreadsConfiguration {
+
+    public VirtualThreadsConfiguration(VirtualThreadsProperties properties) {
+        if (properties.isEnabled() && !VirtualThreads.isSupported()) {
+            log.warn("app.virtual-threads.enabled is set, but this Java {} runtime has no virtual threads;"
+                    + " keeping the platform thread pools", Runtime.version().feature());
+        }
+    }
+
+    /**
+     * It replaces the thread pool of the Tomcat connector with a virtual thread per request.
+     *
+     * @return The TomcatProtocolHandlerCustomizer.
+     */
+    @Bean
+    @Conditional(VirtualThreadsEnabled.class)
+    TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            ExecutorService executor = VirtualThreads.executor("tomcat-handler-").orElseThrow();
+            protocolHandler.setExecutor(executor);
+            log.info("Tomcat requests run on virtual threads");
+        };
+    }
+
+    /**
+     * It replaces Spring Boot's applicationTaskExecutor thread pool.
+     *
+     * @return An AsyncTaskExecutor starting a virtual thread per task.
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, destroyMethod = "shutdown")
+    @Conditional(VirtualThreadsEnabled.class)
+    AsyncTaskExecutor applicationTaskExecutor() {
+        return new VirtualThreadTaskExecutor(VirtualThreads.executor("task-").orElseThrow());
+    }
+
+    static class VirtualThreadTaskExecutor extends TaskExecutorAdapter {
+
+        private final ExecutorService executor;
+
+        VirtualThreadTaskExecutor(ExecutorService executor) {
+            super(executor);
+            this.executor = executor;
+        }
+
+        public void shutdown() {
+            executor.shutdown();
+        }
+    }
+
+    // Evaluated before the VirtualThreadsProperties bean exists, so the properties are bound here.
+    static class VirtualThreadsEnabled implements Condition {
+
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return Binder.get(context.getEnvironment())
+                    .bind("app.virtual-threads", VirtualThreadsProperties.class)
+                    .map(VirtualThreadsProperties::isEnabled)
+                    .orElse(false)
+                    && VirtualThreads.isSupported();
+        }
+    }
+}
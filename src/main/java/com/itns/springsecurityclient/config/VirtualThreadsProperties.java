@@ -0,0 +1,16 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the virtual thread mode.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.virtual-threads")
+public class VirtualThreadsProperties {
+
+    // Runs the Tomcat requests and the application task executor on virtual threads. Needs a
+    // Java 21 runtime; on an older one the platform threads are kept and a warning is logged.
+    private boolean enabled = false;
+}
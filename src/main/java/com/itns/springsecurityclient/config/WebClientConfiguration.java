@@ -1,61 +1,172 @@
 package com.itns.springsecurityclient.config;
 
+import com.itns.springsecurityclient.service.CachingOAuth2AuthorizedClientService;
+import com.itns.springsecurityclient.service.RefreshAheadOAuth2AuthorizedClientManager;
+import com.itns.springsecurityclient.service.TokenRefreshLease;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProvider;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProviderBuilder;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.AuthenticatedPrincipalOAuth2AuthorizedClientRepository;
 import org.springframework.security.oauth2.client.web.DefaultOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServletOAuth2AuthorizedClientExchangeFilterFunction;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.concurrent.TimeUnit;
+
 /**
  * It configures the WebClient bean.
  */
 @Configuration
 public class WebClientConfiguration {
 
+    // Reactor context key holding the time the exchange was subscribed, read once the connection is acquired.
+    private static final String ACQUIRE_START = WebClientConfiguration.class.getName() + ".acquireStart";
+
     /**
      * The function takes an OAuth2AuthorizedClientManager as a parameter and returns a WebClient
+     * that sends its requests through the configured connection pool.
      * 
      * @param authorizedClientManager This is the bean that manages the OAuth2AuthorizedClient
      * instances.
+     * @param connectionProvider The connection pool of the client.
+     * @param properties The timeouts and protocols of the client.
+     * @param meterRegistry Where the connection acquire time is recorded.
+     * @param webClientBuilder Spring Boot's builder, which times each call in http.client.requests.
      * @return A WebClient object.
      */
     @Bean
-    WebClient webClient(OAuth2AuthorizedClientManager authorizedClientManager) {
+    WebClient webClient(WebClient.Builder webClientBuilder,
+                        OAuth2AuthorizedClientManager authorizedClientManager,
+                        ConnectionProvider connectionProvider,
+                        WebClientProperties properties,
+                        MeterRegistry meterRegistry) {
         ServletOAuth2AuthorizedClientExchangeFilterFunction oauth2Client =
                 new ServletOAuth2AuthorizedClientExchangeFilterFunction(authorizedClientManager);
-        return WebClient.builder()
+        Timer acquireTimer = Timer.builder("webclient.connection.acquire")
+                .description("Time from sending the exchange to getting a connection from the pool")
+                .tag("name", properties.getPool().getName())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .protocol(properties.getProtocols().toArray(new HttpProtocol[0]))
+                .doOnRequest((request, connection) -> request.currentContextView()
+                        .<Long>getOrEmpty(ACQUIRE_START)
+                        .ifPresent(start -> acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS)));
+        if (properties.getResponseTimeout() != null) {
+            httpClient = httpClient.responseTimeout(properties.getResponseTimeout());
+        }
+
+        return webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .apply(oauth2Client.oauth2Configuration())
+                // Added after the OAuth2 filter so a token request is not counted as waiting for the pool.
+                .filter(acquireStartFilter())
                 .build();
     }
 
+    /**
+     * It creates the connection pool of the WebClient. With metrics enabled, reactor-netty publishes
+     * the reactor.netty.connection.provider.* gauges (active, idle, pending and total connections)
+     * to the global meter registry, which Spring Boot binds to its own registry.
+     *
+     * @param properties The size, queue and eviction settings of the pool.
+     * @return The ConnectionProvider object, disposed with the application context.
+     */
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider webClientConnectionProvider(WebClientProperties properties) {
+        WebClientProperties.Pool pool = properties.getPool();
+        ConnectionProvider.Builder builder = ConnectionProvider.builder(pool.getName())
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .metrics(pool.isMetrics());
+        if (!pool.getEvictInBackground().isZero()) {
+            builder.evictInBackground(pool.getEvictInBackground());
+        }
+        return builder.build();
+    }
+
+    private static ExchangeFilterFunction acquireStartFilter() {
+        return (request, next) -> next.exchange(request)
+                .contextWrite(context -> context.put(ACQUIRE_START, System.nanoTime()));
+    }
+
     /**
      * This function is used to create an OAuth2AuthorizedClientManager object that is used to manage
-     * the OAuth2AuthorizedClient objects
+     * the OAuth2AuthorizedClient objects. Only one refresh of a principal's access token runs at a
+     * time, and the AccessTokenRefreshJob renews the tokens a margin before they expire.
      * 
      * @param clientRegistrationRepository This is a bean that contains the client registration
      * information.
      * @param authorizedClientRepository This is the repository that stores the authorized client.
+     * @param authorizedClientService The store behind the repository, used outside of a request.
+     * @param refreshLease The claim on a refresh, so that only one node sends a refresh token.
+     * @param properties The refresh margins.
+     * @param meterRegistry Where the refreshes are counted.
      * @return The OAuth2AuthorizedClientManager is being returned.
      */
     @Bean
-    OAuth2AuthorizedClientManager authorizedClientManager(
+    RefreshAheadOAuth2AuthorizedClientManager authorizedClientManager(
             ClientRegistrationRepository clientRegistrationRepository,
-            OAuth2AuthorizedClientRepository authorizedClientRepository) {
+            OAuth2AuthorizedClientRepository authorizedClientRepository,
+            CachingOAuth2AuthorizedClientService authorizedClientService,
+            TokenRefreshLease refreshLease,
+            TokenRefreshProperties properties,
+            MeterRegistry meterRegistry) {
 
         OAuth2AuthorizedClientProvider authorizedClientProvider =
                 OAuth2AuthorizedClientProviderBuilder.builder()
                         .authorizationCode()
-                        .refreshToken()
+                        .refreshToken(refreshToken -> refreshToken.clockSkew(properties.getRequestClockSkew()))
                         .build();
         DefaultOAuth2AuthorizedClientManager authorizedClientManager = new DefaultOAuth2AuthorizedClientManager(
                 clientRegistrationRepository, authorizedClientRepository);
         authorizedClientManager.setAuthorizedClientProvider(authorizedClientProvider);
 
-        return authorizedClientManager;
+        // Not a bean: the @RegisteredOAuth2AuthorizedClient resolver only uses a single manager bean.
+        AuthorizedClientServiceOAuth2AuthorizedClientManager backgroundManager =
+                new AuthorizedClientServiceOAuth2AuthorizedClientManager(
+                        clientRegistrationRepository, authorizedClientService);
+        backgroundManager.setAuthorizedClientProvider(OAuth2AuthorizedClientProviderBuilder.builder()
+                .refreshToken(refreshToken -> refreshToken.clockSkew(properties.getMargin()))
+                .build());
+
+        return new RefreshAheadOAuth2AuthorizedClientManager(authorizedClientManager, backgroundManager,
+                authorizedClientService, refreshLease, properties.getRequestClockSkew(), meterRegistry);
+    }
+
+    /**
+     * The authorized clients of the authenticated users are kept in the shared store instead of the
+     * HTTP session, so a user is not asked to authorize again on another node or after a failover.
+     *
+     * @param authorizedClientService The shared, cache-fronted store of the authorized clients.
+     * @return The OAuth2AuthorizedClientRepository used by the login, the client filter and the
+     * authorizedClientManager.
+     */
+    @Bean
+    OAuth2AuthorizedClientRepository authorizedClientRepository(
+            OAuth2AuthorizedClientService authorizedClientService) {
+        return new AuthenticatedPrincipalOAuth2AuthorizedClientRepository(authorizedClientService);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package com.itns.springsecurityclient.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import reactor.netty.http.HttpProtocol;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the HTTP client used to call the resource server.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.webclient")
+public class WebClientProperties {
+
+    // Time allowed to open the TCP connection.
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    // Time allowed between the request being sent and the response headers; none when not set.
+    private Duration responseTimeout = Duration.ofSeconds(10);
+
+    // HTTP11, H2 (over TLS) or H2C (cleartext). Several values let the server pick.
+    private List<HttpProtocol> protocols = new ArrayList<>(List.of(HttpProtocol.HTTP11));
+
+    private Pool pool = new Pool();
+
+    @Data
+    public static class Pool {
+
+        // Also the "name" tag of the reactor.netty.connection.provider.* metrics.
+        private String name = "resource-server";
+
+        // Connections open at the same time, per remote address.
+        private int maxConnections = 50;
+
+        // Requests allowed to wait for a free connection; the next ones fail right away.
+        private int pendingAcquireMaxCount = 500;
+
+        // Time a request may wait for a free connection.
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+        // Idle connections are closed after this time, before the server or a proxy drops them.
+        private Duration maxIdleTime = Duration.ofSeconds(20);
+
+        // Connections are recycled after this time, so DNS and load balancer changes get picked up.
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+
+        // Period of the background eviction of idle and expired connections; none when zero.
+        private Duration evictInBackground = Duration.ofSeconds(30);
+
+        // Publishes the active, idle, pending and total connection gauges to the meter registry.
+        private boolean metrics = true;
+    }
+}
@@ -1,11 +1,13 @@
 package com.itns.springsecurityclient.config;
 
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.security.config.Customizer;
 @EnableWebSecurity
 public class WebSecurityConfig {
@@ -14,29 +16,45 @@ public class WebSecurityConfig {
     private static final String[] WHITE_LIST_URLS = {
             "/hello",
             "/register",
+            "/register/async",
             "/verifyRegistration*",
-            "/resendVerifyToken*"
+            "/resendVerifyToken*",
+            "/actuator/health"
     };
+
+    // Granted to the users the authorization server gives the admin scope.
+    static final String ADMIN_AUTHORITY = "SCOPE_admin";
     
     /**
      * The BCryptPasswordEncoder is a password hashing function designed by Niels Provos and David
-     * Mazières, based on the Blowfish cipher, and presented at USENIX in 1999
+     * Mazières, based on the Blowfish cipher, and presented at USENIX in 1999. The cost is the
+     * configured strength, the same on every node, or, when calibration is on, the one closest to
+     * the target latency on this machine. Hashes with a lower cost report an upgrade.
      * 
-     * @return A new instance of BCryptPasswordEncoder with a strength of 11.
+     * @param properties The password hashing settings.
+     * @return A new instance of CostAwarePasswordEncoder.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(11);
+    public PasswordEncoder passwordEncoder(PasswordHashingProperties properties) {
+        int strength = properties.isCalibrate()
+                ? new PasswordEncoderCalibrator(properties).calibrate()
+                : properties.getStrength();
+        return new CostAwarePasswordEncoder(strength);
     }
     
     /**
-     * "This function is used to configure the security filter chain for the application. 
+     * "This function is used to configure the security filter chain for the application. The chain
+     * also guards the management port (management.server.port), which is not published outside the
+     * cluster network: Prometheus scrapes the actuator endpoints there without credentials. On the
+     * application port the other actuator endpoints need the admin authority.
      * 
      * @param http The HttpSecurity object that is used to configure the security filter chain.
+     * @param environment Where the management port is read.
      * @return A SecurityFilterChain
      */
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain securityFilterChain(HttpSecurity http, Environment environment) throws Exception {
+        int managementPort = managementPort(environment);
         http
                 .cors()
                 .and()
@@ -44,6 +62,13 @@ public class WebSecurityConfig {
                 .disable()
                 .authorizeHttpRequests()
                 .antMatchers(WHITE_LIST_URLS).permitAll()
+                .requestMatchers(new AndRequestMatcher(
+                        request -> request.getLocalPort() == managementPort,
+                        new AntPathRequestMatcher("/actuator/**"))).permitAll()
+                .antMatchers("/actuator/**").hasAuthority(ADMIN_AUTHORITY)
+                // mvcMatchers, so that /api/users/import/ and the like are covered as well.
+                .mvcMatchers("/api/users/import").hasAuthority(ADMIN_AUTHORITY)
+                .mvcMatchers("/api/admin/**").hasAuthority(ADMIN_AUTHORITY)
                 .antMatchers("/api/**").authenticated()
                 .and()
                 .oauth2Login(oauth2login ->
@@ -52,4 +77,21 @@ public class WebSecurityConfig {
 
         return http.build();
     }
+
+    /**
+     * It reads the management port, which must differ from the application port: the chain could
+     * not tell the scrapes from the other requests otherwise.
+     *
+     * @param environment Where the ports are read.
+     * @return The management port, or -1 when the actuator endpoints are on the application port.
+     */
+    static int managementPort(Environment environment) {
+        int managementPort = environment.getProperty("management.server.port", Integer.class, -1);
+        // 0 picks a free port, different from the one of the application.
+        if (managementPort > 0 && managementPort == environment.getProperty("server.port", Integer.class, 8080)) {
+            throw new IllegalStateException("management.server.port must differ from server.port ("
+                    + managementPort + "), or be left unset");
+        }
+        return managementPort;
+    }
 } 
@@ -0,0 +1,33 @@
+package com.itns.springsecurityclient.controller;
+
+import com.itns.springsecurityclient.jfr.JfrEventSummarizer;
+import com.itns.springsecurityclient.jfr.LatencySummary;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * This controller serves the diagnostics of the running node. The caller needs the admin
+ * authority, see WebSecurityConfig.
+ */
+@RestController
+public class AdminController {
+
+    @Autowired
+    private JfrEventSummarizer jfrEventSummarizer;
+
+    /**
+     * It returns the latency of the hashing, the token validations, the downstream calls and the
+     * registration emails over the last summary windows, a minute by default, as recorded by
+     * the JFR events.
+     *
+     * @return The summaries by kind of event.
+     */
+    @GetMapping("/api/admin/jfr")
+    public Map<String, LatencySummary> jfr() {
+        return jfrEventSummarizer.getSummaries();
+    }
+}
@@ -1,11 +1,17 @@
 package com.itns.springsecurityclient.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
 import org.springframework.security.oauth2.client.annotation.RegisteredOAuth2AuthorizedClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import com.itns.springsecurityclient.jfr.DownstreamCallEvent;
 
 import java.security.Principal;
 
@@ -19,21 +25,42 @@ public class HelloController {
     @Autowired
     private WebClient webClient;
 
+    // The users endpoint of the resource server.
+    @Value("${app.resource-server.users-uri}")
+    private String usersUri;
+
 	@GetMapping("/api/hello")
     public String hello(Principal principal) {
         return "Hello " +principal.getName()+", Vous avez access à la page accueil . Cette page va constituer notre dashboard par exemple!!";
     }
 	
+    /**
+     * It returns the users of the resource server. The Mono is not blocked on: the servlet thread is
+     * released while the downstream call is in flight, and the response is written when it completes.
+     * Each call emits a DownstreamCallEvent with its latency and status.
+     *
+     * @param client The authorized client used to call the resource server.
+     * @return The users of the resource server.
+     */
     @GetMapping("/api/users")
-    public String[] users(
+    public Mono<String[]> users(
             @RegisteredOAuth2AuthorizedClient("api-client-authorization-code")
                     OAuth2AuthorizedClient client){
-        return this.webClient
-                .get()
-                .uri("http://127.0.0.1:8090/api/users")
-                .attributes(oauth2AuthorizedClient(client))
-                .retrieve()
-                .bodyToMono(String[].class)
-                .block();
+        return Mono.defer(() -> {
+            DownstreamCallEvent event = new DownstreamCallEvent(
+                    client.getClientRegistration().getRegistrationId(), usersUri);
+            event.begin();
+            return this.webClient
+                    .get()
+                    .uri(usersUri)
+                    .attributes(oauth2AuthorizedClient(client))
+                    .retrieve()
+                    .toEntity(String[].class)
+                    .doOnSuccess(response -> event.complete(response.getStatusCodeValue()))
+                    .doOnError(e -> event.complete(e instanceof WebClientResponseException
+                            ? ((WebClientResponseException) e).getRawStatusCode()
+                            : -1))
+                    .map(HttpEntity::getBody);
+        });
     }
 }
@@ -4,19 +4,19 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.itns.springsecurityclient.entity.User;
 import com.itns.springsecurityclient.entity.VerificationToken;
-import com.itns.springsecurityclient.event.RegistrationCompleteEvent;
+import com.itns.springsecurityclient.filter.RateLimiter;
+import com.itns.springsecurityclient.mail.MailService;
 import com.itns.springsecurityclient.model.PasswordModel;
 import com.itns.springsecurityclient.model.UserModel;
+import com.itns.springsecurityclient.service.TokenValidationResult;
 import com.itns.springsecurityclient.service.UserService;
 
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -31,13 +31,17 @@ public class RegistrationController {
 		 @Autowired 
 	    private UserService userService;
 
-	    // Publishing an event.
+		// Queues the emails, they are sent in the background.
 		@Autowired
-	    private ApplicationEventPublisher publisher;
+	    private MailService mailService;
+
+		// The per-IP limits are checked by the RateLimitFilter, the per-email ones here.
+		@Autowired
+	    private RateLimiter rateLimiter;
 
 	    /**
-		 * It takes a userModel object, creates a user object from it, and then publishes an event to the
-		 * event bus
+		 * It takes a userModel object and creates a user object from it. The RegistrationCompleteEvent
+		 * is stored in the outbox with the user, and the verification email is sent in the background.
 		 * 
 		 * @param userModel This is the object that will be sent from the frontend.
 		 * @param request The request object that contains the user's email address.
@@ -45,24 +49,38 @@ public class RegistrationController {
 		 */
 		@PostMapping("/register")
 	    public String registerUser(@RequestBody UserModel userModel, final HttpServletRequest request) {
-	        User user = userService.registerUser(userModel);
-	        publisher.publishEvent(new RegistrationCompleteEvent(
-	                user,
-	                applicationUrl(request)
-	        ));
+	        rateLimiter.checkEmail("register", userModel.getEmail());
+	        userService.registerUser(userModel, applicationUrl(request));
 	        return "Success";
 	    } 
+
+	    /**
+		 * Same as registerUser, but the request thread is released while the password is hashed. The
+		 * response is written once the user and the event are saved.
+		 * 
+		 * @param userModel This is the object that will be sent from the frontend.
+		 * @param request The request object that contains the user's email address.
+		 * @return A future completed with "Success"
+		 */
+		@PostMapping("/register/async")
+	    public CompletableFuture<String> registerUserAsync(@RequestBody UserModel userModel,
+	                                                       final HttpServletRequest request) {
+	        rateLimiter.checkEmail("register", userModel.getEmail());
+	        return userService.registerUserAsync(userModel, applicationUrl(request))
+	                .thenApply(user -> "Success");
+	    }
 	    
 	    /**
-		 * This function is used to verify the user's email address
+		 * This function is used to verify the user's email address. The token is consumed, so the link
+		 * works once.
 		 * 
 		 * @param token The token that was sent to the user's email address.
 		 * @return A string
 		 */
 		@GetMapping("/verifyRegistration")
 	    public String verifyRegistration(@RequestParam("token") String token) {
-	        String result = userService.validateVerificationToken(token);
-	        if(result.equalsIgnoreCase("valid")) {
+	        TokenValidationResult result = userService.validateVerificationToken(token);
+	        if(result == TokenValidationResult.VALID) {
 	            return "Utilisateur vérifié avec success";
 	        }
 	        return "Bad User";
@@ -96,19 +114,20 @@ public class RegistrationController {
 		 */
 		@PostMapping("/resetPassword")
 	    public String resetPassword(@RequestBody PasswordModel passwordModel, HttpServletRequest request) {
+	        rateLimiter.checkEmail("reset-password", passwordModel.getEmail());
 	        User user = userService.findUserByEmail(passwordModel.getEmail());
 	        String url = "";
 	        if(user!=null) {
-	            String token = UUID.randomUUID().toString();
-	            userService.createPasswordResetTokenForUser(user,token);
+	            String token = userService.createPasswordResetToken(user);
 	            url = passwordResetTokenMail(user,applicationUrl(request), token);
 	        }
 	        return url;
 	    }
 	    
 	    /**
-		 * It takes a token and a password model as input, validates the token, and if the token is valid,
-		 * it changes the password of the user associated with the token to the new password
+		 * It takes a token and a password model as input and, if the token is valid, changes the
+		 * password of the user associated with the token to the new password and consumes the token,
+		 * in one call to the service.
 		 * 
 		 * @param token The token that was sent to the user's email address.
 		 * @param passwordModel This is the object that will hold the new password.
@@ -117,17 +136,27 @@ public class RegistrationController {
 		@PostMapping("/savePassword")
 	    public String savePassword(@RequestParam("token") String token,
 	                               @RequestBody PasswordModel passwordModel) {
-	        String result = userService.validatePasswordResetToken(token);
-	        if(!result.equalsIgnoreCase("valid")) {
-	            return "Invalid Token";
-	        }
-	        Optional<User> user = userService.getUserByPasswordResetToken(token);
-	        if(user.isPresent()) {
-	            userService.changePassword(user.get(), passwordModel.getNewPassword());
-	            return "Password Reset Successfully";
-	        } else {
+	        TokenValidationResult result = userService.resetPassword(token, passwordModel.getNewPassword());
+	        if(result != TokenValidationResult.VALID) {
 	            return "Invalid Token";
 	        }
+	        return "Password Reset Successfully";
+	    }
+
+	    /**
+		 * Same as savePassword, but the new password is hashed without holding the request thread.
+		 * 
+		 * @param token The token that was sent to the user's email address.
+		 * @param passwordModel This is the object that will hold the new password.
+		 * @return A future completed with the result message
+		 */
+		@PostMapping("/savePassword/async")
+	    public CompletableFuture<String> savePasswordAsync(@RequestParam("token") String token,
+	                                                       @RequestBody PasswordModel passwordModel) {
+	        return userService.resetPasswordAsync(token, passwordModel.getNewPassword())
+	                .thenApply(result -> result == TokenValidationResult.VALID
+	                        ? "Password Reset Successfully"
+	                        : "Invalid Token");
 	    }
 	    
 	    /**
@@ -140,13 +169,25 @@ public class RegistrationController {
 		@PostMapping("/changePassword")
 	    public String changePassword(@RequestBody PasswordModel passwordModel){
 	        User user = userService.findUserByEmail(passwordModel.getEmail());
-	        if(!userService.checkIfValidOldPassword(user,passwordModel.getOldPassword())) {
+	        if(!userService.changePassword(user, passwordModel.getOldPassword(), passwordModel.getNewPassword())) {
 	            return "Invalid Old Password";
 	        }
-	        //Save New Password
-	        userService.changePassword(user,passwordModel.getNewPassword());
 	        return "Password Modifié avec Success";
 	    }
+
+	    /**
+		 * Same as changePassword, but both the check of the old password and the hash of the new one
+		 * run on the hashing pool.
+		 * 
+		 * @param passwordModel This is the object that will be sent from the frontend.
+		 * @return A future completed with the result message
+		 */
+		@PostMapping("/changePassword/async")
+	    public CompletableFuture<String> changePasswordAsync(@RequestBody PasswordModel passwordModel){
+	        User user = userService.findUserByEmail(passwordModel.getEmail());
+	        return userService.changePasswordAsync(user, passwordModel.getOldPassword(), passwordModel.getNewPassword())
+	                .thenApply(changed -> changed ? "Password Modifié avec Success" : "Invalid Old Password");
+	    }
 	    
 	    /**
 		 * It sends a mail to the user with a link to reset the password.
@@ -162,9 +203,7 @@ public class RegistrationController {
 	                        + "/savePassword?token="
 	                        + token;
 
-	        //sendVerificationEmail()
-	        log.info("Cliquer sur le link pour reinitialiser votre Mot de Passe: {}",
-	                url);
+	        mailService.sendPasswordResetEmail(user, url);
 	        return url;
 	    }
 	    
@@ -181,9 +220,7 @@ public class RegistrationController {
 	                        + "/verifyRegistration?token="
 	                        + verificationToken.getToken();
 
-	        //sendVerificationEmail()
-	        log.info("Cliquer sur le link pour verifier votre account: {}",
-	                url);
+	        mailService.sendVerificationEmail(user, url);
 	    }
 	    
 	    /**
@@ -0,0 +1,54 @@
+package com.itns.springsecurityclient.controller;
+
+import com.itns.springsecurityclient.model.UserImportResult;
+import com.itns.springsecurityclient.service.UserImportService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * This controller handles the bulk import of users from partner systems. The caller needs the
+ * admin authority, see WebSecurityConfig.
+ */
+@RestController
+public class UserImportController {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    /**
+     * It imports a JSON array of users. The body is streamed, it is never held in memory as a whole.
+     *
+     * @param request The request whose body holds the users.
+     * @return The number of imported and skipped users.
+     */
+    @PostMapping(value = "/api/users/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public UserImportResult importJson(HttpServletRequest request) throws IOException {
+        return userImportService.importJson(request.getInputStream(), applicationUrl(request));
+    }
+
+    /**
+     * It imports users from CSV lines: firstName,lastName,email,password.
+     *
+     * @param request The request whose body holds the users.
+     * @return The number of imported and skipped users.
+     */
+    @PostMapping(value = "/api/users/import", consumes = "text/csv")
+    public UserImportResult importCsv(HttpServletRequest request) throws IOException {
+        return userImportService.importCsv(request.getInputStream(), applicationUrl(request));
+    }
+
+    /**
+     * @param request The request.
+     * @return The application URL, including the port number, for the verification links.
+     */
+    private String applicationUrl(HttpServletRequest request) {
+        return "http://" + request.getServerName() + ":" + request.getServerPort() + request.getContextPath();
+    }
+}
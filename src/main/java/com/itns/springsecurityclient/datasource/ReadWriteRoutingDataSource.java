@@ -0,0 +1,69 @@
+package com.itns.springsecurityclient.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the read-only transactions to the replica pools, round robin, and everything else to the
+ * primary pool: the read-write transactions, the statements run outside of a transaction, and the
+ * reads that ReadYourWrites keeps on the primary. The route is picked when the connection is
+ * obtained, so this must sit behind a LazyConnectionDataSourceProxy: the transaction managers
+ * obtain the connection before the transaction is marked read-only.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+
+    private final List<HikariDataSource> replicas;
+
+    private final String[] replicaKeys;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param primary The pool of the primary, named after its route.
+     * @param replicas The pools of the replicas, each named after its route.
+     */
+    public ReadWriteRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.replicaKeys = new String[replicas.size()];
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaKeys[i] = replicas.get(i).getPoolName();
+            targets.put(replicaKeys[i], replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaKeys.length == 0
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || ReadYourWrites.isPrimaryRequired()) {
+            return PRIMARY;
+        }
+        return replicaKeys[Math.floorMod(next.getAndIncrement(), replicaKeys.length)];
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
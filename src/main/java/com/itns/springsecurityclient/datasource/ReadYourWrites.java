@@ -0,0 +1,99 @@
+package com.itns.springsecurityclient.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itns.springsecurityclient.config.DataSourceRoutingProperties;
+
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Hides the replication lag from the user who just wrote: for a short window after a write, the
+ * reads keyed the same way go to the primary instead of a replica. The keys identify a user or one
+ * of its tokens, such as the email or the token value, since a token is looked up before its user
+ * is known. Each node remembers its own writes only, like the user and token caches.
+ */
+@Component
+public class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private final boolean enabled;
+
+    // The keys written during the last window; the value is not used.
+    private final Cache<String, Boolean> recentWrites;
+
+    public ReadYourWrites(DataSourceRoutingProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.recentWrites = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getReadYourWritesWindow())
+                .maximumSize(properties.getReadYourWritesMaximumSize())
+                .build();
+    }
+
+    /**
+     * It keeps the next reads of these keys on the primary for the window. It must be called once
+     * the write is committed, or the window starts too early.
+     *
+     * @param keys The keys the written rows are read by.
+     */
+    public void recordWrite(String... keys) {
+        if (!enabled) {
+            return;
+        }
+        for (String key : keys) {
+            if (key != null) {
+                recentWrites.put(key, Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * It runs the read on the primary if the key was written during the window, and lets it go to
+     * a replica otherwise. The read must start its own transaction, such as a repository call.
+     *
+     * @param key The key the read is made by.
+     * @param read The read.
+     * @return The result of the read.
+     */
+    public <T> T read(String key, Supplier<T> read) {
+        if (!enabled || key == null || recentWrites.getIfPresent(key) == null) {
+            return read.get();
+        }
+        return onPrimary(read);
+    }
+
+    private static <T> T onPrimary(Supplier<T> read) {
+        Boolean previous = PRIMARY_REQUIRED.get();
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_REQUIRED.remove();
+            }
+        }
+    }
+
+    /**
+     * It runs the read on the primary whatever was written, for the reads that decide whether a
+     * one-time link is still valid.
+     *
+     * @param read The read, which must start its own transaction.
+     * @return The result of the read.
+     */
+    public <T> T primary(Supplier<T> read) {
+        if (!enabled) {
+            return read.get();
+        }
+        return onPrimary(read);
+    }
+
+    /**
+     * @return true if the current thread is inside a read that must not go to a replica.
+     */
+    static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.itns.springsecurityclient.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A row written each time an authorized client is saved or removed, so that the other nodes drop
+ * their cached copy. The rows are read by creation time and deleted after a retention period.
+ */
+@Entity
+@Table(indexes = @Index(name = "IDX_AUTHORIZED_CLIENT_INVALIDATION_CREATED", columnList = "createdAt"))
+@Data
+@NoArgsConstructor
+public class AuthorizedClientInvalidation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String clientRegistrationId;
+
+    @Column(nullable = false, length = 200)
+    private String principalName;
+
+    // The node that made the change already has the new state in its cache.
+    @Column(nullable = false, length = 36)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private Date createdAt;
+
+    public AuthorizedClientInvalidation(String clientRegistrationId, String principalName, String nodeId) {
+        this.clientRegistrationId = clientRegistrationId;
+        this.principalName = principalName;
+        this.nodeId = nodeId;
+        this.createdAt = new Date();
+    }
+}
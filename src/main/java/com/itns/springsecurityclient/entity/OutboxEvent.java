@@ -0,0 +1,64 @@
+package com.itns.springsecurityclient.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * An event written in the same transaction as the change that produced it, and delivered later by
+ * the OutboxDispatcher. The row is deleted once the event is handled.
+ */
+@Entity
+// The dispatcher polls the pending events whose next attempt is due, then reads back its claim.
+@Table(indexes = {
+        @Index(name = "IDX_OUTBOX_EVENT_DUE", columnList = "status,nextAttemptAt"),
+        @Index(name = "IDX_OUTBOX_EVENT_CLAIM", columnList = "claimedBy")
+})
+@Data
+@NoArgsConstructor
+public class OutboxEvent {
+
+    public enum Status {
+        PENDING,
+        // Gave up after the maximum number of attempts, kept for inspection.
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String eventType;
+
+    @Column(nullable = false, length = 2000)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private Date createdAt;
+
+    @Column(nullable = false)
+    private Date nextAttemptAt;
+
+    private int attempts;
+
+    @Column(length = 500)
+    private String lastError;
+
+    // The poll of the OutboxDispatcher sending the event, until nextAttemptAt; null once it is over.
+    @Column(length = 36)
+    private String claimedBy;
+
+    public OutboxEvent(String eventType, String payload) {
+        this.eventType = eventType;
+        this.payload = payload;
+        this.createdAt = new Date();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
@@ -11,6 +11,9 @@ import java.util.Date;
  * A class that is used to reset the password of a user.
  */
 @Entity
+// The token is looked up on every validation and the purge job scans by expiration time.
+@Table(uniqueConstraints = @UniqueConstraint(name = "UK_PASSWORD_TOKEN_TOKEN", columnNames = "token"),
+        indexes = @Index(name = "IDX_PASSWORD_TOKEN_EXPIRATION", columnList = "expirationTime"))
 @Data
 @NoArgsConstructor
 public class PasswordResetToken {
@@ -20,6 +23,7 @@ public class PasswordResetToken {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(nullable = false, length = 64)
     private String token;
 
     private Date expirationTime;
@@ -5,15 +5,25 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 import lombok.Data;
 
+import java.util.Locale;
+
 @Entity
+// Users are looked up by email on every password reset and change.
+@Table(uniqueConstraints = @UniqueConstraint(name = "UK_USER_EMAIL", columnNames = "email"))
 @Data
 public class User {
 	
+    // A pooled sequence instead of IDENTITY, so that Hibernate can batch the inserts. MySQL has no
+    // sequences, Hibernate keeps the counter in the user_seq table.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     private Long id;
     private String firstName;
     private String lastName;
@@ -25,4 +35,17 @@ public class User {
     private String role;
     private boolean enabled = false;
 
+    /**
+     * The email is stored trimmed and lower-cased, so that the unique index and the lookups do not
+     * depend on how the user typed it.
+     *
+     * @param email The email address of the user.
+     */
+    public void setEmail(String email) {
+        this.email = normalizeEmail(email);
+    }
+
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
 }
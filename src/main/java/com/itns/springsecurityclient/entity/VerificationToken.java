@@ -11,16 +11,22 @@ import java.util.Date;
  * A class that is used to create a token for the user to verify their email.
  */
 @Entity
+// The token is looked up on every validation and the purge job scans by expiration time.
+@Table(uniqueConstraints = @UniqueConstraint(name = "UK_VERIFY_TOKEN_TOKEN", columnNames = "token"),
+        indexes = @Index(name = "IDX_VERIFY_TOKEN_EXPIRATION", columnList = "expirationTime"))
 @Data
 @NoArgsConstructor
 public class VerificationToken {
 
     //Expiration time 10 miutes
     private static  final int EXPIRATION_TIME = 10;
+    // Pooled sequence so that tokens created by the bulk import are inserted in JDBC batches.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "verification_token_seq")
+    @SequenceGenerator(name = "verification_token_seq", sequenceName = "verification_token_seq", allocationSize = 50)
     private Long id;
 
+    @Column(nullable = false, length = 64)
     private String token;
 
     private Date expirationTime;
@@ -0,0 +1,23 @@
+package com.itns.springsecurityclient.event;
+
+import java.time.Duration;
+
+/**
+ * Thrown by an OutboxEventHandler that cannot handle the event yet, for a reason that is not a
+ * failure. The OutboxDispatcher tries the event again after the delay, without counting an attempt.
+ */
+public class OutboxEventDeferredException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration delay;
+
+    public OutboxEventDeferredException(String message, Duration delay) {
+        super(message);
+        this.delay = delay;
+    }
+
+    public Duration getDelay() {
+        return delay;
+    }
+}
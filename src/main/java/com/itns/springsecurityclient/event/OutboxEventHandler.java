@@ -0,0 +1,12 @@
+package com.itns.springsecurityclient.event;
+
+/**
+ * A handler of the events stored in the outbox. It runs in the transaction that deletes the event,
+ * so its database changes and the removal of the event are committed together.
+ */
+public interface OutboxEventHandler {
+
+    String getEventType();
+
+    void handle(String payload) throws Exception;
+}
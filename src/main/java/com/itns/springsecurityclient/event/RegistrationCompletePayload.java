@@ -0,0 +1,19 @@
+package com.itns.springsecurityclient.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The part of a RegistrationCompleteEvent that is stored in the outbox.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RegistrationCompletePayload {
+
+    public static final String EVENT_TYPE = "RegistrationComplete";
+
+    private Long userId;
+    private String applicationUrl;
+}
@@ -0,0 +1,26 @@
+package com.itns.springsecurityclient.event.listener;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class stops the application as soon as it is ready to serve, when app.startup.exit-when-ready
+ * is set. It makes the training run of the AppCDS archive (mvn -Pcds package) and the startup
+ * measurements of StartupBenchmark.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.startup", name = "exit-when-ready", havingValue = "true")
+@Slf4j
+public class ExitWhenReadyListener implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        log.info("Started, exiting as app.startup.exit-when-ready is set");
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
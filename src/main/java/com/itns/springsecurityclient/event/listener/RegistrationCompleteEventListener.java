@@ -1,48 +1,79 @@
 package com.itns.springsecurityclient.event.listener;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
 import com.itns.springsecurityclient.entity.User;
+import com.itns.springsecurityclient.event.OutboxEventHandler;
 import com.itns.springsecurityclient.event.RegistrationCompleteEvent;
+import com.itns.springsecurityclient.event.RegistrationCompletePayload;
+import com.itns.springsecurityclient.jfr.RegistrationMailEvent;
+import com.itns.springsecurityclient.mail.MailService;
 import com.itns.springsecurityclient.service.UserService;
 
-import java.util.UUID;
+import java.util.Optional;
 
 /**
- * This class listens for RegistrationCompleteEvent events and when it receives one, it sends an email
- * to the user.
+ * This class handles the RegistrationCompleteEvent events delivered by the outbox, and for each one
+ * it sends an email to the user.
  */
 @Component
 @Slf4j
-public class RegistrationCompleteEventListener implements
-        ApplicationListener<RegistrationCompleteEvent> {
+public class RegistrationCompleteEventListener implements OutboxEventHandler {
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MailService mailService;
+
+    @Override
+    public String getEventType() {
+        return RegistrationCompletePayload.EVENT_TYPE;
+    }
+
+    /**
+     * It rebuilds the event from the outbox payload. A user deleted in the meantime is skipped.
+     *
+     * @param payload The RegistrationCompletePayload as JSON.
+     */
+    @Override
+    public void handle(String payload) throws Exception {
+        RegistrationCompletePayload registration
+                = objectMapper.readValue(payload, RegistrationCompletePayload.class);
+        Optional<User> user = userService.findUserById(registration.getUserId());
+        if (user.isEmpty()) {
+            log.warn("User {} no longer exists, no verification email sent", registration.getUserId());
+            return;
+        }
+        onRegistrationComplete(new RegistrationCompleteEvent(user.get(), registration.getApplicationUrl()));
+    }
+
 /**
  * The function is called when a user registers, and it creates a verification token for the user and
  * sends an email to the user with a link to verify the account
  * 
  * @param event The event that was fired.
  */
-    @Override
-    public void onApplicationEvent(RegistrationCompleteEvent event) {
+    public void onRegistrationComplete(RegistrationCompleteEvent event) {
         //Create the Verification Token for the User with Link
         User user = event.getUser();
-        String token = UUID.randomUUID().toString();
-        userService.saveVerificationTokenForUser(token,user);
+        RegistrationMailEvent mailEvent = new RegistrationMailEvent(user.getId());
+        mailEvent.begin();
+        String token = userService.createVerificationToken(user);
         //Send Mail to user
         String url =
                 event.getApplicationUrl()
                         + "/verifyRegistration?token="
                         + token;
 
-        //sendVerificationEmail()
-        log.info("Click the link to verify your account: {}",
-                url);
+        // The email is stored in the outbox with the token, and sent once both are committed.
+        mailService.sendVerificationEmail(user, url);
+        mailEvent.complete();
     }
 }
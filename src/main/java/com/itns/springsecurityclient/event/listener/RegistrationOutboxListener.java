@@ -0,0 +1,27 @@
+package com.itns.springsecurityclient.event.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.itns.springsecurityclient.event.RegistrationCompleteEvent;
+import com.itns.springsecurityclient.event.RegistrationCompletePayload;
+import com.itns.springsecurityclient.service.OutboxService;
+
+/**
+ * This class stores every RegistrationCompleteEvent in the outbox. It runs synchronously inside the
+ * transaction that saved the user, so the user and the event are committed together. The event is
+ * then handled by the RegistrationCompleteEventListener, off the request thread.
+ */
+@Component
+public class RegistrationOutboxListener {
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @EventListener
+    public void onRegistrationComplete(RegistrationCompleteEvent event) {
+        outboxService.append(RegistrationCompletePayload.EVENT_TYPE,
+                new RegistrationCompletePayload(event.getUser().getId(), event.getApplicationUrl()));
+    }
+}
@@ -0,0 +1,18 @@
+package com.itns.springsecurityclient.filter;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when an email is over the rate limit of an endpoint. It is mapped to a 429 so that the
+ * request stops before any password is hashed or any token is written.
+ */
+@ResponseStatus(value = HttpStatus.TOO_MANY_REQUESTS, reason = "Too many requests")
+public class RateLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RateLimitExceededException(String endpoint) {
+        super("Rate limit exceeded on " + endpoint);
+    }
+}
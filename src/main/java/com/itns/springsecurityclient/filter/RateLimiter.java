@@ -0,0 +1,123 @@
+package com.itns.springsecurityclient.filter;
+
+import com.itns.springsecurityclient.config.RateLimitProperties;
+import com.itns.springsecurityclient.entity.User;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The rate limits of the public endpoints, per client IP and per email. The buckets and the
+ * rejection counters are all created at startup, so checking a request allocates nothing.
+ */
+@Component
+public class RateLimiter {
+
+    private final boolean enabled;
+
+    // Read-only after construction.
+    private final Map<String, EndpointLimit> endpointsByName = new HashMap<>();
+
+    private final Map<String, EndpointLimit> endpointsByPath = new HashMap<>();
+
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        properties.getEndpoints().forEach((name, endpoint) -> {
+            EndpointLimit limit = new EndpointLimit(
+                    buckets(endpoint.getPerIp(), properties), rejectedCounter(meterRegistry, name, "ip"),
+                    buckets(endpoint.getPerEmail(), properties), rejectedCounter(meterRegistry, name, "email"));
+            endpointsByName.put(name, limit);
+            endpoint.getPaths().forEach(path -> endpointsByPath.put(normalizePath(path), limit));
+        });
+    }
+
+    /**
+     * It checks the per-IP limit of the endpoint served at the path. The path is normalized the
+     * way the handler mappings match it, so that /register/, /register;x=1 or //register are the
+     * same endpoint as /register.
+     *
+     * @param servletPath The servlet path of the request.
+     * @param clientIp The address of the client.
+     * @return 0 if the request is allowed or not limited, else the nanoseconds until it would be.
+     */
+    public long checkIp(String servletPath, String clientIp) {
+        EndpointLimit limit = enabled ? endpointsByPath.get(normalizePath(servletPath)) : null;
+        if (limit == null || limit.getPerIp() == null || clientIp == null) {
+            return 0;
+        }
+        long waitNanos = limit.getPerIp().tryAcquire(clientIp, System.nanoTime());
+        if (waitNanos > 0) {
+            limit.getRejectedPerIp().increment();
+        }
+        return waitNanos;
+    }
+
+    /**
+     * It checks the per-email limit of the endpoint.
+     *
+     * @param endpoint The name of the endpoint in app.rate-limit.endpoints.
+     * @param email The email the request is about, normalized or not.
+     * @throws RateLimitExceededException if the email is over the limit.
+     */
+    public void checkEmail(String endpoint, String email) {
+        EndpointLimit limit = enabled ? endpointsByName.get(endpoint) : null;
+        String normalizedEmail = User.normalizeEmail(email);
+        if (limit == null || limit.getPerEmail() == null || normalizedEmail == null) {
+            return;
+        }
+        if (limit.getPerEmail().tryAcquire(normalizedEmail, System.nanoTime()) > 0) {
+            limit.getRejectedPerEmail().increment();
+            throw new RateLimitExceededException(endpoint);
+        }
+    }
+
+    /**
+     * @param path A request path.
+     * @return The path without path parameters, repeated slashes or a trailing slash. The path
+     * itself when it has none of them, which is the usual case, so that nothing is allocated.
+     */
+    static String normalizePath(String path) {
+        if (path == null) {
+            return null;
+        }
+        String normalized = path;
+        if (normalized.indexOf(';') >= 0) {
+            normalized = normalized.replaceAll(";[^/]*", "");
+        }
+        if (normalized.contains("//")) {
+            normalized = normalized.replaceAll("/{2,}", "/");
+        }
+        int end = normalized.length();
+        while (end > 1 && normalized.charAt(end - 1) == '/') {
+            end--;
+        }
+        return end == normalized.length() ? normalized : normalized.substring(0, end);
+    }
+
+    private static StripedTokenBuckets buckets(RateLimitProperties.Limit limit, RateLimitProperties properties) {
+        return limit == null ? null : new StripedTokenBuckets(limit, properties.getTableSize(), properties.getStripes());
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String endpoint, String key) {
+        return Counter.builder("ratelimit.rejected")
+                .description("Requests refused with a 429 because a rate limit was reached")
+                .tag("endpoint", endpoint)
+                .tag("key", key)
+                .register(meterRegistry);
+    }
+
+    @Value
+    private static class EndpointLimit {
+
+        StripedTokenBuckets perIp;
+        Counter rejectedPerIp;
+        StripedTokenBuckets perEmail;
+        Counter rejectedPerEmail;
+    }
+}
@@ -0,0 +1,74 @@
+package com.itns.springsecurityclient.filter;
+
+import com.itns.springsecurityclient.config.RateLimitProperties;
+
+/**
+ * A fixed table of token buckets indexed by the hash of the key, guarded by a small set of locks.
+ * Nothing is allocated per key or per call, and the memory does not grow with the number of
+ * clients. Two keys with the same slot share a bucket, which can only make the limit stricter.
+ */
+public class StripedTokenBuckets {
+
+    private final double capacity;
+
+    private final double tokensPerNano;
+
+    private final int slotMask;
+
+    private final int stripeMask;
+
+    private final Object[] locks;
+
+    private final double[] tokens;
+
+    private final long[] lastRefillNanos;
+
+    public StripedTokenBuckets(RateLimitProperties.Limit limit, int tableSize, int stripes) {
+        this.capacity = limit.getCapacity();
+        this.tokensPerNano = limit.getCapacity() / (double) limit.getPeriod().toNanos();
+        int slots = powerOfTwo(tableSize);
+        this.slotMask = slots - 1;
+        this.stripeMask = powerOfTwo(Math.min(stripes, slots)) - 1;
+        this.locks = new Object[stripeMask + 1];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        this.tokens = new double[slots];
+        this.lastRefillNanos = new long[slots];
+    }
+
+    /**
+     * It takes one token from the bucket of the key if there is one.
+     *
+     * @param key The client IP address or the email.
+     * @param nowNanos The current System.nanoTime().
+     * @return 0 if the request is allowed, else the nanoseconds until the next token.
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        int hash = key.hashCode();
+        // Spread the high bits, String hashes of similar keys differ mostly in the low ones.
+        hash ^= hash >>> 16;
+        int slot = hash & slotMask;
+        synchronized (locks[slot & stripeMask]) {
+            double available;
+            if (lastRefillNanos[slot] == 0) {
+                available = capacity;
+            } else {
+                available = Math.min(capacity, tokens[slot] + (nowNanos - lastRefillNanos[slot]) * tokensPerNano);
+            }
+            // Never store 0, it marks a bucket that was never used.
+            lastRefillNanos[slot] = nowNanos == 0 ? 1 : nowNanos;
+            if (available >= 1) {
+                tokens[slot] = available - 1;
+                return 0;
+            }
+            tokens[slot] = available;
+            return (long) Math.ceil((1 - available) / tokensPerNano);
+        }
+    }
+
+    private static int powerOfTwo(int value) {
+        int bounded = Math.min(value, 1 << 30);
+        return bounded <= 1 ? 1 : Integer.highestOneBit(bounded - 1) << 1;
+    }
+}
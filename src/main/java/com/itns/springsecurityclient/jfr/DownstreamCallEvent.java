@@ -0,0 +1,49 @@
+package com.itns.springsecurityclient.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call to the resource server on behalf of a client registration, from the subscription to the
+ * response. It spans threads: it begins on the request thread and ends on a Netty event loop.
+ */
+@Name(DownstreamCallEvent.NAME)
+@Label("Downstream Call")
+@Category({"ITNS", "OAuth2"})
+@Description("A call to the resource server, from subscription to response")
+@StackTrace(false)
+public class DownstreamCallEvent extends jdk.jfr.Event {
+
+    public static final String NAME = "com.itns.DownstreamCall";
+
+    @Label("Client Registration")
+    String clientRegistrationId;
+
+    @Label("URI")
+    String uri;
+
+    @Label("Status")
+    @Description("The HTTP status, or -1 when no response was received")
+    int status;
+
+    public DownstreamCallEvent(String clientRegistrationId, String uri) {
+        this.clientRegistrationId = clientRegistrationId;
+        this.uri = uri;
+    }
+
+    /**
+     * It commits the event, if it is enabled and over its threshold.
+     *
+     * @param status The HTTP status, or -1.
+     */
+    public void complete(int status) {
+        end();
+        if (shouldCommit()) {
+            this.status = status;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.itns.springsecurityclient.jfr;
+
+import com.itns.springsecurityclient.config.JfrProperties;
+
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Rolls the application JFR events into latency summaries per kind of event, over the last few
+ * windows. It keeps an in-memory recording of only these events and, at the end of each window,
+ * starts the next recording, dumps the previous one, reads it back and closes it. This works on
+ * Java 11, which has no event streaming. The two recordings overlap for a moment, so each event is
+ * counted in the window its end time falls in.
+ */
+@Component
+@Slf4j
+public class JfrEventSummarizer {
+
+    // How each event is keyed in the summaries: its name and the fields worth telling apart.
+    private static final Map<String, Function<RecordedEvent, String>> KEYS = Map.of(
+            PasswordHashEvent.NAME, event -> "passwordHash operation=" + event.getString("operation")
+                    + " cost=" + event.getInt("cost"),
+            TokenValidationEvent.NAME, event -> "tokenValidation type=" + event.getString("tokenType")
+                    + " result=" + event.getString("result")
+                    + (event.getBoolean("signed") ? " signed" : "")
+                    + (event.getBoolean("databaseLookup") ? " db" : ""),
+            DownstreamCallEvent.NAME, event -> "downstreamCall registration=" + event.getString("clientRegistrationId")
+                    + " status=" + event.getInt("status"),
+            RegistrationMailEvent.NAME, event -> "registrationMail");
+
+    private static final List<Class<? extends Event>> EVENTS = List.of(
+            PasswordHashEvent.class, TokenValidationEvent.class, DownstreamCallEvent.class, RegistrationMailEvent.class);
+
+    private final int maxWindows;
+
+    // Latencies in microseconds, one map of histograms per window, the oldest first.
+    private final Deque<Map<String, Histogram>> windows = new ArrayDeque<>();
+
+    private Recording recording;
+
+    private Instant recordingStart;
+
+    public JfrEventSummarizer(JfrProperties properties) {
+        this.maxWindows = properties.getWindows();
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            log.warn("Flight Recorder is not available in this runtime, no JFR summaries");
+            return;
+        }
+        this.recordingStart = Instant.now();
+        this.recording = startRecording();
+    }
+
+    /**
+     * It closes the current window and reads its events.
+     */
+    @Scheduled(fixedDelayString = "${app.jfr.interval:PT10S}")
+    public void roll() {
+        if (recording == null) {
+            return;
+        }
+        Recording previous = recording;
+        Instant from = recordingStart;
+        Instant to = Instant.now();
+        recording = startRecording();
+        recordingStart = to;
+        // Dumped while still running: an in-memory recording loses its data once stopped.
+        try {
+            Map<String, Histogram> window = read(previous, from, to);
+            synchronized (windows) {
+                windows.addLast(window);
+                while (windows.size() > maxWindows) {
+                    windows.removeFirst();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read the JFR events of the last window", e);
+        } finally {
+            previous.close();
+        }
+    }
+
+    /**
+     * @return The latency summaries of the last windows, by kind of event.
+     */
+    public Map<String, LatencySummary> getSummaries() {
+        Map<String, Histogram> merged = new HashMap<>();
+        synchronized (windows) {
+            for (Map<String, Histogram> window : windows) {
+                window.forEach((key, histogram) -> merged.computeIfAbsent(key, ignored -> newHistogram()).add(histogram));
+            }
+        }
+        Map<String, LatencySummary> summaries = new TreeMap<>();
+        merged.forEach((key, histogram) -> summaries.put(key, new LatencySummary(
+                histogram.getTotalCount(),
+                histogram.getMean() / 1000,
+                histogram.getValueAtPercentile(50) / 1000d,
+                histogram.getValueAtPercentile(90) / 1000d,
+                histogram.getValueAtPercentile(99) / 1000d,
+                histogram.getMaxValue() / 1000d)));
+        return summaries;
+    }
+
+    @PreDestroy
+    void close() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    private static Recording startRecording() {
+        Recording recording = new Recording();
+        recording.setName("summaries");
+        recording.setToDisk(false);
+        for (Class<? extends Event> event : EVENTS) {
+            recording.enable(event).withoutThreshold();
+        }
+        recording.start();
+        return recording;
+    }
+
+    private static Map<String, Histogram> read(Recording recording, Instant from, Instant to) throws IOException {
+        Map<String, Histogram> window = new HashMap<>();
+        Path file = Files.createTempFile("jfr-summary-", ".jfr");
+        try {
+            recording.dump(file);
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                Function<RecordedEvent, String> key = KEYS.get(event.getEventType().getName());
+                Instant end = event.getEndTime();
+                if (key == null || end.isBefore(from) || !end.isBefore(to)) {
+                    continue;
+                }
+                Histogram histogram = window.computeIfAbsent(key.apply(event), ignored -> newHistogram());
+                long micros = TimeUnit.NANOSECONDS.toMicros(event.getDuration().toNanos());
+                histogram.recordValue(Math.max(0, Math.min(micros, histogram.getHighestTrackableValue())));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return window;
+    }
+
+    // Up to an hour at three significant digits; longer events are clamped to it.
+    private static Histogram newHistogram() {
+        return new Histogram(TimeUnit.HOURS.toMicros(1), 3);
+    }
+}
@@ -0,0 +1,17 @@
+package com.itns.springsecurityclient.jfr;
+
+import lombok.Value;
+
+/**
+ * The latency of one kind of event over the summary windows, in milliseconds.
+ */
+@Value
+public class LatencySummary {
+
+    long count;
+    double meanMillis;
+    double p50Millis;
+    double p90Millis;
+    double p99Millis;
+    double maxMillis;
+}
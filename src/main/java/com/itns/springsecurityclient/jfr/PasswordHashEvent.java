@@ -0,0 +1,63 @@
+package com.itns.springsecurityclient.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A BCrypt encode or matches, on the thread of the hashing pool that ran it.
+ */
+@Name(PasswordHashEvent.NAME)
+@Label("Password Hash")
+@Category({"ITNS", "Security"})
+@Description("A BCrypt encode or matches run on the hashing pool")
+@StackTrace(false)
+public class PasswordHashEvent extends jdk.jfr.Event {
+
+    public static final String NAME = "com.itns.PasswordHash";
+
+    @Label("Operation")
+    @Description("encode or matches")
+    String operation;
+
+    @Label("Cost")
+    @Description("The BCrypt cost of the hash, 2^cost rounds")
+    int cost;
+
+    @Label("Queue Time")
+    @Description("Time the task waited for a thread of the hashing pool")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueTime;
+
+    /**
+     * It commits the event, if it is enabled and over its threshold.
+     *
+     * @param operation encode or matches.
+     * @param hash The encoded password, which starts with its cost: $2a$11$...
+     * @param submittedNanos System.nanoTime() when the task was submitted to the pool.
+     * @param startedNanos System.nanoTime() when a thread of the pool started it.
+     */
+    public void complete(String operation, String hash, long submittedNanos, long startedNanos) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.cost = cost(hash);
+            this.queueTime = startedNanos - submittedNanos;
+            commit();
+        }
+    }
+
+    private static int cost(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.itns.springsecurityclient.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The handling of a RegistrationCompleteEvent: the verification token is issued and the email is
+ * stored in the outbox.
+ */
+@Name(RegistrationMailEvent.NAME)
+@Label("Registration Mail")
+@Category({"ITNS", "Registration"})
+@Description("A verification token issued and its email stored for a new user")
+@StackTrace(false)
+public class RegistrationMailEvent extends jdk.jfr.Event {
+
+    public static final String NAME = "com.itns.RegistrationMail";
+
+    @Label("User Id")
+    long userId;
+
+    public RegistrationMailEvent(long userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * It commits the event, if it is enabled and over its threshold.
+     */
+    public void complete() {
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
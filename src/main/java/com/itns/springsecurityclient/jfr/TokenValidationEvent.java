@@ -0,0 +1,66 @@
+package com.itns.springsecurityclient.jfr;
+
+import com.itns.springsecurityclient.service.TokenValidationResult;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The validation of a verification or password reset token, lookup included, and its consumption
+ * when the link is used.
+ */
+@Name(TokenValidationEvent.NAME)
+@Label("Token Validation")
+@Category({"ITNS", "Tokens"})
+@Description("The lookup, the validation and the consumption of a verification or password reset token")
+@StackTrace(false)
+public class TokenValidationEvent extends jdk.jfr.Event {
+
+    public static final String NAME = "com.itns.TokenValidation";
+
+    @Label("Token Type")
+    @Description("verification or password_reset")
+    String tokenType;
+
+    @Label("Result")
+    @Description("valid, invalid or expired")
+    String result;
+
+    @Label("Signed")
+    @Description("A stateless signed token, checked without a token row")
+    boolean signed;
+
+    @Label("Database Lookup")
+    @Description("The token was not in the token cache and was read from the database")
+    boolean databaseLookup;
+
+    public TokenValidationEvent(String tokenType) {
+        this.tokenType = tokenType;
+    }
+
+    public void markSigned() {
+        this.signed = true;
+    }
+
+    public void markDatabaseLookup() {
+        this.databaseLookup = true;
+    }
+
+    /**
+     * It commits the event, if it is enabled and over its threshold.
+     *
+     * @param result The outcome of the validation.
+     * @return The result, unchanged.
+     */
+    public TokenValidationResult complete(TokenValidationResult result) {
+        end();
+        if (shouldCommit()) {
+            this.result = result.getOutcome();
+            commit();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+package com.itns.springsecurityclient.mail;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * A token bucket per recipient domain, so that a burst of messages to one provider does not get
+ * the sender throttled or blacklisted by it. The domains come from the users, so only the most
+ * recently used ones are kept; a bucket unused for a second is full again anyway.
+ */
+class DomainRateLimiter {
+
+    private final double permitsPerSecond;
+
+    private final Cache<String, Bucket> buckets;
+
+    DomainRateLimiter(double permitsPerSecond, int maximumDomains) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumDomains)
+                .expireAfterAccess(Duration.ofSeconds(1))
+                .build();
+    }
+
+    /**
+     * It takes one permit for the domain if there is one.
+     *
+     * @param domain The domain of the recipient.
+     * @return true if the message can be sent now.
+     */
+    boolean tryAcquire(String domain) {
+        return buckets.get(domain, key -> new Bucket()).tryAcquire();
+    }
+
+    private class Bucket {
+
+        // One second worth of permits, so a domain can receive a short burst.
+        private double permits = Math.max(1, permitsPerSecond);
+
+        private long lastRefillNanos = System.nanoTime();
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            permits = Math.min(Math.max(1, permitsPerSecond),
+                    permits + (now - lastRefillNanos) * permitsPerSecond / 1_000_000_000d);
+            lastRefillNanos = now;
+            if (permits < 1) {
+                return false;
+            }
+            permits -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.itns.springsecurityclient.mail;
+
+import com.itns.springsecurityclient.config.MailDeliveryProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * This class sends the emails over a few SMTP connections that stay open between messages, and
+ * holds back the messages of a domain that is over its send rate. The outbox calls send for each
+ * stored email and retries it when send throws. The reactive mode, which has no outbox, queues its
+ * emails in memory instead, for a few background workers (app.mail.workers, only set by the
+ * reactive profile). Without a configured SMTP server
+ * (spring.mail.host) the messages are logged instead.
+ */
+@Component
+@Slf4j
+public class MailDispatcher implements SmartLifecycle {
+
+    private final MailDeliveryProperties properties;
+
+    private final JavaMailSenderImpl mailSender;
+
+    private final BlockingQueue<OutgoingMail> queue;
+
+    private final DomainRateLimiter rateLimiter;
+
+    private final ThreadFactory threadFactory;
+
+    private final Counter sentCounter;
+
+    private final Counter failedCounter;
+
+    private final Counter rejectedCounter;
+
+    // Open connections not in use, the most recently used first.
+    private final Deque<IdleTransport> idleTransports = new ArrayDeque<>();
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    @Autowired
+    public MailDispatcher(MailDeliveryProperties properties,
+                          ObjectProvider<JavaMailSenderImpl> mailSender,
+                          MeterRegistry meterRegistry) {
+        this(properties, mailSender.getIfAvailable(), meterRegistry);
+    }
+
+    public MailDispatcher(MailDeliveryProperties properties,
+                          JavaMailSenderImpl mailSender,
+                          MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.mailSender = mailSender;
+        this.queue = new LinkedBlockingQueue<>(properties.getQueueCapacity());
+        this.rateLimiter = new DomainRateLimiter(properties.getPerDomainRate(), properties.getMaximumDomains());
+        this.threadFactory = new CustomizableThreadFactory("mail-sender-");
+        this.sentCounter = Counter.builder("mail.sent").register(meterRegistry);
+        this.failedCounter = Counter.builder("mail.failed").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("mail.rejected")
+                .description("Messages refused because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("mail.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    /**
+     * It takes one permit of the send rate of the domain, if there is one.
+     *
+     * @param domain The domain of the recipient.
+     * @return true if a message can be sent to the domain now.
+     */
+    public boolean tryAcquire(String domain) {
+        return rateLimiter.tryAcquire(domain);
+    }
+
+    /**
+     * It sends the message over an open connection, or a new one if the server closed it.
+     *
+     * @param mail The rendered message.
+     * @throws MailSendException if the message could not be sent.
+     */
+    public void send(OutgoingMail mail) {
+        if (mailSender == null) {
+            log.info("Mail to {}: {}\n{}", mail.getTo(), mail.getSubject(), mail.getBody());
+            sentCounter.increment();
+            return;
+        }
+        Transport transport = null;
+        try {
+            MimeMessage message = toMimeMessage(mail);
+            transport = borrowTransport();
+            try {
+                transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException e) {
+                if (transport.isConnected()) {
+                    throw e;
+                }
+                // The server closed the connection, open a new one and try once more.
+                close(transport);
+                transport = connect();
+                transport.sendMessage(message, message.getAllRecipients());
+            }
+            sentCounter.increment();
+            releaseTransport(transport);
+        } catch (MessagingException e) {
+            failedCounter.increment();
+            close(transport);
+            throw new MailSendException("Could not send mail to " + mail.getTo(), e);
+        }
+    }
+
+    /**
+     * It adds the message to the in-memory queue without waiting. Only the reactive mode uses it;
+     * a queued message is lost if the app stops before it is sent.
+     *
+     * @param mail The rendered message.
+     * @return false if the queue is full and the message was not accepted.
+     */
+    public boolean enqueue(OutgoingMail mail) {
+        if (queue.offer(mail)) {
+            return true;
+        }
+        rejectedCounter.increment();
+        return false;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            Thread worker = threadFactory.newThread(this::runWorker);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+        if (!queue.isEmpty()) {
+            log.warn("{} messages were still queued at shutdown", queue.size());
+        }
+        synchronized (idleTransports) {
+            idleTransports.forEach(idle -> close(idle.getTransport()));
+            idleTransports.clear();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runWorker() {
+        List<OutgoingMail> batch = new ArrayList<>(properties.getBatchSize());
+        try {
+            while (running) {
+                OutgoingMail first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    closeIdleTransports();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+                boolean sent = false;
+                for (OutgoingMail mail : batch) {
+                    // When the queue filled up meanwhile, better send over the rate than drop it.
+                    if (rateLimiter.tryAcquire(mail.getDomain()) || !queue.offer(mail)) {
+                        sendQueued(mail);
+                        sent = true;
+                    }
+                }
+                if (!sent) {
+                    // Every message of the batch is waiting for its domain, do not spin.
+                    Thread.sleep(100);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendQueued(OutgoingMail mail) {
+        try {
+            send(mail);
+        } catch (MailSendException e) {
+            log.warn("Could not send queued mail to {}", mail.getTo(), e);
+        }
+    }
+
+    // The most recently used open connection, or a new one.
+    private Transport borrowTransport() throws MessagingException {
+        long now = System.nanoTime();
+        while (true) {
+            IdleTransport idle;
+            synchronized (idleTransports) {
+                idle = idleTransports.pollFirst();
+            }
+            if (idle == null) {
+                return connect();
+            }
+            if (now - idle.getLastUsedNanos() <= properties.getConnectionIdleTimeout().toNanos()
+                    && idle.getTransport().isConnected()) {
+                return idle.getTransport();
+            }
+            close(idle.getTransport());
+        }
+    }
+
+    private void releaseTransport(Transport transport) {
+        synchronized (idleTransports) {
+            if (idleTransports.size() < properties.getMaximumIdleConnections()) {
+                idleTransports.addFirst(new IdleTransport(transport, System.nanoTime()));
+                return;
+            }
+        }
+        close(transport);
+    }
+
+    private void closeIdleTransports() {
+        long now = System.nanoTime();
+        List<Transport> expired = new ArrayList<>();
+        synchronized (idleTransports) {
+            idleTransports.removeIf(idle -> {
+                boolean isExpired = now - idle.getLastUsedNanos() > properties.getConnectionIdleTimeout().toNanos();
+                if (isExpired) {
+                    expired.add(idle.getTransport());
+                }
+                return isExpired;
+            });
+        }
+        expired.forEach(MailDispatcher::close);
+    }
+
+    private Transport connect() throws MessagingException {
+        String protocol = mailSender.getProtocol() != null
+                ? mailSender.getProtocol()
+                : JavaMailSenderImpl.DEFAULT_PROTOCOL;
+        Transport transport = mailSender.getSession().getTransport(protocol);
+        transport.connect(mailSender.getHost(), mailSender.getPort(),
+                mailSender.getUsername(), mailSender.getPassword());
+        return transport;
+    }
+
+    private MimeMessage toMimeMessage(OutgoingMail mail) throws MessagingException {
+        MimeMessage message = new MimeMessage(mailSender.getSession());
+        message.setFrom(new InternetAddress(properties.getFrom()));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(mail.getTo()));
+        message.setSubject(mail.getSubject(), StandardCharsets.UTF_8.name());
+        message.setText(mail.getBody(), StandardCharsets.UTF_8.name());
+        message.saveChanges();
+        return message;
+    }
+
+    private static void close(Transport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error while closing the SMTP connection", e);
+        }
+    }
+
+    @Value
+    private static class IdleTransport {
+
+        Transport transport;
+        long lastUsedNanos;
+    }
+}
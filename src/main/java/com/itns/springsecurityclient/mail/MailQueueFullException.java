@@ -0,0 +1,18 @@
+package com.itns.springsecurityclient.mail;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when the in-memory queue of the MailDispatcher stays full. It is mapped to a 503 so that
+ * the client retries later instead of waiting for an email that was never queued.
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Mail queue full")
+public class MailQueueFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public MailQueueFullException(String to) {
+        super("Mail queue full, could not queue mail to " + to);
+    }
+}
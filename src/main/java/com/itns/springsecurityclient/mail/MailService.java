@@ -0,0 +1,48 @@
+package com.itns.springsecurityclient.mail;
+
+import com.itns.springsecurityclient.entity.User;
+import com.itns.springsecurityclient.service.OutboxService;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This class renders the verification and password reset emails and stores them in the outbox.
+ * They are sent by the OutgoingMailHandler once the transaction is committed, and retried until
+ * the SMTP server accepts them, so an email is never sent for a token that was rolled back nor
+ * lost when the app stops.
+ */
+@Service
+public class MailService {
+
+    private final MailTemplates mailTemplates;
+
+    private final OutboxService outboxService;
+
+    public MailService(MailTemplates mailTemplates, OutboxService outboxService) {
+        this.mailTemplates = mailTemplates;
+        this.outboxService = outboxService;
+    }
+
+    /**
+     * It stores the email with the link to verify the account, in the current transaction if any.
+     *
+     * @param user The user that registered.
+     * @param url The verification link.
+     */
+    @Transactional
+    public void sendVerificationEmail(User user, String url) {
+        outboxService.append(OutgoingMail.EVENT_TYPE, mailTemplates.verificationEmail(user, url));
+    }
+
+    /**
+     * It stores the email with the link to reset the password, in the current transaction if any.
+     *
+     * @param user The user that asked for the reset.
+     * @param url The password reset link.
+     */
+    @Transactional
+    public void sendPasswordResetEmail(User user, String url) {
+        outboxService.append(OutgoingMail.EVENT_TYPE, mailTemplates.passwordResetEmail(user, url));
+    }
+}
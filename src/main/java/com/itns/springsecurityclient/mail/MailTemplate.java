@@ -0,0 +1,71 @@
+package com.itns.springsecurityclient.mail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A mail template parsed once into literal parts and {{variable}} placeholders, so rendering a
+ * message is a single pass of appends. The first line of the source is the subject, the rest after
+ * a blank line is the body.
+ */
+public final class MailTemplate {
+
+    private final String subject;
+
+    private final List<String> literals;
+
+    private final List<String> variables;
+
+    private MailTemplate(String subject, List<String> literals, List<String> variables) {
+        this.subject = subject;
+        this.literals = literals;
+        this.variables = variables;
+    }
+
+    /**
+     * It parses the template source.
+     *
+     * @param source The subject line, a blank line and the body.
+     * @return The parsed template.
+     */
+    public static MailTemplate compile(String source) {
+        int endOfSubject = source.indexOf('\n');
+        String subject = (endOfSubject < 0 ? source : source.substring(0, endOfSubject)).trim();
+        String body = endOfSubject < 0 ? "" : source.substring(endOfSubject + 1).stripLeading();
+
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int start = body.indexOf("{{", position);
+            int end = start < 0 ? -1 : body.indexOf("}}", start);
+            if (end < 0) {
+                literals.add(body.substring(position));
+                break;
+            }
+            literals.add(body.substring(position, start));
+            variables.add(body.substring(start + 2, end).trim());
+            position = end + 2;
+        }
+        return new MailTemplate(subject, List.copyOf(literals), List.copyOf(variables));
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * It fills the placeholders. A missing value renders as an empty string.
+     *
+     * @param values The values of the placeholders.
+     * @return The body of the message.
+     */
+    public String render(Map<String, String> values) {
+        StringBuilder body = new StringBuilder(256);
+        for (int i = 0; i < variables.size(); i++) {
+            body.append(literals.get(i)).append(values.getOrDefault(variables.get(i), ""));
+        }
+        return body.append(literals.get(variables.size())).toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.itns.springsecurityclient.mail;
+
+import com.itns.springsecurityclient.entity.User;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class renders the verification and password reset emails.
+ */
+@Component
+public class MailTemplates {
+
+    private static final String VERIFICATION_TEMPLATE = "templates/mail/verification.txt";
+
+    private static final String PASSWORD_RESET_TEMPLATE = "templates/mail/password-reset.txt";
+
+    // Templates are read and parsed once, on first use.
+    private final Map<String, MailTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * @param user The user that registered.
+     * @param url The verification link.
+     * @return The email with the link to verify the account.
+     */
+    public OutgoingMail verificationEmail(User user, String url) {
+        return render(VERIFICATION_TEMPLATE, user, url);
+    }
+
+    /**
+     * @param user The user that asked for the reset.
+     * @param url The password reset link.
+     * @return The email with the link to reset the password.
+     */
+    public OutgoingMail passwordResetEmail(User user, String url) {
+        return render(PASSWORD_RESET_TEMPLATE, user, url);
+    }
+
+    private OutgoingMail render(String templateLocation, User user, String url) {
+        MailTemplate template = templates.computeIfAbsent(templateLocation, MailTemplates::load);
+        String firstName = user.getFirstName() == null ? "" : user.getFirstName();
+        String body = template.render(Map.of("firstName", firstName, "url", url));
+        return new OutgoingMail(user.getEmail(), template.getSubject(), body);
+    }
+
+    private static MailTemplate load(String location) {
+        try {
+            return MailTemplate.compile(StreamUtils.copyToString(
+                    new ClassPathResource(location).getInputStream(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read mail template " + location, e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.itns.springsecurityclient.mail;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Locale;
+
+/**
+ * A rendered message, stored in the outbox until it is sent.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutgoingMail {
+
+    public static final String EVENT_TYPE = "Mail";
+
+    private String to;
+    private String subject;
+    private String body;
+
+    @JsonIgnore
+    public String getDomain() {
+        int at = to.lastIndexOf('@');
+        return at < 0 ? "" : to.substring(at + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,41 @@
+package com.itns.springsecurityclient.mail;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itns.springsecurityclient.event.OutboxEventDeferredException;
+import com.itns.springsecurityclient.event.OutboxEventHandler;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * This class sends the emails stored in the outbox. The event is only deleted once the SMTP server
+ * has accepted the message; a failed send throws, and the outbox retries it with its backoff. An
+ * email to a domain over its rate is put back for a second, without counting as an attempt.
+ */
+@Component
+public class OutgoingMailHandler implements OutboxEventHandler {
+
+    private final MailDispatcher mailDispatcher;
+
+    private final ObjectMapper objectMapper;
+
+    public OutgoingMailHandler(MailDispatcher mailDispatcher, ObjectMapper objectMapper) {
+        this.mailDispatcher = mailDispatcher;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getEventType() {
+        return OutgoingMail.EVENT_TYPE;
+    }
+
+    @Override
+    public void handle(String payload) throws Exception {
+        OutgoingMail mail = objectMapper.readValue(payload, OutgoingMail.class);
+        if (!mailDispatcher.tryAcquire(mail.getDomain())) {
+            throw new OutboxEventDeferredException("Rate limit of " + mail.getDomain(), Duration.ofSeconds(1));
+        }
+        mailDispatcher.send(mail);
+    }
+}
@@ -0,0 +1,14 @@
+package com.itns.springsecurityclient.model;
+
+import lombok.Data;
+
+/**
+ * A POJO class that is used to report the outcome of a bulk user import.
+ */
+@Data
+public class UserImportResult {
+
+    private int imported;
+    private int skippedInvalid;
+    private int skippedExisting;
+}
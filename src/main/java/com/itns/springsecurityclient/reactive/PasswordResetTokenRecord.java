@@ -0,0 +1,22 @@
+package com.itns.springsecurityclient.reactive;
+
+import lombok.Data;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * A row of the password_reset_token table. The id is generated by the database on insert.
+ */
+@Data
+@Table("password_reset_token")
+public class PasswordResetTokenRecord {
+
+    @Id
+    private Long id;
+    private String token;
+    private LocalDateTime expirationTime;
+    private Long userId;
+}
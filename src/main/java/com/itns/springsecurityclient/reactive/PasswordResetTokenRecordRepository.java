@@ -0,0 +1,19 @@
+package com.itns.springsecurityclient.reactive;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+
+import reactor.core.publisher.Mono;
+
+// An R2DBC repository of the password_reset_token table.
+public interface PasswordResetTokenRecordRepository extends R2dbcRepository<PasswordResetTokenRecord, Long> {
+
+    Mono<PasswordResetTokenRecord> findByToken(String token);
+
+    // Consumes the token; whether it had expired is decided by the update that goes with it.
+    @Modifying
+    @Query("delete from password_reset_token where token = :token")
+    Mono<Integer> deleteByToken(@Param("token") String token);
+}
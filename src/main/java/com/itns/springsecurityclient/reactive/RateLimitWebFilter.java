@@ -0,0 +1,50 @@
+package com.itns.springsecurityclient.reactive;
+
+import com.itns.springsecurityclient.filter.RateLimiter;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The RateLimitFilter of the reactive mode: a client IP over the limit of the endpoint gets a 429
+ * and a Retry-After header before the security chain and the controller run.
+ */
+@Component
+// Before the WebFilterChainProxy of Spring Security, at -100.
+@Order(-200)
+public class RateLimitWebFilter implements WebFilter {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitWebFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        String clientIp = remoteAddress == null || remoteAddress.getAddress() == null
+                ? null
+                : remoteAddress.getAddress().getHostAddress();
+        long waitNanos = rateLimiter.checkIp(exchange.getRequest().getPath().pathWithinApplication().value(), clientIp);
+        if (waitNanos > 0) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                    Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L))));
+            return response.setComplete();
+        }
+        return chain.filter(exchange);
+    }
+}
@@ -0,0 +1,92 @@
+package com.itns.springsecurityclient.reactive;
+
+import com.itns.springsecurityclient.config.PasswordHashingProperties;
+import com.itns.springsecurityclient.service.PasswordHashingRejectedException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * The PasswordHashingService of the reactive mode. The BCrypt work runs on a bounded scheduler of
+ * app.security.password-hashing.pool-size threads, never on the Netty event loops. Each thread
+ * queues up to queue-capacity tasks; past that the hash fails with a
+ * PasswordHashingRejectedException, a 503, as in the servlet app.
+ */
+@Component
+@Slf4j
+public class ReactivePasswordHashing {
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final Scheduler scheduler;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Counter rejectedCounter;
+
+    public ReactivePasswordHashing(PasswordEncoder passwordEncoder,
+                                   PasswordHashingProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.scheduler = Schedulers.newBoundedElastic(
+                properties.getPoolSize(), properties.getQueueCapacity(), "password-hashing");
+        this.encodeTimer = Timer.builder("password.hashing.duration")
+                .tag("operation", "encode")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hashing.duration")
+                .tag("operation", "matches")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("password.hashing.rejected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param rawPassword The password entered by the user.
+     * @return The encoded password, computed on the hashing scheduler.
+     */
+    public Mono<String> encode(String rawPassword) {
+        return submit(() -> encodeTimer.recordCallable(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    /**
+     * @param rawPassword The password entered by the user.
+     * @param encodedPassword The password stored in the database.
+     * @return true if the passwords match, computed on the hashing scheduler.
+     */
+    public Mono<Boolean> matches(String rawPassword, String encodedPassword) {
+        return submit(() -> matchesTimer.recordCallable(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+
+    private <T> Mono<T> submit(Callable<T> task) {
+        return Mono.fromCallable(task)
+                .subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, e -> {
+                    rejectedCounter.increment();
+                    log.warn("Password hashing rejected, the hashing scheduler is full");
+                    return new PasswordHashingRejectedException(e);
+                });
+    }
+}
@@ -0,0 +1,62 @@
+package com.itns.springsecurityclient.reactive;
+
+import com.itns.springsecurityclient.config.MailDeliveryProperties;
+import com.itns.springsecurityclient.config.PasswordHashingProperties;
+import com.itns.springsecurityclient.config.RateLimitProperties;
+import com.itns.springsecurityclient.config.TokenProperties;
+import com.itns.springsecurityclient.filter.RateLimiter;
+import com.itns.springsecurityclient.mail.MailDispatcher;
+import com.itns.springsecurityclient.mail.MailTemplates;
+import com.itns.springsecurityclient.service.SecureRandomTokenGenerator;
+import com.itns.springsecurityclient.service.SignedTokenService;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.oauth2.client.reactive.ReactiveOAuth2ClientAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
+
+/**
+ * The reactive deployment mode of the registration endpoints: WebFlux on Netty and R2DBC instead of
+ * Tomcat and JPA, on the same database. A few event loop threads and a small connection pool serve
+ * all the open requests, where the servlet app holds a thread per request. It only scans this
+ * package, and shares the token, mail and rate limit beans of the servlet app; the schema comes
+ * from the same Flyway migrations as the servlet app. The reactive profile is always active.
+ *
+ * Run with: java -Dloader.main=com.itns.springsecurityclient.reactive.ReactiveRegistrationApplication
+ *   -jar target/spring-security-client-0.0.1-SNAPSHOT.jar
+ */
+@SpringBootApplication(exclude = {
+		DataSourceAutoConfiguration.class,
+		DataSourceTransactionManagerAutoConfiguration.class,
+		HibernateJpaAutoConfiguration.class,
+		ReactiveOAuth2ClientAutoConfiguration.class,
+		ReactiveUserDetailsServiceAutoConfiguration.class
+})
+@EnableConfigurationProperties({
+		PasswordHashingProperties.class,
+		TokenProperties.class,
+		MailDeliveryProperties.class,
+		RateLimitProperties.class
+})
+@Import({
+		SecureRandomTokenGenerator.class,
+		SignedTokenService.class,
+		MailDispatcher.class,
+		MailTemplates.class,
+		RateLimiter.class
+})
+public class ReactiveRegistrationApplication {
+	public static void main(String[] args) {
+		new SpringApplicationBuilder(ReactiveRegistrationApplication.class)
+				.web(WebApplicationType.REACTIVE)
+				.profiles("reactive")
+				.run(args);
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.itns.springsecurityclient.reactive;
+
+import com.itns.springsecurityclient.filter.RateLimiter;
+import com.itns.springsecurityclient.model.PasswordModel;
+import com.itns.springsecurityclient.model.UserModel;
+import com.itns.springsecurityclient.service.TokenValidationResult;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * The RegistrationController of the reactive mode, with the same paths and responses. Every handler
+ * returns at once and the response is written when the database and the hashing scheduler are
+ * done, so the /async paths are the same handlers.
+ */
+@RestController
+public class ReactiveRegistrationController {
+
+    @Autowired
+    private ReactiveUserService userService;
+
+    // The per-IP limits are checked by the RateLimitWebFilter, the per-email ones here.
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    /**
+     * It registers the user and sends the verification email.
+     *
+     * @param userModel This is the object that will be sent from the frontend.
+     * @param request The request, for the URL of the application.
+     * @return "Success"
+     */
+    @PostMapping({"/register", "/register/async"})
+    public Mono<String> registerUser(@RequestBody UserModel userModel, ServerHttpRequest request) {
+        rateLimiter.checkEmail("register", userModel.getEmail());
+        return userService.registerUser(userModel, applicationUrl(request))
+                .thenReturn("Success");
+    }
+
+    /**
+     * It verifies the user's email address. The token is consumed, so the link works once.
+     *
+     * @param token The token that was sent to the user's email address.
+     * @return A string
+     */
+    @GetMapping("/verifyRegistration")
+    public Mono<String> verifyRegistration(@RequestParam("token") String token) {
+        return userService.validateVerificationToken(token)
+                .map(result -> result == TokenValidationResult.VALID
+                        ? "Utilisateur vérifié avec success"
+                        : "Bad User");
+    }
+
+    /**
+     * It sends a new verification link in place of the old one.
+     *
+     * @param oldToken The token that was sent to the user's email address.
+     * @param request The request, for the URL of the application.
+     * @return A string
+     */
+    @GetMapping("/resendVerifyToken")
+    public Mono<String> resendVerificationToken(@RequestParam("token") String oldToken, ServerHttpRequest request) {
+        return userService.resendVerificationToken(oldToken, applicationUrl(request))
+                .thenReturn("Lien de verification envoyé");
+    }
+
+    /**
+     * It sends a password reset link to the user with that email, if there is one.
+     *
+     * @param passwordModel This is the object that contains the email address of the user.
+     * @param request The request, for the URL of the application.
+     * @return The URL of the reset password page.
+     */
+    @PostMapping("/resetPassword")
+    public Mono<String> resetPassword(@RequestBody PasswordModel passwordModel, ServerHttpRequest request) {
+        rateLimiter.checkEmail("reset-password", passwordModel.getEmail());
+        return userService.requestPasswordReset(passwordModel.getEmail(), applicationUrl(request));
+    }
+
+    /**
+     * It changes the password of the owner of the token and consumes the token.
+     *
+     * @param token The token that was sent to the user's email address.
+     * @param passwordModel This is the object that will hold the new password.
+     * @return A string
+     */
+    @PostMapping({"/savePassword", "/savePassword/async"})
+    public Mono<String> savePassword(@RequestParam("token") String token, @RequestBody PasswordModel passwordModel) {
+        return userService.resetPassword(token, passwordModel.getNewPassword())
+                .map(result -> result == TokenValidationResult.VALID
+                        ? "Password Reset Successfully"
+                        : "Invalid Token");
+    }
+
+    /**
+     * It changes the password of the user with that email if the old password matches.
+     *
+     * @param passwordModel This is the object that will be sent from the frontend.
+     * @return A String
+     */
+    @PostMapping({"/changePassword", "/changePassword/async"})
+    public Mono<String> changePassword(@RequestBody PasswordModel passwordModel) {
+        return userService.changePassword(passwordModel.getEmail(), passwordModel.getOldPassword(),
+                        passwordModel.getNewPassword())
+                .map(changed -> changed ? "Password Modifié avec Success" : "Invalid Old Password");
+    }
+
+    /**
+     * @param request The request.
+     * @return The application URL, including the port number.
+     */
+    private String applicationUrl(ServerHttpRequest request) {
+        URI uri = request.getURI();
+        return "http://" + uri.getHost() + ":" + uri.getPort() + request.getPath().contextPath().value();
+    }
+}
@@ -0,0 +1,23 @@
+package com.itns.springsecurityclient.reactive;
+
+import com.itns.springsecurityclient.model.UserModel;
+import com.itns.springsecurityclient.service.TokenValidationResult;
+
+import reactor.core.publisher.Mono;
+
+// The UserService of the reactive mode. The emails are sent from here rather than from the
+// controller, since each call ends in the database and the mail queue.
+public interface ReactiveUserService {
+
+    Mono<UserRecord> registerUser(UserModel userModel, String applicationUrl);
+
+    Mono<TokenValidationResult> validateVerificationToken(String token);
+
+    Mono<Void> resendVerificationToken(String oldToken, String applicationUrl);
+
+    Mono<String> requestPasswordReset(String email, String applicationUrl);
+
+    Mono<TokenValidationResult> resetPassword(String token, String newPassword);
+
+    Mono<Boolean> changePassword(String email, String oldPassword, String newPassword);
+}
@@ -0,0 +1,382 @@
+package com.itns.springsecurityclient.reactive;
+
+import com.itns.springsecurityclient.entity.User;
+import com.itns.springsecurityclient.mail.MailDispatcher;
+import com.itns.springsecurityclient.mail.MailQueueFullException;
+import com.itns.springsecurityclient.mail.MailTemplates;
+import com.itns.springsecurityclient.mail.OutgoingMail;
+import com.itns.springsecurityclient.model.UserModel;
+import com.itns.springsecurityclient.service.SignedTokenService;
+import com.itns.springsecurityclient.service.SignedTokenService.Purpose;
+import com.itns.springsecurityclient.service.SignedTokenService.SignedToken;
+import com.itns.springsecurityclient.service.TokenGenerator;
+import com.itns.springsecurityclient.service.TokenValidationResult;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransaction;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * This class implements the ReactiveUserService with the same statements as the UserServiceImpl:
+ * the tokens are consumed by conditional updates, and the BCrypt work runs on its own bounded
+ * scheduler. The ids are allocated before a transaction starts, so that no transaction waits on the
+ * sequence of another.
+ */
+@Service
+public class ReactiveUserServiceImpl implements ReactiveUserService {
+
+    private static final String USER_SEQUENCE = "user_seq";
+
+    private static final String VERIFICATION_TOKEN_SEQUENCE = "verification_token_seq";
+
+    // As in VerificationToken and PasswordResetToken.
+    private static final Duration TOKEN_EXPIRATION = Duration.ofMinutes(10);
+
+    // A full mail queue is tried again this many times, with a growing delay, before the request fails.
+    private static final int MAIL_QUEUE_RETRIES = 3;
+
+    private static final Duration MAIL_QUEUE_BACKOFF = Duration.ofMillis(50);
+
+    @Autowired
+    private UserRecordRepository userRecordRepository;
+
+    @Autowired
+    private VerificationTokenRecordRepository verificationTokenRecordRepository;
+
+    @Autowired
+    private PasswordResetTokenRecordRepository passwordResetTokenRecordRepository;
+
+    // Inserts the users and verification tokens with the ids of the SequenceIdAllocator.
+    @Autowired
+    private R2dbcEntityTemplate entityTemplate;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private SequenceIdAllocator idAllocator;
+
+    @Autowired
+    private ReactivePasswordHashing passwordHashing;
+
+    @Autowired
+    private TokenGenerator tokenGenerator;
+
+    // Issues and checks the signed links, which need no token row.
+    @Autowired
+    private SignedTokenService signedTokenService;
+
+    // Renders the emails.
+    @Autowired
+    private MailTemplates mailTemplates;
+
+    // Queues the emails, they are sent in the background. There is no outbox in this mode, so the
+    // writes that an email is about are rolled back when the queue stays full.
+    @Autowired
+    private MailDispatcher mailDispatcher;
+
+    // Counts the outcomes of the token validations, as the servlet app does.
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * It hashes the password, then inserts the user and its verification token and queues the
+     * verification email in one transaction. There is no outbox in this mode: if the queue stays
+     * full, the user is not saved and the request fails with a MailQueueFullException, a 503, so
+     * that the client can register again.
+     *
+     * @param userModel This is the object that is passed from the controller.
+     * @param applicationUrl The URL of the application, used in the verification link.
+     * @return The saved user.
+     */
+    @Override
+    public Mono<UserRecord> registerUser(UserModel userModel, String applicationUrl) {
+        UserRecord user = new UserRecord();
+        user.setEmail(User.normalizeEmail(userModel.getEmail()));
+        user.setFirstName(userModel.getFirstName());
+        user.setLastName(userModel.getLastName());
+        user.setRole("USER");
+        return passwordHashing.encode(userModel.getPassword())
+                .flatMap(encodedPassword -> {
+                    user.setPassword(encodedPassword);
+                    return idAllocator.nextId(USER_SEQUENCE);
+                })
+                .flatMap(id -> {
+                    user.setId(id);
+                    return saveNewUser(user)
+                            .flatMap(token -> enqueue(mailTemplates.verificationEmail(
+                                    user.toUser(), verificationUrl(applicationUrl, token))))
+                            .as(transactionalOperator::transactional);
+                })
+                .thenReturn(user);
+    }
+
+    // Returns the token of the verification link.
+    private Mono<String> saveNewUser(UserRecord user) {
+        if (signedTokenService.isEnabled()) {
+            return entityTemplate.insert(user)
+                    .map(saved -> signedTokenService.sign(Purpose.VERIFICATION, saved.toUser()));
+        }
+        String token = tokenGenerator.generate();
+        return idAllocator.nextId(VERIFICATION_TOKEN_SEQUENCE)
+                .flatMap(tokenId -> {
+                    VerificationTokenRecord verificationToken = new VerificationTokenRecord();
+                    verificationToken.setId(tokenId);
+                    verificationToken.setToken(token);
+                    verificationToken.setExpirationTime(LocalDateTime.now().plus(TOKEN_EXPIRATION));
+                    verificationToken.setUserId(user.getId());
+                    return entityTemplate.insert(user)
+                            .then(entityTemplate.insert(verificationToken));
+                })
+                .thenReturn(token);
+    }
+
+    /**
+     * It consumes the verification token: the user is enabled and the token deleted in one
+     * transaction of two conditional statements. A signed token is checked without the database
+     * first, and only a valid one loads the user.
+     *
+     * @param token The token that was sent to the user's email address.
+     * @return The outcome; a token is VALID at most once.
+     */
+    @Override
+    public Mono<TokenValidationResult> validateVerificationToken(String token) {
+        Mono<TokenValidationResult> result = signedTokenService.isSigned(token)
+                ? consumeSignedVerificationToken(token)
+                : transactionalOperator.execute(status -> userRecordRepository
+                        .enableByVerificationToken(token, LocalDateTime.now())
+                        .flatMap(enabled -> verificationTokenRecordRepository.deleteByToken(token)
+                                .map(deleted -> consumed(status, enabled, deleted))))
+                        .single();
+        return result.map(outcome -> countValidation("verification", outcome));
+    }
+
+    private Mono<TokenValidationResult> consumeSignedVerificationToken(String token) {
+        SignedToken signedToken = signedTokenService.verify(token, Purpose.VERIFICATION);
+        if (signedToken == null) {
+            return Mono.just(TokenValidationResult.INVALID);
+        }
+        if (signedTokenService.isExpired(signedToken)) {
+            return Mono.just(TokenValidationResult.EXPIRED);
+        }
+        // The fingerprint no longer matches once the user is enabled, and of two concurrent uses of
+        // the link only the first finds the user disabled.
+        return findSignedTokenOwner(signedToken)
+                .flatMap(user -> userRecordRepository.enableIfDisabled(user.getId()))
+                .map(enabled -> enabled == 0 ? TokenValidationResult.INVALID : TokenValidationResult.VALID)
+                .defaultIfEmpty(TokenValidationResult.INVALID);
+    }
+
+    /**
+     * It replaces the verification token with a new one and sends the new link. For a signed
+     * token, expired or not, a new signed token is sent and nothing is saved.
+     *
+     * @param oldToken The token that was sent to the user's email address.
+     * @param applicationUrl The URL of the application, used in the verification link.
+     * @return Completes once the email is queued, or fails with an IllegalArgumentException, or
+     * with a MailQueueFullException if the queue stays full, in which case the old token is kept.
+     */
+    @Override
+    public Mono<Void> resendVerificationToken(String oldToken, String applicationUrl) {
+        Mono<User> user;
+        Mono<String> newToken;
+        if (signedTokenService.isSigned(oldToken)) {
+            SignedToken signedToken = signedTokenService.verify(oldToken, Purpose.VERIFICATION);
+            user = signedToken == null ? Mono.empty() : findSignedTokenOwner(signedToken).map(UserRecord::toUser);
+            newToken = user.map(owner -> signedTokenService.sign(Purpose.VERIFICATION, owner));
+        } else {
+            String token = tokenGenerator.generate();
+            Mono<VerificationTokenRecord> verificationToken = verificationTokenRecordRepository.findByToken(oldToken)
+                    .cache();
+            user = verificationToken.flatMap(stored -> userRecordRepository.findById(stored.getUserId()))
+                    .map(UserRecord::toUser);
+            newToken = verificationToken
+                    .flatMap(stored -> verificationTokenRecordRepository.replaceToken(
+                            oldToken, token, LocalDateTime.now().plus(TOKEN_EXPIRATION)))
+                    .filter(replaced -> replaced > 0)
+                    .map(replaced -> token);
+        }
+        return user.zipWhen(owner -> newToken)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Invalid verification token")))
+                .flatMap(link -> enqueue(mailTemplates.verificationEmail(
+                        link.getT1(), verificationUrl(applicationUrl, link.getT2()))))
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * It issues a password reset token for the user with that email, if there is one, and sends the
+     * link: a signed token when signed links are enabled, otherwise a random one saved to the
+     * database.
+     *
+     * @param email The email address the user entered.
+     * @param applicationUrl The URL of the application, used in the reset link.
+     * @return The URL of the reset password page, or an empty string if there is no such user. It
+     * fails with a MailQueueFullException if the queue stays full, and no token is saved.
+     */
+    @Override
+    public Mono<String> requestPasswordReset(String email, String applicationUrl) {
+        return userRecordRepository.findByEmail(User.normalizeEmail(email))
+                .flatMap(user -> createPasswordResetToken(user).flatMap(token -> {
+                    String url = applicationUrl + "/savePassword?token=" + token;
+                    return enqueue(mailTemplates.passwordResetEmail(user.toUser(), url)).thenReturn(url);
+                }))
+                .as(transactionalOperator::transactional)
+                .defaultIfEmpty("");
+    }
+
+    private Mono<String> createPasswordResetToken(UserRecord user) {
+        if (signedTokenService.isEnabled()) {
+            return Mono.just(signedTokenService.sign(Purpose.PASSWORD_RESET, user.toUser()));
+        }
+        PasswordResetTokenRecord passwordResetToken = new PasswordResetTokenRecord();
+        passwordResetToken.setToken(tokenGenerator.generate());
+        passwordResetToken.setExpirationTime(LocalDateTime.now().plus(TOKEN_EXPIRATION));
+        passwordResetToken.setUserId(user.getId());
+        return passwordResetTokenRecordRepository.save(passwordResetToken).map(PasswordResetTokenRecord::getToken);
+    }
+
+    /**
+     * It resets the password of the owner of the token and consumes the token. The token is checked
+     * before the new password is hashed, so an unknown or expired one costs no hash. Then the
+     * password is set and the token deleted in one transaction of two conditional statements. A
+     * signed token only changes a password that is still the one it was issued against.
+     *
+     * @param token The token that was sent to the user's email address.
+     * @param newPassword The new password to be set for the user.
+     * @return The outcome; the password is only changed when VALID.
+     */
+    @Override
+    public Mono<TokenValidationResult> resetPassword(String token, String newPassword) {
+        return checkPasswordResetLink(token)
+                .flatMap(link -> link.getResult() != TokenValidationResult.VALID
+                        ? Mono.just(link.getResult())
+                        : passwordHashing.encode(newPassword)
+                                .flatMap(encodedPassword -> consumePasswordResetLink(link, encodedPassword)))
+                .map(outcome -> countValidation("password_reset", outcome));
+    }
+
+    private Mono<PasswordResetLink> checkPasswordResetLink(String token) {
+        if (signedTokenService.isSigned(token)) {
+            SignedToken signedToken = signedTokenService.verify(token, Purpose.PASSWORD_RESET);
+            if (signedToken == null) {
+                return Mono.just(PasswordResetLink.rejected(TokenValidationResult.INVALID));
+            }
+            if (signedTokenService.isExpired(signedToken)) {
+                return Mono.just(PasswordResetLink.rejected(TokenValidationResult.EXPIRED));
+            }
+            return findSignedTokenOwner(signedToken)
+                    .map(user -> new PasswordResetLink(TokenValidationResult.VALID, token, user.getId(), true,
+                            user.getPassword()))
+                    .defaultIfEmpty(PasswordResetLink.rejected(TokenValidationResult.INVALID));
+        }
+        return passwordResetTokenRecordRepository.findByToken(token)
+                .flatMap(stored -> LocalDateTime.now().isBefore(stored.getExpirationTime())
+                        ? Mono.just(new PasswordResetLink(TokenValidationResult.VALID, token, stored.getUserId(),
+                                false, null))
+                        : passwordResetTokenRecordRepository.deleteByToken(token)
+                                .thenReturn(PasswordResetLink.rejected(TokenValidationResult.EXPIRED)))
+                .defaultIfEmpty(PasswordResetLink.rejected(TokenValidationResult.INVALID));
+    }
+
+    private Mono<TokenValidationResult> consumePasswordResetLink(PasswordResetLink link, String encodedPassword) {
+        if (link.isSigned()) {
+            // Of two concurrent uses of the link, only the first finds the password unchanged.
+            return userRecordRepository.updatePasswordIfUnchanged(link.getUserId(), encodedPassword,
+                            link.getSignedPassword())
+                    .map(updated -> updated == 0 ? TokenValidationResult.INVALID : TokenValidationResult.VALID);
+        }
+        return transactionalOperator.execute(status -> userRecordRepository
+                        .updatePasswordByResetToken(link.getToken(), encodedPassword, LocalDateTime.now())
+                        .flatMap(updated -> passwordResetTokenRecordRepository.deleteByToken(link.getToken())
+                                .map(deleted -> consumed(status, updated, deleted))))
+                .single();
+    }
+
+    /**
+     * It changes the password of the user with that email if the old password matches. Both hashes
+     * run on the hashing scheduler, and the new password is only written over the one that was
+     * checked.
+     *
+     * @param email The email address of the user.
+     * @param oldPassword The password that the user entered in the form
+     * @param newPassword The new password to be set for the user.
+     * @return false if there is no such user, the old password does not match, or the password was
+     * changed in the meantime.
+     */
+    @Override
+    public Mono<Boolean> changePassword(String email, String oldPassword, String newPassword) {
+        return userRecordRepository.findByEmail(User.normalizeEmail(email))
+                .filterWhen(user -> passwordHashing.matches(oldPassword, user.getPassword()))
+                .flatMap(user -> passwordHashing.encode(newPassword)
+                        .flatMap(encodedPassword -> userRecordRepository.updatePasswordIfUnchanged(
+                                user.getId(), encodedPassword, user.getPassword())))
+                .map(updated -> updated > 0)
+                .defaultIfEmpty(false);
+    }
+
+    // The user of a signed token, if the link was not used since it was issued.
+    private Mono<UserRecord> findSignedTokenOwner(SignedToken signedToken) {
+        return userRecordRepository.findById(signedToken.getUserId())
+                .filter(user -> signedTokenService.matches(signedToken, user.toUser()));
+    }
+
+    // Queues the email, and tries again a few times while the queue is full.
+    private Mono<Void> enqueue(OutgoingMail mail) {
+        return Mono.fromCallable(() -> mailDispatcher.enqueue(mail))
+                .flatMap(queued -> queued ? Mono.<Void>empty() : Mono.error(new MailQueueFullException(mail.getTo())))
+                .retryWhen(Retry.backoff(MAIL_QUEUE_RETRIES, MAIL_QUEUE_BACKOFF)
+                        .filter(MailQueueFullException.class::isInstance)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    private static String verificationUrl(String applicationUrl, String token) {
+        return applicationUrl + "/verifyRegistration?token=" + token;
+    }
+
+    /**
+     * The outcome of the two statements that consume a stored token, as in the UserServiceImpl: an
+     * update without the delete means another request consumed the token first, and is rolled
+     * back.
+     */
+    private static TokenValidationResult consumed(ReactiveTransaction status, int updated, int deleted) {
+        if (deleted == 0) {
+            if (updated > 0) {
+                status.setRollbackOnly();
+            }
+            return TokenValidationResult.INVALID;
+        }
+        return updated > 0 ? TokenValidationResult.VALID : TokenValidationResult.EXPIRED;
+    }
+
+    private TokenValidationResult countValidation(String type, TokenValidationResult result) {
+        meterRegistry.counter("tokens.validation", "type", type, "outcome", result.getOutcome()).increment();
+        return result;
+    }
+
+    // A password reset token that was checked, and what consuming it needs.
+    @Value
+    private static class PasswordResetLink {
+
+        TokenValidationResult result;
+        String token;
+        Long userId;
+        boolean signed;
+        // The password the signed token was issued against.
+        String signedPassword;
+
+        static PasswordResetLink rejected(TokenValidationResult result) {
+            return new PasswordResetLink(result, null, null, false, null);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.itns.springsecurityclient.reactive;
+
+import com.itns.springsecurityclient.config.CostAwarePasswordEncoder;
+import com.itns.springsecurityclient.config.PasswordEncoderCalibrator;
+import com.itns.springsecurityclient.config.PasswordHashingProperties;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+/**
+ * The web server and the security of the reactive mode.
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class ReactiveWebConfig {
+
+    // The endpoints of the RegistrationController, with the /async paths of the servlet app so that
+    // the clients work with either mode.
+    private static final String[] WHITE_LIST_URLS = {
+            "/register",
+            "/register/async",
+            "/verifyRegistration",
+            "/resendVerifyToken",
+            "/resetPassword",
+            "/savePassword",
+            "/savePassword/async",
+            "/changePassword",
+            "/changePassword/async",
+            "/actuator/health",
+            "/actuator/prometheus"
+    };
+
+    /**
+     * Tomcat is on the class path for the servlet mode, and Spring Boot would pick it for a
+     * reactive app too.
+     *
+     * @return The Netty server factory.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * The same encoder as in WebSecurityConfig.
+     *
+     * @param properties The password hashing settings.
+     * @return A new instance of CostAwarePasswordEncoder.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(PasswordHashingProperties properties) {
+        int strength = properties.isCalibrate()
+                ? new PasswordEncoderCalibrator(properties).calibrate()
+                : properties.getStrength();
+        return new CostAwarePasswordEncoder(strength);
+    }
+
+    /**
+     * No login in this mode: the registration endpoints are open, everything else is denied.
+     *
+     * @param http The ServerHttpSecurity object that is used to configure the security filter chain.
+     * @return A SecurityWebFilterChain
+     */
+    @Bean
+    SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                .csrf().disable()
+                .httpBasic().disable()
+                .formLogin().disable()
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers(WHITE_LIST_URLS).permitAll()
+                        .anyExchange().denyAll())
+                .build();
+    }
+}
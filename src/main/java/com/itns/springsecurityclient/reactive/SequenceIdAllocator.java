@@ -0,0 +1,94 @@
+package com.itns.springsecurityclient.reactive;
+
+import io.r2dbc.spi.ConnectionFactory;
+
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.dialect.H2Dialect;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * It hands out the ids of the user and verification_token rows from the same sequences as the
+ * pooled generators of the User and VerificationToken entities, so that both deployment modes can
+ * write to one database. Like Hibernate, it reads a value v of the sequence once per block of
+ * ALLOCATION_SIZE ids and uses v - ALLOCATION_SIZE + 1 to v. On MySQL the sequence is a table whose
+ * row is read with FOR UPDATE and moved forward by a block in one transaction, as Hibernate does.
+ */
+@Component
+public class SequenceIdAllocator {
+
+    // The allocationSize of the @SequenceGenerator of both entities.
+    static final int ALLOCATION_SIZE = 50;
+
+    private final DatabaseClient databaseClient;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final boolean nativeSequences;
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public SequenceIdAllocator(DatabaseClient databaseClient,
+                               TransactionalOperator transactionalOperator,
+                               ConnectionFactory connectionFactory) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.nativeSequences = DialectResolver.getDialect(connectionFactory) instanceof H2Dialect;
+    }
+
+    /**
+     * It takes the next id of the block of the sequence, and reads a new block once it is used up.
+     *
+     * @param sequence user_seq or verification_token_seq.
+     * @return The id, unique across the nodes and the deployment modes.
+     */
+    public Mono<Long> nextId(String sequence) {
+        Block block = blocks.computeIfAbsent(sequence, name -> new Block());
+        return Mono.defer(() -> {
+            Long id = block.take();
+            // Two requests may both read a block when one runs out; the ids of the first are lost.
+            return id != null ? Mono.just(id) : nextValue(sequence).map(block::refill);
+        });
+    }
+
+    private Mono<Long> nextValue(String sequence) {
+        if (nativeSequences) {
+            return databaseClient.sql("select next value for " + sequence)
+                    .map(row -> row.get(0, Long.class))
+                    .one();
+        }
+        return databaseClient.sql("select next_val from " + sequence + " for update")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(value -> databaseClient.sql("update " + sequence + " set next_val = :next")
+                        .bind("next", value + ALLOCATION_SIZE)
+                        .fetch()
+                        .rowsUpdated()
+                        .thenReturn(value))
+                .as(transactionalOperator::transactional);
+    }
+
+    private static class Block {
+
+        private long next = 1;
+
+        private long max = 0;
+
+        synchronized Long take() {
+            return next <= max ? next++ : null;
+        }
+
+        // The first value of a sequence is 1, and the ids start from 1 as well.
+        synchronized long refill(long value) {
+            next = Math.max(1, value - ALLOCATION_SIZE + 1);
+            max = value;
+            return next++;
+        }
+    }
+}
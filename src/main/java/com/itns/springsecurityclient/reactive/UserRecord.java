@@ -0,0 +1,41 @@
+package com.itns.springsecurityclient.reactive;
+
+import com.itns.springsecurityclient.entity.User;
+
+import lombok.Data;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A row of the user table, as the reactive mode reads and writes it. The id comes from the user_seq
+ * of the User entity, see SequenceIdAllocator.
+ */
+@Data
+@Table("user")
+public class UserRecord {
+
+    @Id
+    private Long id;
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String password;
+    private String role;
+    private boolean enabled;
+
+    /**
+     * @return The same user as an entity, for the SignedTokenService and the MailTemplates.
+     */
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setEmail(email);
+        user.setPassword(password);
+        user.setRole(role);
+        user.setEnabled(enabled);
+        return user;
+    }
+}
@@ -0,0 +1,42 @@
+package com.itns.springsecurityclient.reactive;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+// An R2DBC repository of the user table, with the conditional statements of UserRepository in SQL.
+// Each returns 0 when its condition no longer holds.
+public interface UserRecordRepository extends R2dbcRepository<UserRecord, Long> {
+
+    Mono<UserRecord> findByEmail(String email);
+
+    // Enables the owner of the verification token, if the token exists and has not expired.
+    @Modifying
+    @Query("update user set enabled = true where id = (select t.user_id from verification_token t "
+            + "where t.token = :token and t.expiration_time > :now)")
+    Mono<Integer> enableByVerificationToken(@Param("token") String token, @Param("now") LocalDateTime now);
+
+    // Sets the password of the owner of the reset token, if the token exists and has not expired.
+    @Modifying
+    @Query("update user set password = :password where id = (select t.user_id from password_reset_token t "
+            + "where t.token = :token and t.expiration_time > :now)")
+    Mono<Integer> updatePasswordByResetToken(@Param("token") String token, @Param("password") String password,
+                                             @Param("now") LocalDateTime now);
+
+    // For the signed verification links: only the first of two concurrent uses enables the user.
+    @Modifying
+    @Query("update user set enabled = true where id = :id and enabled = false")
+    Mono<Integer> enableIfDisabled(@Param("id") Long id);
+
+    // For the signed reset links and the password changes: only the first of two concurrent
+    // requests replaces the password.
+    @Modifying
+    @Query("update user set password = :password where id = :id and password = :expectedPassword")
+    Mono<Integer> updatePasswordIfUnchanged(@Param("id") Long id, @Param("password") String password,
+                                            @Param("expectedPassword") String expectedPassword);
+}
@@ -0,0 +1,23 @@
+package com.itns.springsecurityclient.reactive;
+
+import lombok.Data;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * A row of the verification_token table. The id comes from the verification_token_seq of the
+ * VerificationToken entity.
+ */
+@Data
+@Table("verification_token")
+public class VerificationTokenRecord {
+
+    @Id
+    private Long id;
+    private String token;
+    private LocalDateTime expirationTime;
+    private Long userId;
+}
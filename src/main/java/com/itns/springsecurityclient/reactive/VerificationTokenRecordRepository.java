@@ -0,0 +1,28 @@
+package com.itns.springsecurityclient.reactive;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+// An R2DBC repository of the verification_token table.
+public interface VerificationTokenRecordRepository extends R2dbcRepository<VerificationTokenRecord, Long> {
+
+    Mono<VerificationTokenRecord> findByToken(String token);
+
+    // Consumes the token; whether it had expired is decided by the update that goes with it.
+    @Modifying
+    @Query("delete from verification_token where token = :token")
+    Mono<Integer> deleteByToken(@Param("token") String token);
+
+    // Replaces the token of a resent link, with a new expiry.
+    @Modifying
+    @Query("update verification_token set token = :newToken, expiration_time = :expirationTime "
+            + "where token = :oldToken")
+    Mono<Integer> replaceToken(@Param("oldToken") String oldToken, @Param("newToken") String newToken,
+                               @Param("expirationTime") LocalDateTime expirationTime);
+}
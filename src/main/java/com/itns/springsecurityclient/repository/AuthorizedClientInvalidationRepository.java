@@ -0,0 +1,26 @@
+package com.itns.springsecurityclient.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.itns.springsecurityclient.entity.AuthorizedClientInvalidation;
+
+import java.util.Date;
+import java.util.List;
+
+// A repository for the AuthorizedClientInvalidation entity.
+@Repository
+public interface AuthorizedClientInvalidationRepository extends
+        JpaRepository<AuthorizedClientInvalidation,Long> {
+
+    @Query("select i from AuthorizedClientInvalidation i where i.createdAt >= :since order by i.createdAt, i.id")
+    List<AuthorizedClientInvalidation> findCreatedSince(@Param("since") Date since, Pageable pageable);
+
+    @Modifying
+    @Query("delete from AuthorizedClientInvalidation i where i.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Date before);
+}
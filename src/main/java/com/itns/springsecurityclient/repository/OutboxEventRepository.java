@@ -0,0 +1,47 @@
+package com.itns.springsecurityclient.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.itns.springsecurityclient.entity.OutboxEvent;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+// A repository for the OutboxEvent entity.
+@Repository
+public interface OutboxEventRepository extends
+        JpaRepository<OutboxEvent,Long> {
+
+    @Query("select e.id from OutboxEvent e where e.status = :status and e.nextAttemptAt <= :now order by e.id")
+    List<Long> findDueIds(@Param("status") OutboxEvent.Status status, @Param("now") Date now, Pageable pageable);
+
+    // Only the events still due: those claimed by another node since they were read are skipped,
+    // as their next attempt was moved to the end of that claim.
+    @Modifying
+    @Query("update OutboxEvent e set e.claimedBy = :claim, e.nextAttemptAt = :claimedUntil"
+            + " where e.id in :ids and e.status = :status and e.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids, @Param("claim") String claim,
+              @Param("claimedUntil") Date claimedUntil, @Param("status") OutboxEvent.Status status,
+              @Param("now") Date now);
+
+    List<OutboxEvent> findByClaimedBy(String claim);
+
+    Optional<OutboxEvent> findByIdAndClaimedBy(Long id, String claim);
+
+    // Leaves the events whose claim expired and was taken over by another node.
+    @Modifying
+    @Query("delete from OutboxEvent e where e.id in :ids and e.claimedBy = :claim")
+    int deleteClaimed(@Param("ids") Collection<Long> ids, @Param("claim") String claim);
+
+    long countByStatus(OutboxEvent.Status status);
+
+    @Query("select min(e.createdAt) from OutboxEvent e where e.status = :status")
+    Date findOldestCreatedAt(@Param("status") OutboxEvent.Status status);
+}
@@ -1,14 +1,44 @@
 package com.itns.springsecurityclient.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.itns.springsecurityclient.entity.PasswordResetToken;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
 // A JPA repository. It is a Spring Data interface for generic CRUD operations on a repository for a
 // specific type. It extends the `JpaRepository` interface.
 @Repository
 public interface PasswordResetTokenRepository extends
         JpaRepository<PasswordResetToken,Long> {
+    // Read-only, so that it can be served by a replica (app.datasource.routing).
+    @Transactional(readOnly = true)
     PasswordResetToken findByToken(String token);
+
+    // The user and the expiry of the token, in one indexed lookup joined to the user's primary key.
+    @Transactional(readOnly = true)
+    @Query("select new com.itns.springsecurityclient.repository.TokenOwner(u.id, u.email, t.expirationTime) "
+            + "from PasswordResetToken t join t.user u where t.token = :token")
+    TokenOwner findOwnerByToken(@Param("token") String token);
+
+    // Consumes the token; whether it had expired is decided by the update that goes with it.
+    @Modifying
+    @Query("delete from PasswordResetToken t where t.token = :token")
+    int deleteByToken(@Param("token") String token);
+
+    // Ids of the tokens that expired before the given date, one page at a time.
+    @Query("select t.id from PasswordResetToken t where t.expirationTime < :now")
+    List<Long> findExpiredIds(@Param("now") Date now, Pageable pageable);
+
+    @Modifying
+    @Query("delete from PasswordResetToken t where t.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
 }
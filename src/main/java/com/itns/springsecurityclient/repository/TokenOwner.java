@@ -0,0 +1,36 @@
+package com.itns.springsecurityclient.repository;
+
+import com.itns.springsecurityclient.entity.User;
+
+import lombok.Value;
+
+import java.util.Date;
+
+/**
+ * The user a stored token belongs to and when the token expires, read without loading the token
+ * or the user entity.
+ */
+@Value
+public class TokenOwner {
+
+    Long userId;
+    String email;
+    Date expirationTime;
+
+    /**
+     * @param user The user of a cached token.
+     * @param expirationTime The expiration time of that token.
+     * @return The owner, as findOwnerByToken would have read it.
+     */
+    public static TokenOwner of(User user, Date expirationTime) {
+        return new TokenOwner(user.getId(), user.getEmail(), expirationTime);
+    }
+
+    /**
+     * @param now The current time.
+     * @return true if the token has expired.
+     */
+    public boolean isExpired(Date now) {
+        return !now.before(expirationTime);
+    }
+}
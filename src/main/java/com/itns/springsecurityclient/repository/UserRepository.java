@@ -1,12 +1,65 @@
 package com.itns.springsecurityclient.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.itns.springsecurityclient.entity.User;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
 // A JPA repository. It is a Spring Data interface for generic CRUD operations on a repository for a
 // specific type. It extends the `JpaRepository` interface.
 @Repository
 public interface UserRepository  extends JpaRepository<User,Long> {
+    // Read-only, so that it can be served by a replica (app.datasource.routing).
+    @Transactional(readOnly = true)
     User findByEmail(String email);
+
+    List<User> findByEmailIn(Collection<String> emails);
+
+    // The conditional updates below change a user in one statement, without loading it first; each
+    // returns 0 when its condition no longer holds.
+
+    // Enables the owner of the verification token, if the token exists and has not expired.
+    @Modifying
+    @Query("update User u set u.enabled = true where u.id = (select t.user.id from VerificationToken t "
+            + "where t.token = :token and t.expirationTime > :now)")
+    int enableByVerificationToken(@Param("token") String token, @Param("now") Date now);
+
+    // Sets the password of the owner of the reset token, if the token exists and has not expired.
+    @Modifying
+    @Query("update User u set u.password = :password where u.id = (select t.user.id from PasswordResetToken t "
+            + "where t.token = :token and t.expirationTime > :now)")
+    int updatePasswordByResetToken(@Param("token") String token, @Param("password") String password,
+                                   @Param("now") Date now);
+
+    // For the signed verification links: only the first of two concurrent uses enables the user.
+    @Modifying
+    @Query("update User u set u.enabled = true where u.id = :id and u.enabled = false")
+    int enableIfDisabled(@Param("id") Long id);
+
+    // Sets the password alone, so that a stale copy of the user from the UserCache cannot write its
+    // other columns back, such as enabled.
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+
+    // The current password hash alone, for the checks that must not trust a cached copy of the user.
+    @Transactional(readOnly = true)
+    @Query("select u.password from User u where u.id = :id")
+    String findPasswordById(@Param("id") Long id);
+
+    // For the signed reset links and the password changes: only the first of two concurrent uses
+    // replaces the password, and only if it is still the one that was checked.
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :password where u.id = :id and u.password = :expectedPassword")
+    int updatePasswordIfUnchanged(@Param("id") Long id, @Param("password") String password,
+                                  @Param("expectedPassword") String expectedPassword);
 }
\ No newline at end of file
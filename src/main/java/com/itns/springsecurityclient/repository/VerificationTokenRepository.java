@@ -1,13 +1,43 @@
 package com.itns.springsecurityclient.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.itns.springsecurityclient.entity.VerificationToken;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
 // A repository for the VerificationToken entity.
 @Repository
 public interface VerificationTokenRepository extends
         JpaRepository<VerificationToken,Long> {
+    // Read-only, so that it can be served by a replica (app.datasource.routing).
+    @Transactional(readOnly = true)
     VerificationToken findByToken(String token);
+
+    // The user and the expiry of the token, in one indexed lookup joined to the user's primary key.
+    @Transactional(readOnly = true)
+    @Query("select new com.itns.springsecurityclient.repository.TokenOwner(u.id, u.email, t.expirationTime) "
+            + "from VerificationToken t join t.user u where t.token = :token")
+    TokenOwner findOwnerByToken(@Param("token") String token);
+
+    // Consumes the token; whether it had expired is decided by the update that goes with it.
+    @Modifying
+    @Query("delete from VerificationToken t where t.token = :token")
+    int deleteByToken(@Param("token") String token);
+
+    // Ids of the tokens that expired before the given date, one page at a time.
+    @Query("select t.id from VerificationToken t where t.expirationTime < :now")
+    List<Long> findExpiredIds(@Param("now") Date now, Pageable pageable);
+
+    @Modifying
+    @Query("delete from VerificationToken t where t.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,75 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.TokenRefreshProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * This job refreshes the access tokens a margin before they expire, so that the first request
+ * after the expiry does not wait for the authorization server. Each refresh goes through the
+ * RefreshAheadOAuth2AuthorizedClientManager, which sends it only when this node holds the
+ * TokenRefreshLease of the token: a token being refreshed by another node or by a request is left
+ * to it. No row lock or connection is held while the authorization server answers.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "app.oauth2.token-refresh", name = "background", havingValue = "true",
+        matchIfMissing = true)
+public class AccessTokenRefreshJob {
+
+    private static final String FIND_EXPIRING_SQL = "SELECT client_registration_id, principal_name"
+            + " FROM oauth2_authorized_client"
+            + " WHERE refresh_token_value IS NOT NULL AND access_token_expires_at < ?"
+            + " ORDER BY access_token_expires_at LIMIT ?";
+
+    private final RefreshAheadOAuth2AuthorizedClientManager authorizedClientManager;
+
+    private final JdbcOperations jdbcOperations;
+
+    private final TokenRefreshProperties properties;
+
+    private final Counter failedCounter;
+
+    public AccessTokenRefreshJob(RefreshAheadOAuth2AuthorizedClientManager authorizedClientManager,
+                                 JdbcOperations jdbcOperations,
+                                 TokenRefreshProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.authorizedClientManager = authorizedClientManager;
+        this.jdbcOperations = jdbcOperations;
+        this.properties = properties;
+        this.failedCounter = Counter.builder("oauth2.token.refresh.failed")
+                .tag("path", "background")
+                .register(meterRegistry);
+    }
+
+    /**
+     * It refreshes the access tokens that expire within the margin, soonest first.
+     */
+    @Scheduled(fixedDelayString = "${app.oauth2.token-refresh.interval:PT1M}")
+    public void refreshExpiringTokens() {
+        Timestamp threshold = Timestamp.from(Instant.now().plus(properties.getMargin()));
+        List<String[]> expiring = jdbcOperations.query(FIND_EXPIRING_SQL,
+                (rs, rowNum) -> new String[] {rs.getString(1), rs.getString(2)},
+                threshold, properties.getBatchSize());
+        for (String[] client : expiring) {
+            try {
+                authorizedClientManager.refreshInBackground(client[0], client[1]);
+            } catch (RuntimeException e) {
+                // The request path refreshes it, or asks the user to authorize again.
+                failedCounter.increment();
+                log.warn("Could not refresh the access token of {} for {}", client[0], client[1], e);
+            }
+        }
+    }
+}
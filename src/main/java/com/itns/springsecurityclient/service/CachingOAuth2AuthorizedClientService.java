@@ -0,0 +1,212 @@
+package com.itns.springsecurityclient.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.itns.springsecurityclient.config.AuthorizedClientStoreProperties;
+import com.itns.springsecurityclient.entity.AuthorizedClientInvalidation;
+import com.itns.springsecurityclient.repository.AuthorizedClientInvalidationRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.JdbcOAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * This class keeps the authorized clients in the oauth2_authorized_client table, so that any node
+ * can call the resource server for a user without a new authorization, with a bounded local cache
+ * in front so that a request does not read the table. An entry expires with its access token.
+ * Every save or removal also writes an invalidation row, which the other nodes poll to drop their
+ * cached copy; a node may serve a stale client for up to one poll interval. The rows are polled by
+ * creation time over an overlapping window rather than by id, since the ids of concurrent
+ * transactions do not commit in order.
+ */
+@Service
+@Slf4j
+public class CachingOAuth2AuthorizedClientService implements OAuth2AuthorizedClientService {
+
+    private final OAuth2AuthorizedClientService delegate;
+
+    private final AuthorizedClientInvalidationRepository invalidationRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AuthorizedClientStoreProperties properties;
+
+    private final Cache<Key, OAuth2AuthorizedClient> cache;
+
+    private final Counter remoteInvalidations;
+
+    // Identifies the invalidation rows written by this node, which it does not need to apply.
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Start of the last poll; null until the first one.
+    private Date lastPollAt;
+
+    // The invalidation rows already applied within the overlap window, with their creation time.
+    private final Map<Long, Date> appliedInvalidations = new HashMap<>();
+
+    public CachingOAuth2AuthorizedClientService(JdbcOperations jdbcOperations,
+                                                ClientRegistrationRepository clientRegistrationRepository,
+                                                AuthorizedClientInvalidationRepository invalidationRepository,
+                                                TransactionTemplate transactionTemplate,
+                                                AuthorizedClientStoreProperties properties,
+                                                MeterRegistry meterRegistry) {
+        this.delegate = new JdbcOAuth2AuthorizedClientService(jdbcOperations, clientRegistrationRepository);
+        this.invalidationRepository = invalidationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry,
+                newCache(properties.getCache()), "oauth2.authorizedClients");
+        this.remoteInvalidations = Counter.builder("oauth2.authorizedClients.invalidations")
+                .description("Cached authorized clients dropped after a change on another node")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends OAuth2AuthorizedClient> T loadAuthorizedClient(String clientRegistrationId,
+                                                                     String principalName) {
+        // A missing client is not cached, the user is about to authorize and save it.
+        return (T) cache.get(new Key(clientRegistrationId, principalName),
+                key -> delegate.loadAuthorizedClient(key.getClientRegistrationId(), key.getPrincipalName()));
+    }
+
+    @Override
+    public void saveAuthorizedClient(OAuth2AuthorizedClient authorizedClient, Authentication principal) {
+        String clientRegistrationId = authorizedClient.getClientRegistration().getRegistrationId();
+        transactionTemplate.executeWithoutResult(status -> {
+            delegate.saveAuthorizedClient(authorizedClient, principal);
+            invalidationRepository.save(
+                    new AuthorizedClientInvalidation(clientRegistrationId, principal.getName(), nodeId));
+        });
+        cache.put(new Key(clientRegistrationId, principal.getName()), authorizedClient);
+    }
+
+    @Override
+    public void removeAuthorizedClient(String clientRegistrationId, String principalName) {
+        transactionTemplate.executeWithoutResult(status -> {
+            delegate.removeAuthorizedClient(clientRegistrationId, principalName);
+            invalidationRepository.save(
+                    new AuthorizedClientInvalidation(clientRegistrationId, principalName, nodeId));
+        });
+        cache.invalidate(new Key(clientRegistrationId, principalName));
+    }
+
+    /**
+     * It drops the cached copy of an authorized client, so that the next load reads the table.
+     *
+     * @param clientRegistrationId The registration of the authorized client.
+     * @param principalName The principal the client was authorized for.
+     */
+    public void evictAuthorizedClient(String clientRegistrationId, String principalName) {
+        cache.invalidate(new Key(clientRegistrationId, principalName));
+    }
+
+    /**
+     * It drops the cached authorized clients changed by the other nodes since the last poll.
+     */
+    @Scheduled(fixedDelayString = "${app.oauth2.authorized-clients.invalidation.poll-interval:PT1S}")
+    public void applyInvalidations() {
+        Date pollAt = new Date();
+        // Nothing older than the first poll can be in the cache, it was filled after startup.
+        boolean firstPoll = lastPollAt == null;
+        // A row is stamped before its transaction commits, so it may show up after a poll that
+        // already went past its time: each poll reads the overlap window again, skipping the rows
+        // it has applied.
+        Date since = new Date((firstPoll ? pollAt : lastPollAt).getTime()
+                - properties.getInvalidation().getOverlap().toMillis());
+        int batchSize = properties.getInvalidation().getBatchSize();
+        int page = 0;
+        List<AuthorizedClientInvalidation> invalidations;
+        do {
+            invalidations = invalidationRepository.findCreatedSince(since, PageRequest.of(page++, batchSize));
+            for (AuthorizedClientInvalidation invalidation : invalidations) {
+                if (appliedInvalidations.putIfAbsent(invalidation.getId(), invalidation.getCreatedAt()) == null
+                        && !firstPoll && !nodeId.equals(invalidation.getNodeId())) {
+                    cache.invalidate(new Key(invalidation.getClientRegistrationId(),
+                            invalidation.getPrincipalName()));
+                    remoteInvalidations.increment();
+                }
+            }
+        } while (invalidations.size() == batchSize);
+        if (firstPoll) {
+            cache.invalidateAll();
+        }
+        // The next poll does not read these again.
+        appliedInvalidations.values().removeIf(createdAt -> createdAt.before(since));
+        lastPollAt = pollAt;
+    }
+
+    /**
+     * It deletes the invalidation rows that every node has had the time to apply.
+     */
+    @Scheduled(fixedDelayString = "${app.oauth2.authorized-clients.invalidation.purge-interval:PT10M}")
+    public void purgeInvalidations() {
+        Date before = Date.from(Instant.now().minus(properties.getInvalidation().getRetention()));
+        Integer removed = transactionTemplate.execute(status -> invalidationRepository.deleteCreatedBefore(before));
+        log.debug("Deleted {} authorized client invalidations", removed);
+    }
+
+    private static Cache<Key, OAuth2AuthorizedClient> newCache(AuthorizedClientStoreProperties.Cache properties) {
+        long maxTimeToLiveNanos = properties.getMaxTimeToLive().toNanos();
+        return Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new Expiry<Key, OAuth2AuthorizedClient>() {
+                    @Override
+                    public long expireAfterCreate(Key key, OAuth2AuthorizedClient value, long currentTime) {
+                        return timeToLiveNanos(value, maxTimeToLiveNanos);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, OAuth2AuthorizedClient value, long currentTime,
+                                                  long currentDuration) {
+                        return timeToLiveNanos(value, maxTimeToLiveNanos);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, OAuth2AuthorizedClient value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    private static long timeToLiveNanos(OAuth2AuthorizedClient authorizedClient, long maxTimeToLiveNanos) {
+        Instant expiresAt = authorizedClient.getAccessToken().getExpiresAt();
+        if (expiresAt == null) {
+            return maxTimeToLiveNanos;
+        }
+        long remainingNanos = Duration.between(Instant.now(), expiresAt).toNanos();
+        return Math.max(0, Math.min(remainingNanos, maxTimeToLiveNanos));
+    }
+
+    @Value
+    private static class Key {
+
+        String clientRegistrationId;
+        String principalName;
+    }
+}
@@ -0,0 +1,108 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.TokenProperties;
+import com.itns.springsecurityclient.repository.PasswordResetTokenRepository;
+import com.itns.springsecurityclient.repository.VerificationTokenRepository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Expired tokens used to be deleted only when someone tried to validate them, so abandoned tokens
+ * stayed in the tables forever. This job deletes them in the background, in small batches, each in
+ * its own transaction.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "app.tokens.purge", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ExpiredTokenPurgeJob {
+
+    private final VerificationTokenRepository verificationTokenRepository;
+
+    private final PasswordResetTokenRepository passwordResetTokenRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TokenProperties.Purge properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Timer runTimer;
+
+    public ExpiredTokenPurgeJob(VerificationTokenRepository verificationTokenRepository,
+                                PasswordResetTokenRepository passwordResetTokenRepository,
+                                TransactionTemplate transactionTemplate,
+                                TokenProperties tokenProperties,
+                                MeterRegistry meterRegistry) {
+        this.verificationTokenRepository = verificationTokenRepository;
+        this.passwordResetTokenRepository = passwordResetTokenRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = tokenProperties.getPurge();
+        this.meterRegistry = meterRegistry;
+        this.runTimer = Timer.builder("tokens.purge.duration")
+                .description("Time taken by one purge run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * It deletes the expired verification and password reset tokens.
+     */
+    @Scheduled(fixedDelayString = "${app.tokens.purge.interval:PT5M}",
+            initialDelayString = "${app.tokens.purge.interval:PT5M}")
+    public void purgeExpiredTokens() {
+        runTimer.record(() -> {
+            Date now = new Date();
+            int verificationTokens = purge("verification", now,
+                    verificationTokenRepository::findExpiredIds, verificationTokenRepository::deleteAllByIdIn);
+            int passwordResetTokens = purge("passwordReset", now,
+                    passwordResetTokenRepository::findExpiredIds, passwordResetTokenRepository::deleteAllByIdIn);
+            if (verificationTokens + passwordResetTokens > 0) {
+                log.info("Purged {} verification tokens and {} password reset tokens",
+                        verificationTokens, passwordResetTokens);
+            }
+        });
+    }
+
+    private int purge(String type, Date now,
+                      ExpiredIdsQuery findExpiredIds,
+                      ToIntFunction<Collection<Long>> deleteByIds) {
+        // Deleted rows no longer match, so the first page is always the next batch.
+        Pageable firstPage = PageRequest.of(0, properties.getBatchSize());
+        int removed = 0;
+        for (int batch = 0; batch < properties.getMaxBatchesPerRun(); batch++) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<Long> ids = findExpiredIds.find(now, firstPage);
+                return ids.isEmpty() ? 0 : deleteByIds.applyAsInt(ids);
+            });
+            removed += deleted;
+            if (deleted < properties.getBatchSize()) {
+                break;
+            }
+        }
+        DistributionSummary.builder("tokens.purge.removed")
+                .description("Expired tokens deleted per purge run")
+                .tag("type", type)
+                .register(meterRegistry)
+                .record(removed);
+        return removed;
+    }
+
+    @FunctionalInterface
+    private interface ExpiredIdsQuery {
+        List<Long> find(Date now, Pageable pageable);
+    }
+}
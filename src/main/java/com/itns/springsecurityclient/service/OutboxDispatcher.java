@@ -0,0 +1,179 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.OutboxProperties;
+import com.itns.springsecurityclient.entity.OutboxEvent;
+import com.itns.springsecurityclient.event.OutboxEventDeferredException;
+import com.itns.springsecurityclient.event.OutboxEventHandler;
+import com.itns.springsecurityclient.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * This class drains the outbox in the background. Each poll claims a batch of due events in a short
+ * transaction, handles them with no transaction or connection held, then deletes the handled ones
+ * and reschedules the others in a second short transaction. A node that stops in between leaves its
+ * events claimed until the claim timeout, after which any node sends them again. A failed event is
+ * retried with an exponential backoff until the maximum number of attempts; a deferred one is tried
+ * again after the delay of its handler.
+ */
+@Component
+@Slf4j
+public class OutboxDispatcher {
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final OutboxProperties properties;
+
+    private final Map<String, OutboxEventHandler> handlers;
+
+    private final MeterRegistry meterRegistry;
+
+    // Refreshed after every poll, read by the gauges.
+    private final AtomicLong depth = new AtomicLong();
+
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            TransactionTemplate transactionTemplate,
+                            OutboxProperties properties,
+                            List<OutboxEventHandler> handlers,
+                            MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.handlers = handlers.stream()
+                .collect(Collectors.toMap(OutboxEventHandler::getEventType, Function.identity()));
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("outbox.depth", depth, AtomicLong::get)
+                .description("Pending events in the outbox")
+                .register(meterRegistry);
+        Gauge.builder("outbox.lag", lagMillis, value -> value.get() / 1000.0)
+                .description("Age in seconds of the oldest pending event")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * It handles the events that are due, up to one batch per poll.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval:PT1S}")
+    public void dispatch() {
+        String claim = UUID.randomUUID().toString();
+        List<OutboxEvent> events = transactionTemplate.execute(status -> claim(claim));
+        if (!events.isEmpty()) {
+            List<OutboxEvent> handled = new ArrayList<>();
+            Map<Long, RuntimeException> errors = new HashMap<>();
+            for (OutboxEvent event : events) {
+                try {
+                    handle(event);
+                    handled.add(event);
+                } catch (RuntimeException e) {
+                    errors.put(event.getId(), e);
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> release(claim, handled, errors));
+        }
+        refreshGauges();
+    }
+
+    private List<OutboxEvent> claim(String claim) {
+        Date now = new Date();
+        List<Long> ids = outboxEventRepository.findDueIds(
+                OutboxEvent.Status.PENDING, now, PageRequest.of(0, properties.getBatchSize()));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        outboxEventRepository.claim(ids, claim, new Date(now.getTime() + properties.getClaimTimeout().toMillis()),
+                OutboxEvent.Status.PENDING, now);
+        return outboxEventRepository.findByClaimedBy(claim);
+    }
+
+    private void release(String claim, List<OutboxEvent> handled, Map<Long, RuntimeException> errors) {
+        if (!handled.isEmpty()) {
+            outboxEventRepository.deleteClaimed(
+                    handled.stream().map(OutboxEvent::getId).collect(Collectors.toList()), claim);
+            handled.forEach(event -> counter("outbox.dispatched", event.getEventType()).increment());
+        }
+        errors.forEach((id, error) -> outboxEventRepository.findByIdAndClaimedBy(id, claim).ifPresent(event -> {
+            event.setClaimedBy(null);
+            if (error instanceof OutboxEventDeferredException) {
+                defer(event, (OutboxEventDeferredException) error);
+            } else {
+                markFailed(event, error);
+            }
+        }));
+    }
+
+    // Not a failure: the event is tried again after the delay, with the same number of attempts.
+    private void defer(OutboxEvent event, OutboxEventDeferredException deferral) {
+        event.setNextAttemptAt(new Date(System.currentTimeMillis() + deferral.getDelay().toMillis()));
+        outboxEventRepository.save(event);
+        counter("outbox.deferred", event.getEventType()).increment();
+    }
+
+    private void handle(OutboxEvent event) {
+        OutboxEventHandler handler = handlers.get(event.getEventType());
+        if (handler == null) {
+            throw new IllegalStateException("No outbox handler for event type " + event.getEventType());
+        }
+        try {
+            handler.handle(event.getPayload());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void markFailed(OutboxEvent event, RuntimeException error) {
+        event.setAttempts(event.getAttempts() + 1);
+        String message = String.valueOf(error.getMessage());
+        event.setLastError(message.length() > 500 ? message.substring(0, 500) : message);
+        counter("outbox.failed", event.getEventType()).increment();
+        if (event.getAttempts() >= properties.getMaxAttempts()) {
+            event.setStatus(OutboxEvent.Status.FAILED);
+            log.error("Outbox event {} of type {} failed {} times, giving up",
+                    event.getId(), event.getEventType(), event.getAttempts(), error);
+        } else {
+            long backoff = Math.min(
+                    properties.getInitialBackoff().toMillis() << Math.min(event.getAttempts() - 1, 20),
+                    properties.getMaxBackoff().toMillis());
+            event.setNextAttemptAt(new Date(System.currentTimeMillis() + backoff));
+            log.warn("Outbox event {} of type {} failed, retrying in {} ms",
+                    event.getId(), event.getEventType(), backoff, error);
+        }
+        outboxEventRepository.save(event);
+    }
+
+    private void refreshGauges() {
+        depth.set(outboxEventRepository.countByStatus(OutboxEvent.Status.PENDING));
+        Date oldest = outboxEventRepository.findOldestCreatedAt(OutboxEvent.Status.PENDING);
+        lagMillis.set(oldest == null ? 0 : System.currentTimeMillis() - oldest.getTime());
+    }
+
+    private Counter counter(String name, String eventType) {
+        return Counter.builder(name)
+                .tag("type", eventType)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,40 @@
+package com.itns.springsecurityclient.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itns.springsecurityclient.entity.OutboxEvent;
+import com.itns.springsecurityclient.repository.OutboxEventRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This class writes events to the outbox table.
+ */
+@Service
+public class OutboxService {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * It stores the event in the outbox. It must join the transaction of the change that produced
+     * the event, otherwise a crash between the two commits would lose the event.
+     *
+     * @param eventType The type used to find the handler of the event.
+     * @param payload The object stored as JSON with the event.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String eventType, Object payload) {
+        try {
+            outboxEventRepository.save(new OutboxEvent(eventType, objectMapper.writeValueAsString(payload)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize outbox payload of " + eventType, e);
+        }
+    }
+}
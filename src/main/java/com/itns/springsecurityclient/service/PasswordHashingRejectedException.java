@@ -0,0 +1,18 @@
+package com.itns.springsecurityclient.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when the password hashing pool and its queue are both full. It is mapped to a 503 so that
+ * clients back off instead of piling up on the request threads.
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Password hashing capacity exceeded")
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingRejectedException(Throwable cause) {
+        super("Password hashing capacity exceeded", cause);
+    }
+}
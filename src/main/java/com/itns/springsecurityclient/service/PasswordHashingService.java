@@ -0,0 +1,197 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.PasswordHashingProperties;
+import com.itns.springsecurityclient.jfr.PasswordHashEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * This class runs the PasswordEncoder on a bounded pool sized to the number of cores, so that a
+ * burst of registrations cannot use up the servlet threads.
+ */
+@Service
+@Slf4j
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final ThreadPoolExecutor threadPool;
+
+    private final ExecutorService executor;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Counter rejectedCounter;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  PasswordHashingProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        // AbortPolicy: when the queue is full we want to fail fast with a 503, not to run the
+        // hash on the caller thread.
+        this.threadPool = new ThreadPoolExecutor(
+                properties.getPoolSize(),
+                properties.getPoolSize(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, threadPool, "password.hashing");
+        this.encodeTimer = Timer.builder("password.hashing.duration")
+                .tag("operation", "encode")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hashing.duration")
+                .tag("operation", "matches")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("password.hashing.rejected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * It hashes the raw password on the hashing pool.
+     *
+     * @param rawPassword The password entered by the user.
+     * @return A future completed with the encoded password.
+     */
+    public CompletableFuture<String> encodeAsync(String rawPassword) {
+        long submittedNanos = System.nanoTime();
+        return submit(() -> encodeNow(rawPassword, submittedNanos));
+    }
+
+    /**
+     * It checks the raw password against the encoded one on the hashing pool.
+     *
+     * @param rawPassword The password entered by the user.
+     * @param encodedPassword The password stored in the database.
+     * @return A future completed with true if the passwords match.
+     */
+    public CompletableFuture<Boolean> matchesAsync(String rawPassword, String encodedPassword) {
+        long submittedNanos = System.nanoTime();
+        return submit(() -> matchesNow(rawPassword, encodedPassword, submittedNanos));
+    }
+
+    /**
+     * Same as encodeAsync, but waits for the result. The caller thread is still blocked, but the
+     * number of hashes running at the same time stays bounded.
+     *
+     * @param rawPassword The password entered by the user.
+     * @return The encoded password.
+     */
+    public String encode(String rawPassword) {
+        return join(encodeAsync(rawPassword));
+    }
+
+    /**
+     * Same as matchesAsync, but waits for the result.
+     *
+     * @param rawPassword The password entered by the user.
+     * @param encodedPassword The password stored in the database.
+     * @return true if the passwords match.
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return join(matchesAsync(rawPassword, encodedPassword));
+    }
+
+    /**
+     * It hashes a list of passwords in parallel. The list is split in one slice per pool thread, so
+     * a large batch only takes as many queue slots as there are threads.
+     *
+     * @param rawPasswords The passwords to hash.
+     * @return The encoded passwords, in the same order.
+     */
+    public List<String> encodeAll(List<String> rawPasswords) {
+        int slices = Math.min(threadPool.getMaximumPoolSize(), rawPasswords.size());
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>(slices);
+        for (int slice = 0; slice < slices; slice++) {
+            List<String> part = rawPasswords.subList(
+                    slice * rawPasswords.size() / slices,
+                    (slice + 1) * rawPasswords.size() / slices);
+            long submittedNanos = System.nanoTime();
+            futures.add(submit(() -> {
+                List<String> encoded = new ArrayList<>(part.size());
+                // Only the first hash of a slice waited in the queue.
+                long queuedSince = submittedNanos;
+                for (String rawPassword : part) {
+                    encoded.add(encodeNow(rawPassword, queuedSince));
+                    queuedSince = System.nanoTime();
+                }
+                return encoded;
+            }));
+        }
+        List<String> encodedPasswords = new ArrayList<>(rawPasswords.size());
+        for (CompletableFuture<List<String>> future : futures) {
+            encodedPasswords.addAll(join(future));
+        }
+        return encodedPasswords;
+    }
+
+    // Runs on the pool: times the hash and emits a PasswordHashEvent with its cost and queue time.
+    private String encodeNow(String rawPassword, long submittedNanos) {
+        long startedNanos = System.nanoTime();
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        String encodedPassword = encodeTimer.record(() -> passwordEncoder.encode(rawPassword));
+        event.complete("encode", encodedPassword, submittedNanos, startedNanos);
+        return encodedPassword;
+    }
+
+    private boolean matchesNow(String rawPassword, String encodedPassword, long submittedNanos) {
+        long startedNanos = System.nanoTime();
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        boolean matches = matchesTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+        event.complete("matches", encodedPassword, submittedNanos, startedNanos);
+        return matches;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("Password hashing rejected, {} tasks waiting", threadPool.getQueue().size());
+            throw new PasswordHashingRejectedException(e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,133 @@
+package com.itns.springsecurityclient.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.itns.springsecurityclient.config.ProviderMetadataProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestOperations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A cache of the OpenID provider metadata by issuer. Nothing is fetched at startup: an issuer's
+ * metadata is read on first use, from the snapshot file if there is one, and fetched again in the
+ * background once the refresh interval has passed. A failed refresh keeps the previous copy.
+ */
+@Component
+@Slf4j
+public class ProviderMetadataCache {
+
+    private static final String OIDC_METADATA_PATH = "/.well-known/openid-configuration";
+
+    private static final ParameterizedTypeReference<Map<String, Object>> METADATA_TYPE =
+            new ParameterizedTypeReference<Map<String, Object>>() {
+            };
+
+    private final RestOperations restOperations;
+
+    private final ObjectMapper objectMapper;
+
+    private final Path snapshotFile;
+
+    private final LoadingCache<String, Map<String, Object>> metadata;
+
+    public ProviderMetadataCache(ProviderMetadataProperties properties,
+                                 RestTemplateBuilder restTemplateBuilder,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.restOperations = restTemplateBuilder
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setReadTimeout(properties.getReadTimeout())
+                .build();
+        this.objectMapper = objectMapper;
+        this.snapshotFile = properties.getSnapshotFile();
+        this.metadata = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .refreshAfterWrite(properties.getRefreshInterval())
+                .recordStats()
+                .build(this::fetch), "oauth2.providerMetadata");
+        this.metadata.putAll(readSnapshot());
+    }
+
+    /**
+     * It returns the metadata of the issuer, fetching it if it is not cached yet.
+     *
+     * @param issuer The issuer URI of the provider.
+     * @return The provider metadata.
+     */
+    public Map<String, Object> get(String issuer) {
+        return metadata.get(issuer);
+    }
+
+    /**
+     * It fetches the metadata of the issuers in the background, so the first login does not wait.
+     *
+     * @param issuers The issuer URIs of the configured providers.
+     */
+    public void warmUp(Collection<String> issuers) {
+        issuers.forEach(metadata::refresh);
+    }
+
+    private Map<String, Object> fetch(String issuer) {
+        String uri = (issuer.endsWith("/") ? issuer.substring(0, issuer.length() - 1) : issuer) + OIDC_METADATA_PATH;
+        Map<String, Object> configuration;
+        try {
+            configuration = restOperations.exchange(uri, HttpMethod.GET, null, METADATA_TYPE).getBody();
+        } catch (RestClientException e) {
+            throw new IllegalStateException("Unable to resolve the configuration of issuer " + issuer, e);
+        }
+        if (configuration == null || !issuer.equals(configuration.get("issuer"))) {
+            throw new IllegalStateException("The issuer of the configuration at " + uri + " is not " + issuer);
+        }
+        writeSnapshot(issuer, configuration);
+        log.info("Fetched the provider configuration of {}", issuer);
+        return configuration;
+    }
+
+    private Map<String, Map<String, Object>> readSnapshot() {
+        if (snapshotFile == null || !Files.isReadable(snapshotFile)) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(snapshotFile.toFile(),
+                    new TypeReference<Map<String, Map<String, Object>>>() {
+                    });
+        } catch (IOException e) {
+            log.warn("Ignoring the unreadable provider metadata snapshot {}", snapshotFile, e);
+            return Map.of();
+        }
+    }
+
+    private synchronized void writeSnapshot(String issuer, Map<String, Object> configuration) {
+        if (snapshotFile == null) {
+            return;
+        }
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>(metadata.asMap());
+        snapshot.put(issuer, configuration);
+        try {
+            Path parent = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temporary = Files.createTempFile(parent, "provider-metadata", ".json");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temporary.toFile(), snapshot);
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write the provider metadata snapshot {}", snapshotFile, e);
+        }
+    }
+}
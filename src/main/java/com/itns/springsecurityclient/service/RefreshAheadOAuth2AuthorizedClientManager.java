@@ -0,0 +1,224 @@
+package com.itns.springsecurityclient.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+
+import org.springframework.lang.Nullable;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An OAuth2AuthorizedClientManager that lets only one refresh of a principal's access token run
+ * at a time on this node: the callers that need the same refresh meanwhile wait for it and share
+ * its result instead of sending their own refresh request. Across the nodes, the refresh is only
+ * sent by the holder of the TokenRefreshLease; a request finding it held waits for the new token
+ * in the store, the background job leaves the token to the holder. The refresh-ahead job uses this
+ * manager as well, so a refresh token is never sent twice.
+ */
+public class RefreshAheadOAuth2AuthorizedClientManager implements OAuth2AuthorizedClientManager {
+
+    // How often a request reads the store while another node refreshes its token.
+    private static final Duration LEASE_POLL_INTERVAL = Duration.ofMillis(100);
+
+    private final OAuth2AuthorizedClientManager requestManager;
+
+    private final OAuth2AuthorizedClientManager backgroundManager;
+
+    private final CachingOAuth2AuthorizedClientService authorizedClientService;
+
+    private final TokenRefreshLease refreshLease;
+
+    private final Duration requestClockSkew;
+
+    private final ConcurrentMap<Key, CompletableFuture<OAuth2AuthorizedClient>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter requestRefreshes;
+
+    private final Counter backgroundRefreshes;
+
+    private final Counter joinedRefreshes;
+
+    /**
+     * @param requestManager Authorizes within a request; refreshes with the request clock skew.
+     * @param backgroundManager Authorizes outside of a request; refreshes with the background margin.
+     * @param authorizedClientService The store both managers read and save the authorized clients in.
+     * @param refreshLease The claim on a refresh, shared by the nodes.
+     * @param requestClockSkew The clock skew of the request manager's refresh provider.
+     * @param meterRegistry Where the refreshes are counted.
+     */
+    public RefreshAheadOAuth2AuthorizedClientManager(OAuth2AuthorizedClientManager requestManager,
+                                                     OAuth2AuthorizedClientManager backgroundManager,
+                                                     CachingOAuth2AuthorizedClientService authorizedClientService,
+                                                     TokenRefreshLease refreshLease,
+                                                     Duration requestClockSkew,
+                                                     MeterRegistry meterRegistry) {
+        this.requestManager = requestManager;
+        this.backgroundManager = backgroundManager;
+        this.authorizedClientService = authorizedClientService;
+        this.refreshLease = refreshLease;
+        this.requestClockSkew = requestClockSkew;
+        this.requestRefreshes = refreshCounter(meterRegistry, "request");
+        this.backgroundRefreshes = refreshCounter(meterRegistry, "background");
+        this.joinedRefreshes = Counter.builder("oauth2.token.refresh.joined")
+                .description("Callers that waited for a refresh already in flight instead of sending their own")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Nullable
+    public OAuth2AuthorizedClient authorize(OAuth2AuthorizeRequest authorizeRequest) {
+        OAuth2AuthorizedClient current = authorizeRequest.getAuthorizedClient();
+        if (current == null) {
+            current = authorizedClientService.loadAuthorizedClient(
+                    authorizeRequest.getClientRegistrationId(), authorizeRequest.getPrincipal().getName());
+        }
+        if (current == null || current.getRefreshToken() == null
+                || !expiresWithin(current.getAccessToken(), requestClockSkew)) {
+            // Nothing to refresh: no single-flight needed.
+            return requestManager.authorize(authorizeRequest);
+        }
+        return singleFlight(new Key(authorizeRequest.getClientRegistrationId(),
+                authorizeRequest.getPrincipal().getName()), current, requestManager, authorizeRequest, requestRefreshes,
+                true);
+    }
+
+    /**
+     * It refreshes the access token of the principal if it expires within the background margin.
+     *
+     * @param clientRegistrationId The registration of the authorized client.
+     * @param principalName The principal the client was authorized for.
+     * @return The authorized client, refreshed or not, or null if there is none.
+     */
+    @Nullable
+    public OAuth2AuthorizedClient refreshInBackground(String clientRegistrationId, String principalName) {
+        OAuth2AuthorizedClient current = authorizedClientService.loadAuthorizedClient(clientRegistrationId, principalName);
+        if (current == null) {
+            return null;
+        }
+        OAuth2AuthorizeRequest authorizeRequest = OAuth2AuthorizeRequest.withClientRegistrationId(clientRegistrationId)
+                .principal(principalName)
+                .build();
+        return singleFlight(new Key(clientRegistrationId, principalName), current, backgroundManager,
+                authorizeRequest, backgroundRefreshes, false);
+    }
+
+    private OAuth2AuthorizedClient singleFlight(Key key, OAuth2AuthorizedClient current,
+                                                OAuth2AuthorizedClientManager manager,
+                                                OAuth2AuthorizeRequest authorizeRequest,
+                                                Counter refreshes,
+                                                boolean waitForLease) {
+        CompletableFuture<OAuth2AuthorizedClient> refresh = new CompletableFuture<>();
+        CompletableFuture<OAuth2AuthorizedClient> running = inFlight.putIfAbsent(key, refresh);
+        if (running != null) {
+            joinedRefreshes.increment();
+            return await(running);
+        }
+        try {
+            OAuth2AuthorizedClient authorized = authorizeHoldingLease(key, manager, authorizeRequest, waitForLease);
+            if (authorized != null && !sameToken(authorized.getAccessToken(), current.getAccessToken())) {
+                refreshes.increment();
+            }
+            refresh.complete(authorized);
+            return authorized;
+        } catch (RuntimeException e) {
+            refresh.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, refresh);
+        }
+    }
+
+    @Nullable
+    private OAuth2AuthorizedClient authorizeHoldingLease(Key key, OAuth2AuthorizedClientManager manager,
+                                                         OAuth2AuthorizeRequest authorizeRequest,
+                                                         boolean waitForLease) {
+        // The client of the request or of the cache may predate a refresh made by another node:
+        // the manager reads the stored one, whose refresh token has not been used yet.
+        OAuth2AuthorizeRequest storedClientRequest = withoutAuthorizedClient(authorizeRequest);
+        while (true) {
+            String holder = refreshLease.claim(key.getClientRegistrationId(), key.getPrincipalName());
+            authorizedClientService.evictAuthorizedClient(key.getClientRegistrationId(), key.getPrincipalName());
+            if (holder != null) {
+                try {
+                    return manager.authorize(storedClientRequest);
+                } finally {
+                    refreshLease.release(key.getClientRegistrationId(), key.getPrincipalName(), holder);
+                }
+            }
+            OAuth2AuthorizedClient stored = authorizedClientService.loadAuthorizedClient(
+                    key.getClientRegistrationId(), key.getPrincipalName());
+            if (!waitForLease) {
+                return stored;
+            }
+            if (stored == null || !expiresWithin(stored.getAccessToken(), requestClockSkew)) {
+                // Refreshed by the holder: nothing left to refresh.
+                return manager.authorize(storedClientRequest);
+            }
+            // Claimed again once the holder released it, or once its lease expired.
+            pause();
+        }
+    }
+
+    private static OAuth2AuthorizeRequest withoutAuthorizedClient(OAuth2AuthorizeRequest authorizeRequest) {
+        if (authorizeRequest.getAuthorizedClient() == null) {
+            return authorizeRequest;
+        }
+        return OAuth2AuthorizeRequest.withClientRegistrationId(authorizeRequest.getClientRegistrationId())
+                .principal(authorizeRequest.getPrincipal())
+                .attributes(attributes -> attributes.putAll(authorizeRequest.getAttributes()))
+                .build();
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(LEASE_POLL_INTERVAL.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the refresh of another node", e);
+        }
+    }
+
+    private static OAuth2AuthorizedClient await(CompletableFuture<OAuth2AuthorizedClient> refresh) {
+        try {
+            return refresh.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static boolean expiresWithin(OAuth2AccessToken accessToken, Duration margin) {
+        return accessToken.getExpiresAt() != null
+                && Instant.now().plus(margin).isAfter(accessToken.getExpiresAt());
+    }
+
+    private static boolean sameToken(OAuth2AccessToken token, OAuth2AccessToken other) {
+        return token.getTokenValue().equals(other.getTokenValue());
+    }
+
+    private static Counter refreshCounter(MeterRegistry meterRegistry, String path) {
+        return Counter.builder("oauth2.token.refresh")
+                .description("Access tokens refreshed, on the request path or in the background")
+                .tag("path", path)
+                .register(meterRegistry);
+    }
+
+    @Value
+    private static class Key {
+
+        String clientRegistrationId;
+        String principalName;
+    }
+}
@@ -0,0 +1,91 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.TokenProperties;
+
+import org.springframework.stereotype.Component;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * The default TokenGenerator. It encodes the configured number of random bits in base64url without
+ * padding: 22 characters for 128 bits, where a UUID takes 36 for 122 bits. UUID.randomUUID() shares
+ * one SecureRandom between all threads; here each thread draws from one of several DRBG instances
+ * picked by its id, so concurrent requests rarely wait on each other. Striping by thread id rather
+ * than keeping one instance per thread also holds when every request has its own virtual thread.
+ * Each instance fills a small buffer at a time, which spreads the fixed cost of a DRBG call over
+ * many tokens.
+ */
+@Component
+public class SecureRandomTokenGenerator implements TokenGenerator {
+
+    // A token must fit the 64 characters of the token columns.
+    private static final int MAX_ENTROPY_BITS = 384;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final int tokenBytes;
+
+    private final Stripe[] stripes;
+
+    private final int stripeMask;
+
+    public SecureRandomTokenGenerator(TokenProperties properties) {
+        int entropyBits = properties.getGenerator().getEntropyBits();
+        if (entropyBits < 96 || entropyBits > MAX_ENTROPY_BITS) {
+            throw new IllegalArgumentException("app.tokens.generator.entropy-bits must be between 96 and "
+                    + MAX_ENTROPY_BITS + ", was " + entropyBits);
+        }
+        this.tokenBytes = (entropyBits + 7) / 8;
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4 - 1)) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(newDrbg());
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    @Override
+    public String generate() {
+        byte[] bytes = new byte[tokenBytes];
+        stripes[(int) Thread.currentThread().getId() & stripeMask].nextBytes(bytes);
+        return ENCODER.encodeToString(bytes);
+    }
+
+    // A SHA-256 Hash_DRBG at 256 bits of strength, seeded from the platform entropy source.
+    private static SecureRandom newDrbg() {
+        try {
+            return SecureRandom.getInstance("DRBG",
+                    DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No DRBG SecureRandom in this runtime", e);
+        }
+    }
+
+    private static final class Stripe {
+
+        private final SecureRandom random;
+
+        private final byte[] buffer = new byte[1024];
+
+        private int position = buffer.length;
+
+        private Stripe(SecureRandom random) {
+            this.random = random;
+        }
+
+        synchronized void nextBytes(byte[] bytes) {
+            if (buffer.length - position < bytes.length) {
+                random.nextBytes(buffer);
+                position = 0;
+            }
+            System.arraycopy(buffer, position, bytes, 0, bytes.length);
+            // A token handed out does not stay in the buffer.
+            Arrays.fill(buffer, position, position + bytes.length, (byte) 0);
+            position += bytes.length;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.TokenProperties;
+import com.itns.springsecurityclient.entity.User;
+
+import lombok.Value;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Issues and checks the stateless verification and password reset tokens. A token is
+ * {@code <key id>.<payload>.<signature>}: the payload holds the user id, the purpose, the expiry
+ * and a fingerprint of the user state that the link changes, and the signature is a truncated
+ * HMAC-SHA256 of the key id and the payload. A forged, tampered or expired token is rejected here
+ * without reading anything; the fingerprint is compared once the user is loaded, so a link stops
+ * working as soon as the account is enabled or the password changed.
+ */
+@Component
+public class SignedTokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte VERSION = 1;
+
+    // version, purpose, user id, expiry in epoch seconds, fingerprint.
+    private static final int PAYLOAD_BYTES = 1 + 1 + 8 + 8 + 8;
+
+    // 128 bits of the HMAC, enough against forgery and it keeps the link short.
+    private static final int SIGNATURE_BYTES = 16;
+
+    private static final int FINGERPRINT_BYTES = 8;
+
+    private static final int MIN_KEY_BYTES = 32;
+
+    private static final Pattern KEY_ID = Pattern.compile("[A-Za-z0-9_-]{1,16}");
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final TokenProperties.SignedLinks properties;
+
+    private final Clock clock;
+
+    // Initialized Macs by key id, cloned for each use since a Mac is not thread safe.
+    private final Map<String, Mac> keys = new HashMap<>();
+
+    @Autowired
+    public SignedTokenService(TokenProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    SignedTokenService(TokenProperties properties, Clock clock) {
+        this.properties = properties.getSignedLinks();
+        this.clock = clock;
+        this.properties.getKeys().forEach((id, secret) -> keys.put(id, newMac(id, secret)));
+        if (this.properties.isEnabled() && !keys.containsKey(this.properties.getActiveKey())) {
+            throw new IllegalArgumentException("app.tokens.signed-links.active-key must name one of "
+                    + "app.tokens.signed-links.keys, was " + this.properties.getActiveKey());
+        }
+    }
+
+    /**
+     * @return true if new links should be signed rather than stored.
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * It tells a signed token from a stored one without decoding it; the random tokens are plain
+     * base64url and never contain a dot.
+     *
+     * @param token The token of the link.
+     * @return true if the token is a signed one.
+     */
+    public boolean isSigned(String token) {
+        return token != null && token.indexOf('.') >= 0;
+    }
+
+    /**
+     * It signs a new token for the user with the active key.
+     *
+     * @param purpose What the link is for.
+     * @param user The user the link is sent to; it must have been saved.
+     * @return The token, safe to put in a URL as is.
+     */
+    public String sign(Purpose purpose, User user) {
+        String keyId = properties.getActiveKey();
+        Mac mac = mac(keys.get(keyId));
+        long expiresAt = clock.instant().plus(ttl(purpose)).getEpochSecond();
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+                .put(VERSION)
+                .put(purpose.code)
+                .putLong(user.getId())
+                .putLong(expiresAt)
+                .put(fingerprint(mac, purpose, user))
+                .array();
+        return keyId + "." + ENCODER.encodeToString(payload) + "."
+                + ENCODER.encodeToString(signature(mac, keyId, payload));
+    }
+
+    /**
+     * It checks the signature and the purpose of the token. Only the key and the token are used,
+     * never the database.
+     *
+     * @param token The token of the link.
+     * @param purpose What the link is expected to be for.
+     * @return The decoded token, expired or not, or null if it is malformed, signed with an unknown
+     * key, tampered with or issued for another purpose.
+     */
+    public SignedToken verify(String token, Purpose purpose) {
+        int firstDot = token.indexOf('.');
+        int secondDot = token.indexOf('.', firstDot + 1);
+        if (firstDot < 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return null;
+        }
+        String keyId = token.substring(0, firstDot);
+        Mac prototype = keys.get(keyId);
+        if (prototype == null) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(firstDot + 1, secondDot));
+            signature = DECODER.decode(token.substring(secondDot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length != PAYLOAD_BYTES || signature.length != SIGNATURE_BYTES) {
+            return null;
+        }
+        Mac mac = mac(prototype);
+        if (!MessageDigest.isEqual(signature, signature(mac, keyId, payload))) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        if (buffer.get() != VERSION || buffer.get() != purpose.code) {
+            return null;
+        }
+        long userId = buffer.getLong();
+        Instant expiresAt = Instant.ofEpochSecond(buffer.getLong());
+        byte[] fingerprint = new byte[FINGERPRINT_BYTES];
+        buffer.get(fingerprint);
+        return new SignedToken(keyId, purpose, userId, expiresAt, fingerprint);
+    }
+
+    /**
+     * @param token A token returned by verify.
+     * @return true if the token has expired.
+     */
+    public boolean isExpired(SignedToken token) {
+        return !clock.instant().isBefore(token.getExpiresAt());
+    }
+
+    /**
+     * It compares the fingerprint of the token with the current state of the user, in constant
+     * time.
+     *
+     * @param token A token returned by verify.
+     * @param user The user the token was issued to, freshly loaded.
+     * @return false if the token belongs to another user or the link was already used.
+     */
+    public boolean matches(SignedToken token, User user) {
+        if (!user.getId().equals(token.getUserId())) {
+            return false;
+        }
+        Mac mac = mac(keys.get(token.getKeyId()));
+        return MessageDigest.isEqual(token.getFingerprint(), fingerprint(mac, token.getPurpose(), user));
+    }
+
+    private Duration ttl(Purpose purpose) {
+        return purpose == Purpose.VERIFICATION
+                ? properties.getVerificationTtl()
+                : properties.getPasswordResetTtl();
+    }
+
+    private static byte[] signature(Mac mac, String keyId, byte[] payload) {
+        mac.update(keyId.getBytes(StandardCharsets.US_ASCII));
+        mac.update((byte) '.');
+        return Arrays.copyOf(mac.doFinal(payload), SIGNATURE_BYTES);
+    }
+
+    // A keyed hash of the state that using the link changes: the enabled flag for a verification,
+    // the password hash for a reset. Keyed so that the payload does not leak anything about the hash.
+    private static byte[] fingerprint(Mac mac, Purpose purpose, User user) {
+        String state = purpose == Purpose.VERIFICATION
+                ? Boolean.toString(user.isEnabled())
+                : String.valueOf(user.getPassword());
+        mac.update(purpose.code);
+        return Arrays.copyOf(mac.doFinal(state.getBytes(StandardCharsets.UTF_8)), FINGERPRINT_BYTES);
+    }
+
+    private static Mac newMac(String id, String secret) {
+        if (!KEY_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid signed link key id " + id
+                    + ", use up to 16 letters, digits, '-' or '_'");
+        }
+        byte[] key = Base64.getDecoder().decode(secret);
+        if (key.length < MIN_KEY_BYTES) {
+            throw new IllegalArgumentException("Signed link key " + id + " must be at least "
+                    + MIN_KEY_BYTES + " bytes, was " + key.length);
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No " + ALGORITHM + " in this runtime", e);
+        }
+    }
+
+    private static Mac mac(Mac prototype) {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(ALGORITHM + " cannot be cloned by this provider", e);
+        }
+    }
+
+    public enum Purpose {
+
+        VERIFICATION((byte) 1),
+        PASSWORD_RESET((byte) 2);
+
+        private final byte code;
+
+        Purpose(byte code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * A token whose signature has been checked.
+     */
+    @Value
+    public static class SignedToken {
+
+        String keyId;
+        Purpose purpose;
+        long userId;
+        Instant expiresAt;
+        byte[] fingerprint;
+    }
+}
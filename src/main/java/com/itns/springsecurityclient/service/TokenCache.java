@@ -0,0 +1,120 @@
+package com.itns.springsecurityclient.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.itns.springsecurityclient.config.TokenProperties;
+import com.itns.springsecurityclient.entity.PasswordResetToken;
+import com.itns.springsecurityclient.entity.VerificationToken;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A bounded in-memory cache of the verification and password reset tokens, keyed by the token
+ * string. Each entry expires at the token's own expiration time, so an expired token is always
+ * read again from the database and deleted there.
+ */
+@Component
+public class TokenCache {
+
+    private final Cache<String, VerificationToken> verificationTokens;
+
+    private final Cache<String, PasswordResetToken> passwordResetTokens;
+
+    public TokenCache(TokenProperties properties, MeterRegistry meterRegistry) {
+        long maximumSize = properties.getCache().getMaximumSize();
+        this.verificationTokens = CaffeineCacheMetrics.monitor(meterRegistry,
+                newCache(maximumSize, VerificationToken::getExpirationTime), "tokens.verification");
+        this.passwordResetTokens = CaffeineCacheMetrics.monitor(meterRegistry,
+                newCache(maximumSize, PasswordResetToken::getExpirationTime), "tokens.passwordReset");
+    }
+
+    /**
+     * It returns the cached verification token, or loads it and caches it if it exists.
+     *
+     * @param token The token that was sent to the user's email address.
+     * @param loader The database lookup used on a cache miss.
+     * @return The verification token, or null if there is none.
+     */
+    public VerificationToken getVerificationToken(String token, Function<String, VerificationToken> loader) {
+        return verificationTokens.get(token, loader);
+    }
+
+    /**
+     * @param token The token that was sent to the user's email address.
+     * @return The cached verification token, or null if it is not cached.
+     */
+    public VerificationToken getVerificationTokenIfPresent(String token) {
+        return verificationTokens.getIfPresent(token);
+    }
+
+    public void putVerificationToken(VerificationToken verificationToken) {
+        verificationTokens.put(verificationToken.getToken(), verificationToken);
+    }
+
+    public void evictVerificationToken(String token) {
+        verificationTokens.invalidate(token);
+    }
+
+    /**
+     * It returns the cached password reset token, or loads it and caches it if it exists.
+     *
+     * @param token The token that was sent to the user's email address.
+     * @param loader The database lookup used on a cache miss.
+     * @return The password reset token, or null if there is none.
+     */
+    public PasswordResetToken getPasswordResetToken(String token, Function<String, PasswordResetToken> loader) {
+        return passwordResetTokens.get(token, loader);
+    }
+
+    /**
+     * @param token The token that was sent to the user's email address.
+     * @return The cached password reset token, or null if it is not cached.
+     */
+    public PasswordResetToken getPasswordResetTokenIfPresent(String token) {
+        return passwordResetTokens.getIfPresent(token);
+    }
+
+    public void putPasswordResetToken(PasswordResetToken passwordResetToken) {
+        passwordResetTokens.put(passwordResetToken.getToken(), passwordResetToken);
+    }
+
+    public void evictPasswordResetToken(String token) {
+        passwordResetTokens.invalidate(token);
+    }
+
+    private static <T> Cache<String, T> newCache(long maximumSize, Function<T, Date> expirationTime) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, T>() {
+                    @Override
+                    public long expireAfterCreate(String key, T value, long currentTime) {
+                        return remainingNanos(expirationTime.apply(value));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, T value, long currentTime, long currentDuration) {
+                        return remainingNanos(expirationTime.apply(value));
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, T value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    private static long remainingNanos(Date expirationTime) {
+        long remainingMillis = expirationTime.getTime() - System.currentTimeMillis();
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+    }
+}
@@ -0,0 +1,12 @@
+package com.itns.springsecurityclient.service;
+
+/**
+ * Generates the random strings of the verification and password reset tokens.
+ */
+public interface TokenGenerator {
+
+    /**
+     * @return A new unguessable token, safe to put in a URL as is.
+     */
+    String generate();
+}
@@ -0,0 +1,85 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.TokenRefreshProperties;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * This class hands out the right to refresh the access token of an authorized client, one holder
+ * at a time across all the nodes, through the oauth2_token_refresh_lease table: a refresh token is
+ * only sent by the holder of its lease. The lease is claimed and released in short transactions of
+ * their own, so no row lock or connection is held while the authorization server answers. The
+ * lease of a node that died expires after app.oauth2.token-refresh.lease.
+ */
+@Component
+public class TokenRefreshLease {
+
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM oauth2_token_refresh_lease"
+            + " WHERE client_registration_id = ? AND principal_name = ? AND expires_at < ?";
+
+    private static final String INSERT_SQL = "INSERT INTO oauth2_token_refresh_lease"
+            + " (client_registration_id, principal_name, holder, expires_at) VALUES (?, ?, ?, ?)";
+
+    private static final String RELEASE_SQL = "DELETE FROM oauth2_token_refresh_lease"
+            + " WHERE client_registration_id = ? AND principal_name = ? AND holder = ?";
+
+    private final JdbcOperations jdbcOperations;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TokenRefreshProperties properties;
+
+    public TokenRefreshLease(JdbcOperations jdbcOperations,
+                             TransactionTemplate transactionTemplate,
+                             TokenRefreshProperties properties) {
+        this.jdbcOperations = jdbcOperations;
+        // Committed at once, even when called within the transaction of a request.
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = properties;
+    }
+
+    /**
+     * @param clientRegistrationId The registration of the authorized client.
+     * @param principalName The principal the client was authorized for.
+     * @return The holder id to release the lease with, or null if another holder has it.
+     */
+    @Nullable
+    public String claim(String clientRegistrationId, String principalName) {
+        Instant now = Instant.now();
+        String holder = UUID.randomUUID().toString();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcOperations.update(DELETE_EXPIRED_SQL, clientRegistrationId, principalName, Timestamp.from(now));
+                jdbcOperations.update(INSERT_SQL, clientRegistrationId, principalName, holder,
+                        Timestamp.from(now.plus(properties.getLease())));
+            });
+            return holder;
+        } catch (DuplicateKeyException | PessimisticLockingFailureException e) {
+            // Held by another holder, or claimed by one at the same moment.
+            return null;
+        }
+    }
+
+    /**
+     * It releases the lease, unless it expired and another holder has claimed it since.
+     *
+     * @param clientRegistrationId The registration of the authorized client.
+     * @param principalName The principal the client was authorized for.
+     * @param holder The id returned by claim.
+     */
+    public void release(String clientRegistrationId, String principalName, String holder) {
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcOperations.update(RELEASE_SQL, clientRegistrationId, principalName, holder));
+    }
+}
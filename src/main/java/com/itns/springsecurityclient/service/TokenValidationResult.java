@@ -0,0 +1,21 @@
+package com.itns.springsecurityclient.service;
+
+import java.util.Locale;
+
+/**
+ * The outcome of checking or consuming a verification or password reset token.
+ */
+public enum TokenValidationResult {
+
+    VALID,
+    // No such token, a forged or tampered one, or one already used.
+    INVALID,
+    EXPIRED;
+
+    /**
+     * @return The name in lower case, as in the outcome tag of tokens.validation.
+     */
+    public String getOutcome() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
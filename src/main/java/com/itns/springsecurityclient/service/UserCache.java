@@ -0,0 +1,95 @@
+package com.itns.springsecurityclient.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.itns.springsecurityclient.config.UserCacheProperties;
+import com.itns.springsecurityclient.entity.User;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A bounded in-memory cache of the users by normalized email. An email without a user is cached
+ * too, for a shorter time, when negative caching is on. The users are cached and returned as
+ * copies, so a caller changing its user never changes the cached one; every write of a user must
+ * evict it.
+ */
+@Component
+public class UserCache {
+
+    private final Cache<String, Optional<User>> usersByEmail;
+
+    private final boolean negativeCaching;
+
+    public UserCache(UserCacheProperties properties, MeterRegistry meterRegistry) {
+        long timeToLiveNanos = properties.getTimeToLive().toNanos();
+        long negativeTimeToLiveNanos = properties.getNegativeTimeToLive().toNanos();
+        this.negativeCaching = properties.isNegativeCaching();
+        this.usersByEmail = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new Expiry<String, Optional<User>>() {
+                    @Override
+                    public long expireAfterCreate(String email, Optional<User> user, long currentTime) {
+                        return user.isPresent() ? timeToLiveNanos : negativeTimeToLiveNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String email, Optional<User> user, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(email, user, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String email, Optional<User> user, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build(), "users.byEmail");
+    }
+
+    /**
+     * It returns a copy of the cached user, or loads the user and caches it.
+     *
+     * @param email The email address, normalized or not.
+     * @param loader The database lookup by normalized email used on a cache miss.
+     * @return The user, or null if there is none.
+     */
+    public User get(String email, Function<String, User> loader) {
+        String normalizedEmail = User.normalizeEmail(email);
+        if (normalizedEmail == null) {
+            return null;
+        }
+        Optional<User> user = usersByEmail.get(normalizedEmail, key -> Optional.ofNullable(loader.apply(key)).map(UserCache::copy));
+        if (user.isEmpty() && !negativeCaching) {
+            usersByEmail.invalidate(normalizedEmail);
+        }
+        return user.map(UserCache::copy).orElse(null);
+    }
+
+    public void evict(String email) {
+        String normalizedEmail = User.normalizeEmail(email);
+        if (normalizedEmail != null) {
+            usersByEmail.invalidate(normalizedEmail);
+        }
+    }
+
+    public void evictAll(Collection<String> emails) {
+        emails.forEach(this::evict);
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        BeanUtils.copyProperties(user, copy);
+        return copy;
+    }
+}
@@ -0,0 +1,221 @@
+package com.itns.springsecurityclient.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itns.springsecurityclient.config.UserImportProperties;
+import com.itns.springsecurityclient.entity.User;
+import com.itns.springsecurityclient.mail.MailService;
+import com.itns.springsecurityclient.model.UserImportResult;
+import com.itns.springsecurityclient.model.UserModel;
+import com.itns.springsecurityclient.repository.UserRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * This class imports users from partner systems. The body is read as a stream, the passwords of
+ * each batch are hashed in parallel, and the users and their verification tokens of a batch are
+ * inserted with JDBC batching in a single transaction. The imported users are not enabled: each
+ * gets the verification email of a registration, stored in the outbox in that same transaction,
+ * with a link issued by UserService.createVerificationToken as for a registration, so a signed
+ * one when signed links are enabled.
+ */
+@Service
+@Slf4j
+public class UserImportService {
+
+    private final UserRepository userRepository;
+
+    private final PasswordHashingService passwordHashingService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final UserImportProperties properties;
+
+    private final UserCache userCache;
+
+    private final UserService userService;
+
+    private final MailService mailService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserImportService(UserRepository userRepository,
+                             PasswordHashingService passwordHashingService,
+                             TransactionTemplate transactionTemplate,
+                             ObjectMapper objectMapper,
+                             UserImportProperties properties,
+                             UserCache userCache,
+                             UserService userService,
+                             MailService mailService) {
+        this.userRepository = userRepository;
+        this.passwordHashingService = passwordHashingService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.userCache = userCache;
+        this.userService = userService;
+        this.mailService = mailService;
+    }
+
+    /**
+     * It imports a JSON array of users.
+     *
+     * @param body The request body.
+     * @param applicationUrl The URL of the application, for the verification links.
+     * @return The number of imported and skipped users.
+     */
+    public UserImportResult importJson(InputStream body, String applicationUrl) throws IOException {
+        try (MappingIterator<UserModel> users = objectMapper.readerFor(UserModel.class).readValues(body)) {
+            return importUsers(users, applicationUrl);
+        }
+    }
+
+    /**
+     * It imports users from CSV lines with the columns firstName,lastName,email,password. A first
+     * line starting with "firstName" is treated as a header. Quoted fields are not supported.
+     *
+     * @param body The request body.
+     * @param applicationUrl The URL of the application, for the verification links.
+     * @return The number of imported and skipped users.
+     */
+    public UserImportResult importCsv(InputStream body, String applicationUrl) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        Iterator<UserModel> users = reader.lines()
+                .filter(line -> !line.isBlank() && !line.startsWith("firstName"))
+                .map(UserImportService::parseCsvLine)
+                .iterator();
+        try {
+            return importUsers(users, applicationUrl);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static UserModel parseCsvLine(String line) {
+        String[] columns = line.split(",", -1);
+        UserModel userModel = new UserModel();
+        if (columns.length >= 4) {
+            userModel.setFirstName(columns[0].trim());
+            userModel.setLastName(columns[1].trim());
+            userModel.setEmail(columns[2].trim());
+            userModel.setPassword(columns[3].trim());
+        }
+        return userModel;
+    }
+
+    private UserImportResult importUsers(Iterator<UserModel> users, String applicationUrl) {
+        UserImportResult result = new UserImportResult();
+        List<UserModel> batch = new ArrayList<>(properties.getBatchSize());
+        while (users.hasNext()) {
+            UserModel userModel = users.next();
+            if (!StringUtils.hasText(userModel.getEmail()) || !StringUtils.hasText(userModel.getPassword())) {
+                result.setSkippedInvalid(result.getSkippedInvalid() + 1);
+                continue;
+            }
+            batch.add(userModel);
+            if (batch.size() == properties.getBatchSize()) {
+                importBatch(batch, result, applicationUrl);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            importBatch(batch, result, applicationUrl);
+        }
+        log.info("Imported {} users, skipped {} invalid and {} existing",
+                result.getImported(), result.getSkippedInvalid(), result.getSkippedExisting());
+        return result;
+    }
+
+    private void importBatch(List<UserModel> batch, UserImportResult result, String applicationUrl) {
+        List<UserModel> newUsers = withoutExistingEmails(batch);
+        result.setSkippedExisting(result.getSkippedExisting() + batch.size() - newUsers.size());
+        if (newUsers.isEmpty()) {
+            return;
+        }
+        List<String> encodedPasswords = encodeWithRetry(newUsers.stream()
+                .map(UserModel::getPassword)
+                .collect(Collectors.toList()));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<User> users = new ArrayList<>(newUsers.size());
+            for (int i = 0; i < newUsers.size(); i++) {
+                UserModel userModel = newUsers.get(i);
+                User user = new User();
+                user.setEmail(userModel.getEmail());
+                user.setFirstName(userModel.getFirstName());
+                user.setLastName(userModel.getLastName());
+                user.setRole("USER");
+                user.setPassword(encodedPasswords.get(i));
+                users.add(user);
+            }
+            userRepository.saveAll(users);
+            // The stored tokens are only inserted at the flush below, batched like the users.
+            for (User user : users) {
+                mailService.sendVerificationEmail(user,
+                        applicationUrl + "/verifyRegistration?token=" + userService.createVerificationToken(user));
+            }
+            // The request may keep the persistence context open (open-in-view), so drop the batch
+            // from it to keep the memory flat over a long import.
+            entityManager.flush();
+            entityManager.clear();
+        });
+        // Drops the cached "no such user" of the imported emails.
+        userCache.evictAll(newUsers.stream().map(UserModel::getEmail).collect(Collectors.toList()));
+        result.setImported(result.getImported() + newUsers.size());
+    }
+
+    // Drops the users whose email already exists, or appears twice in the batch.
+    private List<UserModel> withoutExistingEmails(List<UserModel> batch) {
+        Set<String> seen = userRepository.findByEmailIn(batch.stream()
+                        .map(userModel -> User.normalizeEmail(userModel.getEmail()))
+                        .collect(Collectors.toList()))
+                .stream()
+                .map(User::getEmail)
+                .collect(Collectors.toCollection(HashSet::new));
+        return batch.stream()
+                .filter(userModel -> seen.add(User.normalizeEmail(userModel.getEmail())))
+                .collect(Collectors.toList());
+    }
+
+    // An import must not fail because live traffic filled the hashing pool, so it backs off instead.
+    private List<String> encodeWithRetry(List<String> rawPasswords) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return passwordHashingService.encodeAll(rawPasswords);
+            } catch (PasswordHashingRejectedException e) {
+                if (attempt >= properties.getHashingRetries()) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(properties.getHashingRetryDelay().toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.itns.springsecurityclient.service;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import com.itns.springsecurityclient.entity.User;
 import com.itns.springsecurityclient.entity.VerificationToken;
@@ -9,23 +10,33 @@ import com.itns.springsecurityclient.model.UserModel;
 // An interface.
 public interface UserService {
 
-    User registerUser(UserModel userModel);
+    User registerUser(UserModel userModel, String applicationUrl);
+
+    CompletableFuture<User> registerUserAsync(UserModel userModel, String applicationUrl);
 
     void saveVerificationTokenForUser(String token, User user);
 
-    String validateVerificationToken(String token);
+    String createVerificationToken(User user);
+
+    TokenValidationResult validateVerificationToken(String token);
 
     VerificationToken generateNewVerificationToken(String oldToken);
 
     User findUserByEmail(String email);
 
+    Optional<User> findUserById(Long id);
+
     void createPasswordResetTokenForUser(User user, String token);
 
-    String validatePasswordResetToken(String token);
+    String createPasswordResetToken(User user);
+
+    TokenValidationResult validatePasswordResetToken(String token);
+
+    TokenValidationResult resetPassword(String token, String newPassword);
 
-    Optional<User> getUserByPasswordResetToken(String token);
+    CompletableFuture<TokenValidationResult> resetPasswordAsync(String token, String newPassword);
 
-    void changePassword(User user, String newPassword);
+    boolean changePassword(User user, String oldPassword, String newPassword);
 
-    boolean checkIfValidOldPassword(User user, String oldPassword);
+    CompletableFuture<Boolean> changePasswordAsync(User user, String oldPassword, String newPassword);
 }
@@ -2,20 +2,35 @@ package com.itns.springsecurityclient.service;
 
 import org.springframework.stereotype.Service;
 
+import lombok.Value;
+
+import com.itns.springsecurityclient.datasource.ReadYourWrites;
 import com.itns.springsecurityclient.entity.PasswordResetToken;
 import com.itns.springsecurityclient.entity.User;
 import com.itns.springsecurityclient.entity.VerificationToken;
+import com.itns.springsecurityclient.event.RegistrationCompleteEvent;
+import com.itns.springsecurityclient.jfr.TokenValidationEvent;
 import com.itns.springsecurityclient.model.UserModel;
 import com.itns.springsecurityclient.repository.PasswordResetTokenRepository;
+import com.itns.springsecurityclient.repository.TokenOwner;
 import com.itns.springsecurityclient.repository.UserRepository;
 import com.itns.springsecurityclient.repository.VerificationTokenRepository;
+import com.itns.springsecurityclient.service.SignedTokenService.Purpose;
+import com.itns.springsecurityclient.service.SignedTokenService.SignedToken;
 
-import java.util.Calendar;
+import java.util.Date;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 
 /**
@@ -33,29 +48,104 @@ public class UserServiceImpl implements UserService{
 	    @Autowired
 	    private PasswordResetTokenRepository passwordResetTokenRepository;
 
+	    // Publishing an event, stored in the outbox within the registration transaction.
+	    @Autowired
+	    private ApplicationEventPublisher publisher;
+
+	    @Autowired
+	    private TransactionTemplate transactionTemplate;
+
+	    // Keeps the live tokens in memory so the validation path usually skips the database.
+	    @Autowired
+	    private TokenCache tokenCache;
+
+	    @Autowired
+	    private TokenGenerator tokenGenerator;
+
+	    // Issues and checks the signed links, which need no token row.
+	    @Autowired
+	    private SignedTokenService signedTokenService;
+
+	    // Serves findUserByEmail; every write of a user below evicts it.
+	    @Autowired
+	    private UserCache userCache;
+
+	    // Keeps the reads that follow a write on the primary when the replicas are in use.
+	    @Autowired
+	    private ReadYourWrites readYourWrites;
+
+	    // Runs the BCrypt work on its own bounded pool instead of the request thread.
+	    @Autowired
+	    private PasswordHashingService passwordHashingService;
+
+	    // Runs the database work that follows an async hash, so the hashing threads only hash.
 	    @Autowired
-	    private PasswordEncoder passwordEncoder;
+	    @Qualifier("applicationTaskExecutor")
+	    private Executor applicationTaskExecutor;
+
+	    // Counts the outcomes of the token validations; the methods themselves are @Timed.
+	    @Autowired
+	    private MeterRegistry meterRegistry;
 
 	    /**
 		 * The function takes in a userModel object, creates a new user object, sets the user object's
 		 * fields to the userModel's fields, sets the user object's role to "USER", and then saves the
-		 * user object to the database
+		 * user object to the database together with a RegistrationCompleteEvent in the outbox. The
+		 * password is hashed before the transaction starts, so no connection is held during the hash.
 		 * 
 		 * @param userModel This is the object that is passed from the controller.
+		 * @param applicationUrl The URL of the application, used in the verification link.
 		 * @return User
 		 */
 		@Override
-	    public User registerUser(UserModel userModel) {
+		@Timed(value = "user.service", histogram = true)
+	    public User registerUser(UserModel userModel, String applicationUrl) {
+	        User user = newUser(userModel);
+	        user.setPassword(passwordHashingService.encode(userModel.getPassword()));
+
+	        return saveNewUser(user, applicationUrl);
+	    } 
+
+	    /**
+		 * Same as registerUser, but the password is hashed on the hashing pool and the user is saved
+		 * on the applicationTaskExecutor once the hash is ready, so the calling thread is released
+		 * right away.
+		 * 
+		 * @param userModel This is the object that is passed from the controller.
+		 * @param applicationUrl The URL of the application, used in the verification link.
+		 * @return A future completed with the saved user.
+		 */
+		@Override
+		@Timed(value = "user.service", histogram = true)
+	    public CompletableFuture<User> registerUserAsync(UserModel userModel, String applicationUrl) {
+	        User user = newUser(userModel);
+	        return passwordHashingService.encodeAsync(userModel.getPassword())
+	                .thenApplyAsync(encodedPassword -> {
+	                    user.setPassword(encodedPassword);
+	                    return saveNewUser(user, applicationUrl);
+	                }, applicationTaskExecutor);
+	    }
+
+	    private User saveNewUser(User user, String applicationUrl) {
+	        User saved = transactionTemplate.execute(status -> {
+	            User newUser = userRepository.save(user);
+	            publisher.publishEvent(new RegistrationCompleteEvent(newUser, applicationUrl));
+	            return newUser;
+	        });
+	        // Drops a cached "no such user" for this email.
+	        userCache.evict(saved.getEmail());
+	        recordUserWrite(saved);
+	        return saved;
+	    }
+
+	    private User newUser(UserModel userModel) {
 	        User user = new User();
 	        user.setEmail(userModel.getEmail());
 	        user.setFirstName(userModel.getFirstName());
 	        user.setLastName(userModel.getLastName());
 	        user.setRole("USER");
-	        user.setPassword(passwordEncoder.encode(userModel.getPassword()));
-
-	        userRepository.save(user);
 	        return user;
-	    } 
+	    }
 	    
 	    /**
 		 * It creates a new VerificationToken object, and then saves it to the database
@@ -64,65 +154,153 @@ public class UserServiceImpl implements UserService{
 		 * @param user The user object that you want to save the token for.
 		 */
 		@Override
+		@Timed(value = "user.service", histogram = true)
 	    public void saveVerificationTokenForUser(String token, User user) {
 	        VerificationToken verificationToken
 	                = new VerificationToken(user, token);
 
-	        verificationTokenRepository.save(verificationToken);
+	        tokenCache.putVerificationToken(verificationTokenRepository.save(verificationToken));
+	        readYourWrites.recordWrite(tokenKey(token));
 	    } 
 	    
 	    /**
-		 * If the token is valid, the user is enabled and the token is deleted
+		 * It issues the token of the verification link: a signed one when signed links are enabled,
+		 * otherwise a random one saved to the database.
+		 * 
+		 * @param user The user that registered.
+		 * @return The token to put in the link.
+		 */
+		@Override
+		@Timed(value = "user.service", histogram = true)
+	    public String createVerificationToken(User user) {
+	        if (signedTokenService.isEnabled()) {
+	            return signedTokenService.sign(Purpose.VERIFICATION, user);
+	        }
+	        String token = tokenGenerator.generate();
+	        saveVerificationTokenForUser(token, user);
+	        return token;
+	    }
+	    
+	    /**
+		 * It consumes the verification token: the user is enabled and the token deleted in one
+		 * transaction of two conditional statements, neither of them loading the token or the user.
+		 * An expired token is deleted and leaves the user as is. A signed token is checked without the
+		 * database first, and only a valid one loads the user.
+		 * 
+		 * A stored token takes up to three round trips. The owner lookup is served by the token cache
+		 * when it can; it turns an unknown token away without a transaction, and gives the user to
+		 * evict from the UserCache. The update and the delete stay two statements: JPQL has no
+		 * statement that changes one table and deletes from another, MySQL only has one for two
+		 * deletes or two updates, and the outcome needs both row counts.
 		 * 
 		 * @param token The token that was sent to the user's email address.
+		 * @return The outcome; a token is VALID at most once.
 		 */
 		@Override
-	    public String validateVerificationToken(String token) {
-	        VerificationToken verificationToken
-	                = verificationTokenRepository.findByToken(token);
+		@Timed(value = "user.service", histogram = true)
+	    public TokenValidationResult validateVerificationToken(String token) {
+	        TokenValidationEvent event = new TokenValidationEvent("verification");
+	        event.begin();
+	        return countValidation("verification", event.complete(consumeVerificationToken(token, event)));
+	    }
 
-	        if (verificationToken == null) {
-	            return "invalid";
+	    private TokenValidationResult consumeVerificationToken(String token, TokenValidationEvent event) {
+	        if (signedTokenService.isSigned(token)) {
+	            event.markSigned();
+	            return consumeSignedVerificationToken(token);
+	        }
+	        TokenOwner owner = verificationTokenOwner(token, event);
+	        if (owner == null) {
+	            return TokenValidationResult.INVALID;
 	        }
 
-	        User user = verificationToken.getUser();
-	        Calendar cal = Calendar.getInstance();
-
-	        if ((verificationToken.getExpirationTime().getTime()
-	                - cal.getTime().getTime()) <= 0) {
-	            verificationTokenRepository.delete(verificationToken);
-	            return "expired";
+	        TokenValidationResult result = transactionTemplate.execute(status -> {
+	            int enabled = userRepository.enableByVerificationToken(token, new Date());
+	            return consumed(status, enabled, verificationTokenRepository.deleteByToken(token));
+	        });
+	        tokenCache.evictVerificationToken(token);
+	        if (result == TokenValidationResult.VALID) {
+	            recordOwnerWrite(owner);
 	        }
+	        return result;
+	    }
 
-	        user.setEnabled(true);
-	        userRepository.save(user);
-	        return "valid";
+	    private TokenValidationResult consumeSignedVerificationToken(String token) {
+	        SignedToken signedToken = signedTokenService.verify(token, Purpose.VERIFICATION);
+	        if (signedToken == null) {
+	            return TokenValidationResult.INVALID;
+	        }
+	        if (signedTokenService.isExpired(signedToken)) {
+	            return TokenValidationResult.EXPIRED;
+	        }
+	        // The fingerprint no longer matches once the user is enabled, so the link works once; a
+	        // lagging replica could still show the user disabled.
+	        Optional<User> user = readYourWrites.primary(() -> userRepository.findById(signedToken.getUserId()))
+	                .filter(candidate -> signedTokenService.matches(signedToken, candidate));
+	        if (user.isEmpty()) {
+	            return TokenValidationResult.INVALID;
+	        }
+	        // Of two concurrent uses of the link, only the first finds the user disabled.
+	        Integer enabled = transactionTemplate.execute(status -> userRepository.enableIfDisabled(user.get().getId()));
+	        if (enabled == 0) {
+	            return TokenValidationResult.INVALID;
+	        }
+	        recordOwnerWrite(TokenOwner.of(user.get(), Date.from(signedToken.getExpiresAt())));
+	        return TokenValidationResult.VALID;
 	    }
 	    
 	    /**
 		 * It takes a token, finds the user associated with that token, generates a new token, and saves
-		 * it to the database
+		 * it to the database. For a signed token, expired or not, a new signed token is returned
+		 * and nothing is saved.
 		 * 
 		 * @param oldToken The token that was sent to the user's email address.
 		 * @return A new verification token is being returned.
 		 */
 		@Override
+		@Timed(value = "user.service", histogram = true)
 	    public VerificationToken generateNewVerificationToken(String oldToken) {
-	        VerificationToken verificationToken
-	                = verificationTokenRepository.findByToken(oldToken);
-	        verificationToken.setToken(UUID.randomUUID().toString());
-	        verificationTokenRepository.save(verificationToken);
+	        if (signedTokenService.isSigned(oldToken)) {
+	            SignedToken signedToken = signedTokenService.verify(oldToken, Purpose.VERIFICATION);
+	            User user = signedToken == null ? null : userRepository.findById(signedToken.getUserId())
+	                    .filter(candidate -> signedTokenService.matches(signedToken, candidate))
+	                    .orElse(null);
+	            if (user == null) {
+	                throw new IllegalArgumentException("Invalid verification token");
+	            }
+	            return new VerificationToken(user, signedTokenService.sign(Purpose.VERIFICATION, user));
+	        }
+	        VerificationToken verificationToken = tokenCache.getVerificationToken(oldToken, key ->
+	                readYourWrites.read(tokenKey(key), () -> verificationTokenRepository.findByToken(key)));
+	        tokenCache.evictVerificationToken(oldToken);
+	        verificationToken.setToken(tokenGenerator.generate());
+	        verificationToken = verificationTokenRepository.save(verificationToken);
+	        tokenCache.putVerificationToken(verificationToken);
+	        readYourWrites.recordWrite(tokenKey(verificationToken.getToken()));
 	        return verificationToken;
 	    }
 	    
 	    /**
-		 * The function takes in a string, and returns a user object
+		 * The function takes in a string, and returns a user object. The email is matched case
+		 * insensitively, and the user usually comes from the user cache.
 		 * 
 		 * @param email The email address of the user you want to find.
 		 */
 		@Override
+		@Timed(value = "user.service", histogram = true)
 	    public User findUserByEmail(String email) {
-	        return userRepository.findByEmail(email);
+	        return userCache.get(email, key -> readYourWrites.read(emailKey(key), () -> userRepository.findByEmail(key)));
+	    }
+
+	    /**
+		 * The function takes in an id, and returns the user with that id if there is one
+		 * 
+		 * @param id The id of the user you want to find.
+		 */
+		@Override
+		@Timed(value = "user.service", histogram = true)
+	    public Optional<User> findUserById(Long id) {
+	        return readYourWrites.read(idKey(id), () -> userRepository.findById(id));
 	    }
 
 	    /**
@@ -132,75 +310,312 @@ public class UserServiceImpl implements UserService{
 		 * @param token The token that will be sent to the user's email address.
 		 */
 		@Override
+		@Timed(value = "user.service", histogram = true)
 	    public void createPasswordResetTokenForUser(User user, String token) {
 	        PasswordResetToken passwordResetToken
 	                = new PasswordResetToken(user,token);
-	        passwordResetTokenRepository.save(passwordResetToken);
+	        tokenCache.putPasswordResetToken(passwordResetTokenRepository.save(passwordResetToken));
+	        readYourWrites.recordWrite(tokenKey(token));
 	    }
 
 	    /**
-		 * If the token is not found in the database, return "invalid". If the token is found, but the
-		 * expiration time is less than the current time, delete the token and return "expired". If the
-		 * token is found and the expiration time is greater than the current time, return "valid"
+		 * It issues the token of the password reset link: a signed one when signed links are enabled,
+		 * otherwise a random one saved to the database.
 		 * 
-		 * @param token The token that was sent to the user's email address.
-		 * @return A string.
+		 * @param user The user that asked for the reset.
+		 * @return The token to put in the link.
 		 */
-		public String validatePasswordResetToken(String token) {
-	        PasswordResetToken passwordResetToken
-	                = passwordResetTokenRepository.findByToken(token);
-
-	        if (passwordResetToken == null) {
-	            return "invalid";
+		@Override
+		@Timed(value = "user.service", histogram = true)
+	    public String createPasswordResetToken(User user) {
+	        if (signedTokenService.isEnabled()) {
+	            return signedTokenService.sign(Purpose.PASSWORD_RESET, user);
 	        }
+	        String token = tokenGenerator.generate();
+	        createPasswordResetTokenForUser(user, token);
+	        return token;
+	    }
 
-	        @SuppressWarnings("unused")
-			User user = passwordResetToken.getUser();
-	        Calendar cal = Calendar.getInstance();
-
-	        if ((passwordResetToken.getExpirationTime().getTime()
-	                - cal.getTime().getTime()) <= 0) {
-	            passwordResetTokenRepository.delete(passwordResetToken);
-	            return "expired";
-	        }
+	    /**
+		 * It checks the password reset token without consuming it. An unknown token is INVALID, and
+		 * an expired one is deleted and EXPIRED. A signed token is also INVALID once the password
+		 * it was issued against has changed.
+		 * 
+		 * @param token The token that was sent to the user's email address.
+		 * @return The outcome.
+		 */
+		@Override
+		@Timed(value = "user.service", histogram = true)
+	    public TokenValidationResult validatePasswordResetToken(String token) {
+	        TokenValidationEvent event = new TokenValidationEvent("password_reset");
+	        event.begin();
+	        return countValidation("password_reset", event.complete(checkPasswordResetLink(token, event).getResult()));
+	    }
 
-	        return "valid";
+	    /**
+		 * It resets the password of the owner of the token and consumes the token. The token is checked
+		 * before the new password is hashed, so an unknown or expired one costs no hash. Then the
+		 * password is set and the token deleted in one transaction of two conditional statements, so
+		 * that of two concurrent requests with the same link only one changes the password. A signed
+		 * token only changes a password that is still the one it was issued against.
+		 * 
+		 * @param token The token that was sent to the user's email address.
+		 * @param newPassword The new password to be set for the user.
+		 * @return The outcome; the password is only changed when VALID.
+		 */
+		@Override
+		@Timed(value = "user.service", histogram = true)
+	    public TokenValidationResult resetPassword(String token, String newPassword) {
+	        TokenValidationEvent event = new TokenValidationEvent("password_reset");
+	        event.begin();
+	        PasswordResetLink link = checkPasswordResetLink(token, event);
+	        TokenValidationResult result = link.getResult() == TokenValidationResult.VALID
+	                ? consumePasswordResetLink(link, passwordHashingService.encode(newPassword))
+	                : link.getResult();
+	        return countValidation("password_reset", event.complete(result));
 	    }
-	    
+
 	    /**
-		 * If the token is not null, return the user associated with the token.
+		 * Same as resetPassword, but the new password is hashed on the hashing pool, and the token is
+		 * consumed on the applicationTaskExecutor.
 		 * 
 		 * @param token The token that was sent to the user's email address.
-		 * @return Optional.ofNullable(passwordResetTokenRepository.findByToken(token).getUser());
+		 * @param newPassword The new password to be set for the user.
+		 * @return A future completed with the outcome once the token is consumed.
 		 */
 		@Override
-	    public Optional<User> getUserByPasswordResetToken(String token) {
-	        return Optional.ofNullable(passwordResetTokenRepository.findByToken(token).getUser());
+		@Timed(value = "user.service", histogram = true)
+	    public CompletableFuture<TokenValidationResult> resetPasswordAsync(String token, String newPassword) {
+	        TokenValidationEvent event = new TokenValidationEvent("password_reset");
+	        event.begin();
+	        PasswordResetLink link = checkPasswordResetLink(token, event);
+	        if (link.getResult() != TokenValidationResult.VALID) {
+	            return CompletableFuture.completedFuture(
+	                    countValidation("password_reset", event.complete(link.getResult())));
+	        }
+	        return passwordHashingService.encodeAsync(newPassword)
+	                .thenApplyAsync(encodedPassword -> countValidation("password_reset",
+	                        event.complete(consumePasswordResetLink(link, encodedPassword))), applicationTaskExecutor);
 	    }
 
+	    private PasswordResetLink checkPasswordResetLink(String token, TokenValidationEvent event) {
+	        if (signedTokenService.isSigned(token)) {
+	            event.markSigned();
+	            SignedToken signedToken = signedTokenService.verify(token, Purpose.PASSWORD_RESET);
+	            if (signedToken == null) {
+	                return PasswordResetLink.rejected(TokenValidationResult.INVALID);
+	            }
+	            if (signedTokenService.isExpired(signedToken)) {
+	                return PasswordResetLink.rejected(TokenValidationResult.EXPIRED);
+	            }
+	            // On the primary, so that a link already used is never accepted from a lagging replica.
+	            return readYourWrites.primary(() -> userRepository.findById(signedToken.getUserId()))
+	                    .filter(user -> signedTokenService.matches(signedToken, user))
+	                    .map(user -> new PasswordResetLink(TokenValidationResult.VALID, token,
+	                            TokenOwner.of(user, Date.from(signedToken.getExpiresAt())), true, user.getPassword()))
+	                    .orElseGet(() -> PasswordResetLink.rejected(TokenValidationResult.INVALID));
+	        }
+	        TokenOwner owner = passwordResetTokenOwner(token, event);
+	        if (owner == null) {
+	            return PasswordResetLink.rejected(TokenValidationResult.INVALID);
+	        }
+
+	        if (owner.isExpired(new Date())) {
+	            transactionTemplate.executeWithoutResult(status -> passwordResetTokenRepository.deleteByToken(token));
+	            tokenCache.evictPasswordResetToken(token);
+	            return PasswordResetLink.rejected(TokenValidationResult.EXPIRED);
+	        }
+
+	        return new PasswordResetLink(TokenValidationResult.VALID, token, owner, false, null);
+	    }
+
+	    private TokenValidationResult consumePasswordResetLink(PasswordResetLink link, String encodedPassword) {
+	        TokenValidationResult result;
+	        if (link.isSigned()) {
+	            // Of two concurrent uses of the link, only the first finds the password unchanged.
+	            Integer updated = transactionTemplate.execute(status -> userRepository.updatePasswordIfUnchanged(
+	                    link.getOwner().getUserId(), encodedPassword, link.getSignedPassword()));
+	            result = updated == 0 ? TokenValidationResult.INVALID : TokenValidationResult.VALID;
+	        } else {
+	            result = transactionTemplate.execute(status -> {
+	                int updated = userRepository.updatePasswordByResetToken(link.getToken(), encodedPassword, new Date());
+	                return consumed(status, updated, passwordResetTokenRepository.deleteByToken(link.getToken()));
+	            });
+	            tokenCache.evictPasswordResetToken(link.getToken());
+	        }
+	        if (result == TokenValidationResult.VALID) {
+	            recordOwnerWrite(link.getOwner());
+	        }
+	        return result;
+	    }
 	   /**
-		* The function takes a user and a new password, sets the new password to the user, and saves the
-		* user
+		* It changes the password of the user if the old password matches. The user may be a cached
+		* copy, possibly older than a reset or change made on another node, so only its id is trusted:
+		* the old password is checked against the hash read from the primary, and the new password is
+		* only written over that hash. A password replaced in the meantime makes the change fail.
 		* 
-		* @param user The user object that is being updated.
+		* @param user The user with the email of the form, or null if there is none.
+		* @param oldPassword The password that the user entered in the form
 		* @param newPassword The new password to be set for the user.
+		* @return false if there is no such user, the old password does not match, or the password was
+		* changed in the meantime.
 		*/
 	    @Override
-	    public void changePassword(User user, String newPassword) {
-	        user.setPassword(passwordEncoder.encode(newPassword));
-	        userRepository.save(user);
+	    @Timed(value = "user.service", histogram = true)
+	    public boolean changePassword(User user, String oldPassword, String newPassword) {
+	        String checkedPassword = currentPassword(user);
+	        if (checkedPassword == null || !passwordHashingService.matches(oldPassword, checkedPassword)) {
+	            return false;
+	        }
+	        return replacePassword(user, checkedPassword, passwordHashingService.encode(newPassword));
 	    }
 
 	    /**
-		 * It checks if the old password is valid by comparing the old password with the password in the
-		 * database
+		 * Same as changePassword, but both the check of the old password and the hash of the new one
+		 * run on the hashing pool, and the update on the applicationTaskExecutor.
 		 * 
-		 * @param user The user object that is currently logged in.
+		 * @param user The user with the email of the form, or null if there is none.
 		 * @param oldPassword The password that the user entered in the form
-		 * @return The passwordEncoder.matches() method returns a boolean value.
+		 * @param newPassword The new password to be set for the user.
+		 * @return A future completed with the outcome once the password is saved.
 		 */
 		@Override
-	    public boolean checkIfValidOldPassword(User user, String oldPassword) {
-	        return passwordEncoder.matches(oldPassword, user.getPassword());
+		@Timed(value = "user.service", histogram = true)
+	    public CompletableFuture<Boolean> changePasswordAsync(User user, String oldPassword, String newPassword) {
+	        String checkedPassword = currentPassword(user);
+	        if (checkedPassword == null) {
+	            return CompletableFuture.completedFuture(false);
+	        }
+	        return passwordHashingService.matchesAsync(oldPassword, checkedPassword)
+	                .thenCompose(valid -> !valid
+	                        ? CompletableFuture.completedFuture(false)
+	                        : passwordHashingService.encodeAsync(newPassword)
+	                                .thenApplyAsync(encodedPassword -> replacePassword(user, checkedPassword, encodedPassword),
+	                                        applicationTaskExecutor));
+	    }
+
+	    // The password hash of the user as committed, never the one of a cached copy.
+	    private String currentPassword(User user) {
+	        return user == null ? null : readYourWrites.primary(() -> userRepository.findPasswordById(user.getId()));
+	    }
+
+	    private boolean replacePassword(User user, String checkedPassword, String encodedPassword) {
+	        if (userRepository.updatePasswordIfUnchanged(user.getId(), encodedPassword, checkedPassword) == 0) {
+	            return false;
+	        }
+	        userCache.evict(user.getEmail());
+	        recordUserWrite(user);
+	        return true;
+	    }
+
+	    /**
+		 * It counts the outcome of a token validation, tagged by token type.
+		 * 
+		 * @param type verification or password_reset.
+		 * @param result The outcome of the validation.
+		 * @return The result, unchanged.
+		 */
+	    private TokenValidationResult countValidation(String type, TokenValidationResult result) {
+	        meterRegistry.counter("tokens.validation", "type", type, "outcome", result.getOutcome()).increment();
+	        return result;
+	    }
+
+	    /**
+		 * It tells the outcome of consuming a stored token from the rows changed by the conditional
+		 * update of its user and by the delete of the token. The update only matches a token that has
+		 * not expired and the delete any token, so a token deleted but not applied had expired. A
+		 * token applied but already deleted by a concurrent request was used twice, and this second
+		 * use is rolled back: the delete waited for the lock of the first one, so one of them wins.
+		 * 
+		 * @param status The transaction of both statements.
+		 * @param updated The rows changed by the update of the user.
+		 * @param deleted The rows changed by the delete of the token.
+		 * @return The outcome.
+		 */
+	    private static TokenValidationResult consumed(TransactionStatus status, int updated, int deleted) {
+	        if (deleted == 0) {
+	            if (updated > 0) {
+	                status.setRollbackOnly();
+	            }
+	            return TokenValidationResult.INVALID;
+	        }
+	        return updated > 0 ? TokenValidationResult.VALID : TokenValidationResult.EXPIRED;
+	    }
+
+	    /**
+		 * The owner of a stored token, from the token cache or else read without loading the token
+		 * and the user entities. It is needed to evict the user once the token is consumed.
+		 * 
+		 * @param token The token that was sent to the user's email address.
+		 * @param event Marked when the database is read.
+		 * @return The owner, or null if there is no such token.
+		 */
+	    private TokenOwner verificationTokenOwner(String token, TokenValidationEvent event) {
+	        VerificationToken cached = tokenCache.getVerificationTokenIfPresent(token);
+	        if (cached != null) {
+	            return TokenOwner.of(cached.getUser(), cached.getExpirationTime());
+	        }
+	        event.markDatabaseLookup();
+	        return readYourWrites.read(tokenKey(token), () -> verificationTokenRepository.findOwnerByToken(token));
+	    }
+
+	    private TokenOwner passwordResetTokenOwner(String token, TokenValidationEvent event) {
+	        PasswordResetToken cached = tokenCache.getPasswordResetTokenIfPresent(token);
+	        if (cached != null) {
+	            return TokenOwner.of(cached.getUser(), cached.getExpirationTime());
+	        }
+	        event.markDatabaseLookup();
+	        return readYourWrites.read(tokenKey(token), () -> passwordResetTokenRepository.findOwnerByToken(token));
+	    }
+
+	    /**
+		 * The owner of a token was changed by a conditional update, which bypasses the entities: its
+		 * cached user is evicted and its reads go to the primary for the read-your-writes window.
+		 * 
+		 * @param owner The owner of the token that was just consumed.
+		 */
+	    private void recordOwnerWrite(TokenOwner owner) {
+	        userCache.evict(owner.getEmail());
+	        readYourWrites.recordWrite(emailKey(User.normalizeEmail(owner.getEmail())), idKey(owner.getUserId()));
+	    }
+
+	    /**
+		 * The reads of this user by email or id go to the primary for the read-your-writes window.
+		 * 
+		 * @param user The user that was just saved.
+		 */
+	    private void recordUserWrite(User user) {
+	        readYourWrites.recordWrite(emailKey(User.normalizeEmail(user.getEmail())), idKey(user.getId()));
+	    }
+
+	    private static String emailKey(String normalizedEmail) {
+	        return "email:" + normalizedEmail;
+	    }
+
+	    private static String idKey(Long id) {
+	        return "id:" + id;
+	    }
+
+	    private static String tokenKey(String token) {
+	        return "token:" + token;
+	    }
+
+	    /**
+		 * A password reset link checked before the new password is hashed.
+		 */
+	    @Value
+	    private static class PasswordResetLink {
+
+	        TokenValidationResult result;
+	        String token;
+	        // The user the password is reset for, when the link is VALID.
+	        TokenOwner owner;
+	        boolean signed;
+	        // The password hash a signed link was issued against, which it may only replace.
+	        String signedPassword;
+
+	        static PasswordResetLink rejected(TokenValidationResult result) {
+	            return new PasswordResetLink(result, null, null, false, null);
+	        }
 	    }
 }
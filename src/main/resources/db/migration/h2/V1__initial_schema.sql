@@ -0,0 +1,76 @@
+-- The H2 flavour of db/migration/mysql, for the tests and the benchmarks. The user table needs
+-- NON_KEYWORDS=USER in the URL.
+
+CREATE SEQUENCE user_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE verification_token_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE user (
+  id bigint NOT NULL,
+  email varchar(255),
+  enabled boolean NOT NULL,
+  first_name varchar(255),
+  last_name varchar(255),
+  password varchar(60),
+  role varchar(255),
+  PRIMARY KEY (id),
+  CONSTRAINT UK_USER_EMAIL UNIQUE (email)
+);
+
+CREATE TABLE verification_token (
+  id bigint NOT NULL,
+  expiration_time timestamp,
+  token varchar(64) NOT NULL,
+  user_id bigint NOT NULL,
+  PRIMARY KEY (id),
+  CONSTRAINT UK_VERIFY_TOKEN_TOKEN UNIQUE (token),
+  CONSTRAINT FK_USER_VERIFY_TOKEN FOREIGN KEY (user_id) REFERENCES user (id)
+);
+CREATE INDEX IDX_VERIFY_TOKEN_EXPIRATION ON verification_token (expiration_time);
+
+CREATE TABLE password_reset_token (
+  id bigint GENERATED BY DEFAULT AS IDENTITY,
+  expiration_time timestamp,
+  token varchar(64) NOT NULL,
+  user_id bigint NOT NULL,
+  PRIMARY KEY (id),
+  CONSTRAINT UK_PASSWORD_TOKEN_TOKEN UNIQUE (token),
+  CONSTRAINT FK_USER_PASSWORD_TOKEN FOREIGN KEY (user_id) REFERENCES user (id)
+);
+CREATE INDEX IDX_PASSWORD_TOKEN_EXPIRATION ON password_reset_token (expiration_time);
+
+CREATE TABLE outbox_event (
+  id bigint GENERATED BY DEFAULT AS IDENTITY,
+  attempts integer NOT NULL,
+  created_at timestamp NOT NULL,
+  event_type varchar(64) NOT NULL,
+  last_error varchar(500),
+  next_attempt_at timestamp NOT NULL,
+  payload varchar(2000) NOT NULL,
+  status varchar(16) NOT NULL,
+  PRIMARY KEY (id)
+);
+CREATE INDEX IDX_OUTBOX_EVENT_DUE ON outbox_event (status, next_attempt_at);
+
+CREATE TABLE authorized_client_invalidation (
+  id bigint GENERATED BY DEFAULT AS IDENTITY,
+  client_registration_id varchar(100) NOT NULL,
+  created_at timestamp NOT NULL,
+  node_id varchar(36) NOT NULL,
+  principal_name varchar(200) NOT NULL,
+  PRIMARY KEY (id)
+);
+CREATE INDEX IDX_AUTHORIZED_CLIENT_INVALIDATION_CREATED ON authorized_client_invalidation (created_at);
+
+CREATE TABLE oauth2_authorized_client (
+  client_registration_id varchar(100) NOT NULL,
+  principal_name varchar(200) NOT NULL,
+  access_token_type varchar(100) NOT NULL,
+  access_token_value blob NOT NULL,
+  access_token_issued_at timestamp NOT NULL,
+  access_token_expires_at timestamp NOT NULL,
+  access_token_scopes varchar(1000) DEFAULT NULL,
+  refresh_token_value blob DEFAULT NULL,
+  refresh_token_issued_at timestamp DEFAULT NULL,
+  created_at timestamp DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  PRIMARY KEY (client_registration_id, principal_name)
+);
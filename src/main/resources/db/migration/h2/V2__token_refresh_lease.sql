@@ -0,0 +1,8 @@
+-- The refresh leases of TokenRefreshLease.
+CREATE TABLE IF NOT EXISTS oauth2_token_refresh_lease (
+  client_registration_id varchar(100) NOT NULL,
+  principal_name varchar(200) NOT NULL,
+  holder varchar(36) NOT NULL,
+  expires_at timestamp NOT NULL,
+  PRIMARY KEY (client_registration_id, principal_name)
+);
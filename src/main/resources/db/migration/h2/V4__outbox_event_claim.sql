@@ -0,0 +1,4 @@
+-- The poll that claimed an event, see OutboxDispatcher; the claim ends with its next_attempt_at.
+-- V4 as in db/migration/mysql, whose V3 only concerns the databases created by ddl-auto.
+ALTER TABLE outbox_event ADD COLUMN claimed_by varchar(36);
+CREATE INDEX IDX_OUTBOX_EVENT_CLAIM ON outbox_event (claimed_by);
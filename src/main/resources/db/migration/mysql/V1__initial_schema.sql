@@ -0,0 +1,81 @@
+-- The schema that ddl-auto: update created, with the oauth2_authorized_client table of schema.sql.
+-- A database created that way is baselined at this version (spring.flyway.baseline-version).
+
+CREATE TABLE user (
+  id bigint NOT NULL,
+  email varchar(255),
+  enabled bit NOT NULL,
+  first_name varchar(255),
+  last_name varchar(255),
+  password varchar(60),
+  role varchar(255),
+  PRIMARY KEY (id),
+  CONSTRAINT UK_USER_EMAIL UNIQUE (email)
+) ENGINE=InnoDB;
+
+-- MySQL has no sequences; Hibernate keeps the next value of each generator in a table.
+CREATE TABLE user_seq (next_val bigint) ENGINE=InnoDB;
+INSERT INTO user_seq VALUES (1);
+
+CREATE TABLE verification_token_seq (next_val bigint) ENGINE=InnoDB;
+INSERT INTO verification_token_seq VALUES (1);
+
+CREATE TABLE verification_token (
+  id bigint NOT NULL,
+  expiration_time datetime(6),
+  token varchar(64) NOT NULL,
+  user_id bigint NOT NULL,
+  PRIMARY KEY (id),
+  CONSTRAINT UK_VERIFY_TOKEN_TOKEN UNIQUE (token),
+  CONSTRAINT FK_USER_VERIFY_TOKEN FOREIGN KEY (user_id) REFERENCES user (id)
+) ENGINE=InnoDB;
+CREATE INDEX IDX_VERIFY_TOKEN_EXPIRATION ON verification_token (expiration_time);
+
+CREATE TABLE password_reset_token (
+  id bigint NOT NULL AUTO_INCREMENT,
+  expiration_time datetime(6),
+  token varchar(64) NOT NULL,
+  user_id bigint NOT NULL,
+  PRIMARY KEY (id),
+  CONSTRAINT UK_PASSWORD_TOKEN_TOKEN UNIQUE (token),
+  CONSTRAINT FK_USER_PASSWORD_TOKEN FOREIGN KEY (user_id) REFERENCES user (id)
+) ENGINE=InnoDB;
+CREATE INDEX IDX_PASSWORD_TOKEN_EXPIRATION ON password_reset_token (expiration_time);
+
+CREATE TABLE outbox_event (
+  id bigint NOT NULL AUTO_INCREMENT,
+  attempts integer NOT NULL,
+  created_at datetime(6) NOT NULL,
+  event_type varchar(64) NOT NULL,
+  last_error varchar(500),
+  next_attempt_at datetime(6) NOT NULL,
+  payload varchar(2000) NOT NULL,
+  status varchar(16) NOT NULL,
+  PRIMARY KEY (id)
+) ENGINE=InnoDB;
+CREATE INDEX IDX_OUTBOX_EVENT_DUE ON outbox_event (status, next_attempt_at);
+
+CREATE TABLE authorized_client_invalidation (
+  id bigint NOT NULL AUTO_INCREMENT,
+  client_registration_id varchar(100) NOT NULL,
+  created_at datetime(6) NOT NULL,
+  node_id varchar(36) NOT NULL,
+  principal_name varchar(200) NOT NULL,
+  PRIMARY KEY (id)
+) ENGINE=InnoDB;
+CREATE INDEX IDX_AUTHORIZED_CLIENT_INVALIDATION_CREATED ON authorized_client_invalidation (created_at);
+
+-- The table of JdbcOAuth2AuthorizedClientService, from spring-security-oauth2-client.
+CREATE TABLE oauth2_authorized_client (
+  client_registration_id varchar(100) NOT NULL,
+  principal_name varchar(200) NOT NULL,
+  access_token_type varchar(100) NOT NULL,
+  access_token_value blob NOT NULL,
+  access_token_issued_at timestamp NOT NULL,
+  access_token_expires_at timestamp NOT NULL,
+  access_token_scopes varchar(1000) DEFAULT NULL,
+  refresh_token_value blob DEFAULT NULL,
+  refresh_token_issued_at timestamp DEFAULT NULL,
+  created_at timestamp DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  PRIMARY KEY (client_registration_id, principal_name)
+) ENGINE=InnoDB;
@@ -0,0 +1,9 @@
+-- The refresh leases of TokenRefreshLease. IF NOT EXISTS: schema.sql creates the table as well
+-- on the databases kept by ddl-auto.
+CREATE TABLE IF NOT EXISTS oauth2_token_refresh_lease (
+  client_registration_id varchar(100) NOT NULL,
+  principal_name varchar(200) NOT NULL,
+  holder varchar(36) NOT NULL,
+  expires_at datetime(6) NOT NULL,
+  PRIMARY KEY (client_registration_id, principal_name)
+) ENGINE=InnoDB;
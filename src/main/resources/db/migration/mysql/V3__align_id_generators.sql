@@ -0,0 +1,12 @@
+-- A database baselined at V1 got its users and verification tokens from IDENTITY columns, and
+-- the baseline skipped the INSERTs of V1 into the generator tables, if it has them at all.
+-- The pooled generators read a value v and hand out the ids v - 49 to v, so the next value must
+-- be at least 50 above the highest id.
+CREATE TABLE IF NOT EXISTS user_seq (next_val bigint) ENGINE=InnoDB;
+INSERT INTO user_seq SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM user_seq);
+UPDATE user_seq SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 50 FROM user));
+
+CREATE TABLE IF NOT EXISTS verification_token_seq (next_val bigint) ENGINE=InnoDB;
+INSERT INTO verification_token_seq SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM verification_token_seq);
+UPDATE verification_token_seq
+  SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 50 FROM verification_token));
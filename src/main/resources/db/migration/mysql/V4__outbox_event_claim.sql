@@ -0,0 +1,3 @@
+-- The poll that claimed an event, see OutboxDispatcher; the claim ends with its next_attempt_at.
+ALTER TABLE outbox_event ADD COLUMN claimed_by varchar(36);
+CREATE INDEX IDX_OUTBOX_EVENT_CLAIM ON outbox_event (claimed_by);
@@ -0,0 +1,23 @@
+-- The table of JdbcOAuth2AuthorizedClientService, from spring-security-oauth2-client.
+CREATE TABLE IF NOT EXISTS oauth2_authorized_client (
+  client_registration_id varchar(100) NOT NULL,
+  principal_name varchar(200) NOT NULL,
+  access_token_type varchar(100) NOT NULL,
+  access_token_value blob NOT NULL,
+  access_token_issued_at timestamp NOT NULL,
+  access_token_expires_at timestamp NOT NULL,
+  access_token_scopes varchar(1000) DEFAULT NULL,
+  refresh_token_value blob DEFAULT NULL,
+  refresh_token_issued_at timestamp DEFAULT NULL,
+  created_at timestamp DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  PRIMARY KEY (client_registration_id, principal_name)
+);
+
+-- The refresh leases of TokenRefreshLease: the node holding the row is the one refreshing the token.
+CREATE TABLE IF NOT EXISTS oauth2_token_refresh_lease (
+  client_registration_id varchar(100) NOT NULL,
+  principal_name varchar(200) NOT NULL,
+  holder varchar(36) NOT NULL,
+  expires_at timestamp NOT NULL,
+  PRIMARY KEY (client_registration_id, principal_name)
+);
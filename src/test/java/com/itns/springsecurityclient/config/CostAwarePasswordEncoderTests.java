@@ -0,0 +1,33 @@
+package com.itns.springsecurityclient.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CostAwarePasswordEncoderTests {
+
+	private final CostAwarePasswordEncoder encoder = new CostAwarePasswordEncoder(5);
+
+	@Test
+	void hashesWithTheConfiguredCost() {
+		String hash = encoder.encode("secret");
+
+		assertThat(hash).startsWith("$2a$05$");
+		assertThat(encoder.matches("secret", hash)).isTrue();
+		assertThat(encoder.matches("other", hash)).isFalse();
+	}
+
+	@Test
+	void upgradesOnlyTheHashesWithALowerCost() {
+		assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret"))).isTrue();
+		assertThat(encoder.upgradeEncoding(encoder.encode("secret"))).isFalse();
+		assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret"))).isFalse();
+	}
+
+	@Test
+	void upgradesTheHashesThatAreNotBCrypt() {
+		assertThat(encoder.upgradeEncoding("plain-text")).isTrue();
+		assertThat(encoder.upgradeEncoding(null)).isFalse();
+	}
+}
@@ -0,0 +1,35 @@
+package com.itns.springsecurityclient.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Cheap costs only: each step doubles the time of a hash.
+class PasswordEncoderCalibratorTests {
+
+	@Test
+	void picksTheLowestCostForATargetBelowAnyHash() {
+		assertThat(calibrate(Duration.ofNanos(1))).isEqualTo(4);
+	}
+
+	@Test
+	void picksTheHighestCostForATargetAboveEveryHash() {
+		assertThat(calibrate(Duration.ofMinutes(1))).isEqualTo(6);
+	}
+
+	@Test
+	void staysWithinTheBounds() {
+		assertThat(calibrate(Duration.ofMillis(2))).isBetween(4, 6);
+	}
+
+	private static int calibrate(Duration targetLatency) {
+		PasswordHashingProperties properties = new PasswordHashingProperties();
+		properties.setMinStrength(4);
+		properties.setMaxStrength(6);
+		properties.setCalibrationSamples(3);
+		properties.setTargetLatency(targetLatency);
+		return new PasswordEncoderCalibrator(properties).calibrate();
+	}
+}
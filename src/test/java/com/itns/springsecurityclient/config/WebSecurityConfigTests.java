@@ -0,0 +1,144 @@
+package com.itns.springsecurityclient.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The rules of the security filter chain, in front of endpoints that only answer "ok".
+@SpringJUnitWebConfig(WebSecurityConfigTests.TestConfiguration.class)
+@TestPropertySource(properties = "management.server.port=8081")
+class WebSecurityConfigTests {
+
+	@Autowired
+	private WebApplicationContext context;
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+	}
+
+	@Test
+	void letsOnlyTheAdminsImportUsers() throws Exception {
+		mockMvc.perform(post("/api/users/import")).andExpect(status().is3xxRedirection());
+		mockMvc.perform(asUser(post("/api/users/import"))).andExpect(status().isForbidden());
+		mockMvc.perform(asUser(post("/api/users/import/"))).andExpect(status().isForbidden());
+		mockMvc.perform(asAdmin(post("/api/users/import"))).andExpect(status().isOk());
+	}
+
+	@Test
+	void letsOnlyTheAdminsReadTheDiagnostics() throws Exception {
+		mockMvc.perform(get("/api/admin/jfr")).andExpect(status().is3xxRedirection());
+		mockMvc.perform(asUser(get("/api/admin/jfr"))).andExpect(status().isForbidden());
+		mockMvc.perform(asUser(get("/api/admin/jfr/"))).andExpect(status().isForbidden());
+		mockMvc.perform(asAdmin(get("/api/admin/jfr"))).andExpect(status().isOk());
+	}
+
+	@Test
+	void letsAnyoneRegister() throws Exception {
+		mockMvc.perform(post("/register")).andExpect(status().isOk());
+		mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+	}
+
+	@Test
+	void servesTheMetricsOnlyOnTheManagementPort() throws Exception {
+		mockMvc.perform(get("/actuator/prometheus")).andExpect(status().is3xxRedirection());
+		mockMvc.perform(asUser(get("/actuator/prometheus"))).andExpect(status().isForbidden());
+		mockMvc.perform(get("/actuator/prometheus").with(WebSecurityConfigTests::onManagementPort))
+				.andExpect(status().isOk());
+		// Only the actuator endpoints are open there.
+		mockMvc.perform(get("/api/admin/jfr").with(WebSecurityConfigTests::onManagementPort))
+				.andExpect(status().is3xxRedirection());
+	}
+
+	@Test
+	void refusesAManagementPortSharedWithTheApplication() {
+		assertThatIllegalStateException().isThrownBy(() -> WebSecurityConfig.managementPort(
+				new MockEnvironment().withProperty("management.server.port", "8080")));
+		assertThatIllegalStateException().isThrownBy(() -> WebSecurityConfig.managementPort(new MockEnvironment()
+				.withProperty("server.port", "9000").withProperty("management.server.port", "9000")));
+		assertThat(WebSecurityConfig.managementPort(new MockEnvironment()
+				.withProperty("server.port", "0").withProperty("management.server.port", "0"))).isZero();
+		assertThat(WebSecurityConfig.managementPort(new MockEnvironment())).isEqualTo(-1);
+	}
+
+	private static MockHttpServletRequest onManagementPort(MockHttpServletRequest request) {
+		request.setLocalPort(8081);
+		return request;
+	}
+
+	private static MockHttpServletRequestBuilder asUser(MockHttpServletRequestBuilder request) {
+		return request.with(user("jane").authorities(new SimpleGrantedAuthority("SCOPE_openid")));
+	}
+
+	private static MockHttpServletRequestBuilder asAdmin(MockHttpServletRequestBuilder request) {
+		return request.with(user("root").authorities(new SimpleGrantedAuthority(WebSecurityConfig.ADMIN_AUTHORITY)));
+	}
+
+	@Configuration
+	@EnableWebMvc
+	@Import(WebSecurityConfig.class)
+	static class TestConfiguration {
+
+		@Bean
+		PasswordHashingProperties passwordHashingProperties() {
+			PasswordHashingProperties properties = new PasswordHashingProperties();
+			properties.setStrength(4);
+			return properties;
+		}
+
+		@Bean
+		ClientRegistrationRepository clientRegistrationRepository() {
+			return new InMemoryClientRegistrationRepository(ClientRegistration.withRegistrationId("api-client-oidc")
+					.clientId("api-client")
+					.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+					.redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+					.authorizationUri("https://auth-server.example.com/authorize")
+					.tokenUri("https://auth-server.example.com/token")
+					.build());
+		}
+
+		@Bean
+		Endpoints endpoints() {
+			return new Endpoints();
+		}
+	}
+
+	@RestController
+	static class Endpoints {
+
+		@RequestMapping({"/register", "/actuator/health", "/actuator/prometheus", "/api/users/import",
+				"/api/admin/jfr"})
+		String ok() {
+			return "ok";
+		}
+	}
+}
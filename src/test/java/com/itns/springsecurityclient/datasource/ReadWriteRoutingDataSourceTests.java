@@ -0,0 +1,95 @@
+package com.itns.springsecurityclient.datasource;
+
+import com.itns.springsecurityclient.config.DataSourceRoutingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTests {
+
+	private ReadWriteRoutingDataSource routingDataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private TransactionTemplate readWrite;
+
+	private TransactionTemplate readOnly;
+
+	private ReadYourWrites readYourWrites;
+
+	@BeforeEach
+	void setUp() {
+		// Two unrelated databases, each telling which one it is.
+		HikariDataSource primary = database(ReadWriteRoutingDataSource.PRIMARY);
+		HikariDataSource replica = database("replica-1");
+		routingDataSource = new ReadWriteRoutingDataSource(primary, List.of(replica));
+		DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		readWrite = new TransactionTemplate(transactionManager);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+
+		DataSourceRoutingProperties properties = new DataSourceRoutingProperties();
+		properties.setEnabled(true);
+		readYourWrites = new ReadYourWrites(properties);
+	}
+
+	@AfterEach
+	void tearDown() {
+		routingDataSource.destroy();
+	}
+
+	@Test
+	void sendsReadOnlyTransactionsToTheReplica() {
+		assertThat(inReadOnlyTransaction()).isEqualTo("replica-1");
+		assertThat(inReadWriteTransaction()).isEqualTo("primary");
+		assertThat(whichDatabase()).isEqualTo("primary");
+	}
+
+	@Test
+	void keepsTheReadsOfARecentWriteOnThePrimary() {
+		readYourWrites.recordWrite("email:jane@example.com");
+
+		assertThat(readYourWrites.read("email:jane@example.com", this::inReadOnlyTransaction)).isEqualTo("primary");
+		assertThat(readYourWrites.read("email:john@example.com", this::inReadOnlyTransaction)).isEqualTo("replica-1");
+		assertThat(readYourWrites.primary(this::inReadOnlyTransaction)).isEqualTo("primary");
+	}
+
+	private String inReadOnlyTransaction() {
+		return readOnly.execute(status -> whichDatabase());
+	}
+
+	private String inReadWriteTransaction() {
+		return readWrite.execute(status -> whichDatabase());
+	}
+
+	private String whichDatabase() {
+		return jdbcTemplate.queryForObject("select name from whoami", String.class);
+	}
+
+	private static HikariDataSource database(String name) {
+		HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setPoolName(name);
+		dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		dataSource.setMaximumPoolSize(2);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table if not exists whoami (name varchar(20))");
+		jdbcTemplate.update("delete from whoami");
+		jdbcTemplate.update("insert into whoami values (?)", name);
+		return dataSource;
+	}
+}
@@ -0,0 +1,71 @@
+package com.itns.springsecurityclient.filter;
+
+import com.itns.springsecurityclient.config.RateLimitProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The filter in front of a /register endpoint that allows two requests per IP and hour.
+class RateLimitFilterTests {
+
+	private RateLimitFilter filter;
+
+	@BeforeEach
+	void setUp() {
+		RateLimitProperties.Limit perIp = new RateLimitProperties.Limit();
+		perIp.setCapacity(2);
+		perIp.setPeriod(Duration.ofHours(1));
+		RateLimitProperties.Endpoint endpoint = new RateLimitProperties.Endpoint();
+		endpoint.setPaths(List.of("/register"));
+		endpoint.setPerIp(perIp);
+		RateLimitProperties properties = new RateLimitProperties();
+		properties.setTableSize(16);
+		properties.setStripes(2);
+		properties.getEndpoints().put("register", endpoint);
+		filter = new RateLimitFilter(new RateLimiter(properties, new SimpleMeterRegistry()));
+	}
+
+	@Test
+	void refusesTheRequestsOverTheLimitWithARetryAfter() throws Exception {
+		assertThat(filter("/register", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+		assertThat(filter("/register", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+
+		MockHttpServletResponse refused = filter("/register", "10.0.0.1");
+		assertThat(refused.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+		assertThat(Long.parseLong(refused.getHeader(HttpHeaders.RETRY_AFTER))).isPositive();
+
+		assertThat(filter("/register", "10.0.0.2").getStatus()).isEqualTo(HttpStatus.OK.value());
+		assertThat(filter("/hello", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+	}
+
+	@Test
+	void countsTheVariantsOfThePathAsTheSameEndpoint() throws Exception {
+		assertThat(filter("/register/", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+		assertThat(filter("/register;jsessionid=1", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+
+		assertThat(filter("/register//", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+		assertThat(filter("//register", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+		assertThat(filter("/register", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+	}
+
+	private MockHttpServletResponse filter(String servletPath, String clientIp) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", servletPath);
+		request.setServletPath(servletPath);
+		request.setRemoteAddr(clientIp);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+}
@@ -0,0 +1,144 @@
+package com.itns.springsecurityclient.mail;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.itns.springsecurityclient.config.MailDeliveryProperties;
+import com.itns.springsecurityclient.entity.User;
+import com.itns.springsecurityclient.event.OutboxEventDeferredException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.net.ServerSocket;
+
+import javax.mail.internet.MimeMessage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MailDispatcherTests {
+
+	@RegisterExtension
+	static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+	private final MailTemplates mailTemplates = new MailTemplates();
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private MailDispatcher mailDispatcher;
+
+	@AfterEach
+	void tearDown() {
+		if (mailDispatcher != null) {
+			mailDispatcher.stop();
+		}
+	}
+
+	@Test
+	void sendsTheRenderedEmails() throws Exception {
+		mailDispatcher = dispatcher(ServerSetupTest.SMTP.getPort(), 1000);
+		for (int i = 0; i < 20; i++) {
+			mailDispatcher.send(mailTemplates.verificationEmail(user("user" + i + "@example.com"),
+					"http://localhost:8080/verifyRegistration?token=t" + i));
+		}
+
+		assertThat(greenMail.getReceivedMessages()).hasSize(20);
+		MimeMessage message = greenMail.getReceivedMessagesForDomain("user7@example.com")[0];
+		assertThat(message.getSubject()).isEqualTo("Vérifiez votre compte");
+		assertThat(GreenMailUtil.getBody(message)).contains("Bonjour Jane", "verifyRegistration?token=t7");
+	}
+
+	@Test
+	void reconnectsWhenTheServerClosedTheConnection() {
+		mailDispatcher = dispatcher(ServerSetupTest.SMTP.getPort(), 1000);
+		mailDispatcher.send(new OutgoingMail("first@example.com", "First", "body"));
+
+		// Drops the open connection kept by the dispatcher.
+		greenMail.reset();
+		mailDispatcher.send(new OutgoingMail("second@example.com", "Second", "body"));
+
+		assertThat(greenMail.getReceivedMessages()).extracting(GreenMailUtil::getHeaders)
+				.singleElement().asString().contains("Subject: Second");
+		assertThat(meterRegistry.get("mail.sent").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void throwsWhenTheMailCannotBeSent() throws Exception {
+		int closedPort;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			closedPort = socket.getLocalPort();
+		}
+		mailDispatcher = dispatcher(closedPort, 1000);
+
+		assertThatThrownBy(() -> mailDispatcher.send(new OutgoingMail("jane@example.com", "Subject", "body")))
+				.isInstanceOf(MailSendException.class);
+		assertThat(meterRegistry.get("mail.failed").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void defersTheEmailsOfADomainOverItsRate() throws Exception {
+		mailDispatcher = dispatcher(ServerSetupTest.SMTP.getPort(), 1);
+		OutgoingMailHandler handler = new OutgoingMailHandler(mailDispatcher, new ObjectMapper());
+		ObjectMapper objectMapper = new ObjectMapper();
+
+		handler.handle(objectMapper.writeValueAsString(new OutgoingMail("a@Example.COM", "A", "body")));
+		assertThatThrownBy(() -> handler.handle(
+				objectMapper.writeValueAsString(new OutgoingMail("b@example.com", "B", "body"))))
+				.isInstanceOf(OutboxEventDeferredException.class);
+		handler.handle(objectMapper.writeValueAsString(new OutgoingMail("c@example.org", "C", "body")));
+
+		assertThat(greenMail.getReceivedMessages()).hasSize(2);
+	}
+
+	@Test
+	void sendsTheQueuedEmailsOfTheReactiveMode() {
+		MailDeliveryProperties properties = new MailDeliveryProperties();
+		properties.setPerDomainRate(1000);
+		properties.setWorkers(2);
+		mailDispatcher = new MailDispatcher(properties, javaMailSender(ServerSetupTest.SMTP.getPort()), meterRegistry);
+		mailDispatcher.start();
+		for (int i = 0; i < 5; i++) {
+			assertThat(mailDispatcher.enqueue(new OutgoingMail("user" + i + "@example.com", "Queued", "body")))
+					.isTrue();
+		}
+
+		assertThat(greenMail.waitForIncomingEmail(10_000, 5)).isTrue();
+	}
+
+	@Test
+	void forgetsTheLeastRecentlyUsedDomains() {
+		DomainRateLimiter rateLimiter = new DomainRateLimiter(1, 2);
+		assertThat(rateLimiter.tryAcquire("example.com")).isTrue();
+		assertThat(rateLimiter.tryAcquire("example.com")).isFalse();
+		for (int i = 0; i < 100; i++) {
+			assertThat(rateLimiter.tryAcquire("domain" + i + ".com")).isTrue();
+		}
+	}
+
+	private MailDispatcher dispatcher(int port, double perDomainRate) {
+		MailDeliveryProperties properties = new MailDeliveryProperties();
+		properties.setPerDomainRate(perDomainRate);
+		return new MailDispatcher(properties, javaMailSender(port), meterRegistry);
+	}
+
+	private static JavaMailSenderImpl javaMailSender(int port) {
+		JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(port);
+		return mailSender;
+	}
+
+	private static User user(String email) {
+		User user = new User();
+		user.setEmail(email);
+		user.setFirstName("Jane");
+		return user;
+	}
+}
@@ -0,0 +1,77 @@
+package com.itns.springsecurityclient.migration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The MySQL migration on H2 in MySQL mode, over the tables a database baselined at V1 may have.
+class AlignIdGeneratorsMigrationTests {
+
+	private HikariDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void setUp() {
+		dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl("jdbc:h2:mem:baselined;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+		dataSource.setMaximumPoolSize(1);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table user (id bigint auto_increment primary key, email varchar(255))");
+		jdbcTemplate.execute("create table verification_token (id bigint auto_increment primary key)");
+		for (int i = 0; i < 120; i++) {
+			jdbcTemplate.update("insert into user (email) values (?)", "user" + i + "@example.com");
+		}
+		jdbcTemplate.update("insert into verification_token values (7)");
+	}
+
+	@AfterEach
+	void tearDown() {
+		dataSource.close();
+	}
+
+	@Test
+	void createsTheGeneratorTablesAboveTheIdentityIds() {
+		migrate();
+
+		assertThat(nextValue("user_seq")).isEqualTo(170);
+		assertThat(nextValue("verification_token_seq")).isEqualTo(57);
+	}
+
+	@Test
+	void movesTheGeneratorTablesLeftAtTheirFirstValue() {
+		jdbcTemplate.execute("create table user_seq (next_val bigint)");
+		jdbcTemplate.update("insert into user_seq values (1)");
+
+		migrate();
+
+		assertThat(nextValue("user_seq")).isEqualTo(170);
+	}
+
+	@Test
+	void keepsAGeneratorAlreadyPastTheIds() {
+		jdbcTemplate.execute("create table user_seq (next_val bigint)");
+		jdbcTemplate.update("insert into user_seq values (500)");
+
+		migrate();
+
+		assertThat(nextValue("user_seq")).isEqualTo(500);
+	}
+
+	private void migrate() {
+		new ResourceDatabasePopulator(new ClassPathResource("db/migration/mysql/V3__align_id_generators.sql"))
+				.execute(dataSource);
+	}
+
+	private long nextValue(String generator) {
+		// Fails if the table has more than one row.
+		return jdbcTemplate.queryForObject("select next_val from " + generator, Long.class);
+	}
+}
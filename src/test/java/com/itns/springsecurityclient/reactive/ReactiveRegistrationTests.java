@@ -0,0 +1,130 @@
+package com.itns.springsecurityclient.reactive;
+
+import com.itns.springsecurityclient.mail.MailDispatcher;
+import com.itns.springsecurityclient.model.PasswordModel;
+import com.itns.springsecurityclient.model.UserModel;
+
+import org.assertj.core.api.AbstractStringAssert;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.reactive.server.ReactiveWebServerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+// The reactive mode on Netty against an embedded database created by the Flyway migrations.
+@SpringBootTest(classes = ReactiveRegistrationApplication.class,
+		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = {
+				"spring.main.web-application-type=reactive",
+				"spring.r2dbc.url=r2dbc:h2:mem:///reactive;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+				"spring.r2dbc.username=sa",
+				"spring.flyway.url=jdbc:h2:mem:reactive;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+				"app.security.password-hashing.calibrate=false",
+				"app.security.password-hashing.strength=4"
+		})
+@ActiveProfiles("reactive")
+class ReactiveRegistrationTests {
+
+	@Autowired
+	private WebTestClient webTestClient;
+
+	@Autowired
+	private ReactiveWebServerFactory webServerFactory;
+
+	@Autowired
+	private UserRecordRepository userRecordRepository;
+
+	@Autowired
+	private VerificationTokenRecordRepository verificationTokenRecordRepository;
+
+	@SpyBean
+	private MailDispatcher mailDispatcher;
+
+	@Test
+	void registersVerifiesAndResetsThePasswordOnNetty() {
+		assertThat(webServerFactory).isInstanceOf(NettyReactiveWebServerFactory.class);
+
+		UserModel userModel = new UserModel();
+		userModel.setFirstName("Jane");
+		userModel.setEmail("Jane@Example.com");
+		userModel.setPassword("secret");
+		post("/register", userModel).isEqualTo("Success");
+
+		UserRecord user = userRecordRepository.findByEmail("jane@example.com").block();
+		assertThat(user.getPassword()).startsWith("$2a$04$");
+		String token = verificationTokenRecordRepository.findAll()
+				.filter(candidate -> candidate.getUserId().equals(user.getId()))
+				.blockFirst()
+				.getToken();
+		get("/verifyRegistration?token=" + token).isEqualTo("Utilisateur vérifié avec success");
+		get("/verifyRegistration?token=" + token).isEqualTo("Bad User");
+		assertThat(userRecordRepository.findById(user.getId()).block().isEnabled()).isTrue();
+
+		PasswordModel passwordModel = new PasswordModel();
+		passwordModel.setEmail("jane@example.com");
+		String url = webTestClient.post().uri("/resetPassword").bodyValue(passwordModel)
+				.exchange()
+				.expectBody(String.class).returnResult().getResponseBody();
+		String resetPath = url.substring(url.indexOf("/savePassword"));
+		passwordModel.setNewPassword("changed");
+		post(resetPath, passwordModel).isEqualTo("Password Reset Successfully");
+		post(resetPath, passwordModel).isEqualTo("Invalid Token");
+
+		passwordModel.setOldPassword("changed");
+		passwordModel.setNewPassword("changed-again");
+		post("/changePassword", passwordModel).isEqualTo("Password Modifié avec Success");
+		post("/changePassword", passwordModel).isEqualTo("Invalid Old Password");
+	}
+
+	@Test
+	void allocatesTheIdsOfTheUsersFromTheSequence() {
+		UserModel userModel = new UserModel();
+		userModel.setPassword("secret");
+		for (int i = 0; i < 3; i++) {
+			userModel.setEmail("user" + i + "@example.com");
+			post("/register", userModel).isEqualTo("Success");
+		}
+		assertThat(userRecordRepository.findAll().map(UserRecord::getId).collectList().block())
+				.doesNotHaveDuplicates()
+				.allSatisfy(id -> assertThat(id).isPositive());
+	}
+
+	@Test
+	void failsWithoutSavingTheUserWhileTheMailQueueIsFull() {
+		doReturn(false).when(mailDispatcher).enqueue(any());
+		UserModel userModel = new UserModel();
+		userModel.setEmail("full@example.com");
+		userModel.setPassword("secret");
+
+		webTestClient.post().uri("/register").bodyValue(userModel)
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+		verify(mailDispatcher, atLeast(2)).enqueue(any());
+		assertThat(userRecordRepository.findByEmail("full@example.com").blockOptional()).isEmpty();
+	}
+
+	private AbstractStringAssert<?> post(String uri, Object body) {
+		return assertThat(webTestClient.post().uri(uri).bodyValue(body)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(String.class).returnResult().getResponseBody());
+	}
+
+	private AbstractStringAssert<?> get(String uri) {
+		return assertThat(webTestClient.get().uri(uri)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(String.class).returnResult().getResponseBody());
+	}
+}
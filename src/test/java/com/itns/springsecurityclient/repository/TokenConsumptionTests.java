@@ -0,0 +1,113 @@
+package com.itns.springsecurityclient.repository;
+
+import com.itns.springsecurityclient.entity.PasswordResetToken;
+import com.itns.springsecurityclient.entity.User;
+import com.itns.springsecurityclient.entity.VerificationToken;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The conditional statements that consume the tokens, on the embedded database.
+@DataJpaTest
+class TokenConsumptionTests {
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private VerificationTokenRepository verificationTokenRepository;
+
+	@Autowired
+	private PasswordResetTokenRepository passwordResetTokenRepository;
+
+	private User user;
+
+	@BeforeEach
+	void setUp() {
+		user = new User();
+		user.setEmail("jane@example.com");
+		user.setPassword("old-hash");
+		user.setRole("USER");
+		user = entityManager.persistFlushFind(user);
+	}
+
+	@Test
+	void enablesTheUserOnceAndDeletesTheToken() {
+		entityManager.persist(new VerificationToken(user, "live"));
+
+		assertThat(verificationTokenRepository.findOwnerByToken("live"))
+				.extracting(TokenOwner::getUserId, TokenOwner::getEmail)
+				.containsExactly(user.getId(), "jane@example.com");
+		assertThat(userRepository.enableByVerificationToken("live", new Date())).isEqualTo(1);
+		assertThat(verificationTokenRepository.deleteByToken("live")).isEqualTo(1);
+		assertThat(reloadUser().isEnabled()).isTrue();
+
+		assertThat(userRepository.enableByVerificationToken("live", new Date())).isZero();
+		assertThat(verificationTokenRepository.deleteByToken("live")).isZero();
+		assertThat(verificationTokenRepository.findOwnerByToken("live")).isNull();
+	}
+
+	@Test
+	void leavesTheUserOfAnExpiredToken() {
+		VerificationToken expired = new VerificationToken(user, "expired");
+		expired.setExpirationTime(new Date(System.currentTimeMillis() - 1000));
+		entityManager.persist(expired);
+
+		assertThat(userRepository.enableByVerificationToken("expired", new Date())).isZero();
+		assertThat(verificationTokenRepository.deleteByToken("expired")).isEqualTo(1);
+		assertThat(reloadUser().isEnabled()).isFalse();
+	}
+
+	@Test
+	void setsThePasswordOfTheResetTokenOwner() {
+		entityManager.persist(new PasswordResetToken(user, "reset"));
+
+		assertThat(userRepository.updatePasswordByResetToken("reset", "new-hash", new Date())).isEqualTo(1);
+		assertThat(passwordResetTokenRepository.deleteByToken("reset")).isEqualTo(1);
+		assertThat(reloadUser().getPassword()).isEqualTo("new-hash");
+		assertThat(userRepository.updatePasswordByResetToken("reset", "other-hash", new Date())).isZero();
+	}
+
+	@Test
+	void changesTheUserOnlyFromTheExpectedState() {
+		assertThat(userRepository.updatePasswordIfUnchanged(user.getId(), "new-hash", "old-hash")).isEqualTo(1);
+		assertThat(userRepository.updatePasswordIfUnchanged(user.getId(), "other-hash", "old-hash")).isZero();
+		assertThat(userRepository.enableIfDisabled(user.getId())).isEqualTo(1);
+		assertThat(userRepository.enableIfDisabled(user.getId())).isZero();
+
+		User reloaded = reloadUser();
+		assertThat(reloaded.getPassword()).isEqualTo("new-hash");
+		assertThat(reloaded.isEnabled()).isTrue();
+	}
+
+	@Test
+	void keepsTheColumnsOfAStaleCopyOutOfAPasswordChange() {
+		// As cached by the UserCache before the user verified the email.
+		entityManager.detach(user);
+		User cached = user;
+		assertThat(userRepository.enableIfDisabled(cached.getId())).isEqualTo(1);
+
+		assertThat(userRepository.updatePassword(cached.getId(), "new-hash")).isEqualTo(1);
+
+		User reloaded = reloadUser();
+		assertThat(reloaded.getPassword()).isEqualTo("new-hash");
+		assertThat(reloaded.isEnabled()).isTrue();
+		assertThat(cached.isEnabled()).isFalse();
+	}
+
+	// The bulk updates bypass the persistence context.
+	private User reloadUser() {
+		entityManager.clear();
+		return entityManager.find(User.class, user.getId());
+	}
+}
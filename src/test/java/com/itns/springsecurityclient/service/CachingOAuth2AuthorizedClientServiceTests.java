@@ -0,0 +1,155 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.AuthorizedClientStoreProperties;
+import com.itns.springsecurityclient.entity.AuthorizedClientInvalidation;
+import com.itns.springsecurityclient.repository.AuthorizedClientInvalidationRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two nodes sharing the embedded database, each with its own cache.
+@DataJpaTest
+class CachingOAuth2AuthorizedClientServiceTests {
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private AuthorizedClientInvalidationRepository invalidationRepository;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private final ClientRegistration registration = ClientRegistration.withRegistrationId("google")
+			.clientId("client")
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+			.authorizationUri("https://accounts.example.com/authorize")
+			.tokenUri("https://accounts.example.com/token")
+			.build();
+
+	private final Authentication principal = new TestingAuthenticationToken("jane", null);
+
+	private JdbcTemplate jdbcTemplate;
+
+	private CachingOAuth2AuthorizedClientService nodeA;
+
+	private CachingOAuth2AuthorizedClientService nodeB;
+
+	@BeforeEach
+	void setUp() {
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		ClientRegistrationRepository registrations = new InMemoryClientRegistrationRepository(registration);
+		nodeA = node(registrations);
+		nodeB = node(registrations);
+	}
+
+	@Test
+	void dropsTheClientsChangedOnAnotherNode() {
+		nodeB.saveAuthorizedClient(client("first"), principal);
+		startPolling();
+		assertThat(accessToken(nodeA)).isEqualTo("first");
+
+		nodeB.saveAuthorizedClient(client("second"), principal);
+		assertThat(accessToken(nodeA)).isEqualTo("first");
+
+		nodeA.applyInvalidations();
+		assertThat(accessToken(nodeA)).isEqualTo("second");
+	}
+
+	@Test
+	void appliesTheInvalidationsCommittedOutOfOrder() {
+		nodeB.saveAuthorizedClient(client("first"), principal);
+		startPolling();
+		assertThat(accessToken(nodeA)).isEqualTo("first");
+
+		// The invalidation of this save commits after a poll that already read a row with a higher id.
+		nodeB.saveAuthorizedClient(client("second"), principal);
+		List<AuthorizedClientInvalidation> rows = invalidationRepository.findCreatedSince(
+				new Date(0), PageRequest.of(0, 100));
+		AuthorizedClientInvalidation late = rows.get(rows.size() - 1);
+		invalidationRepository.delete(late);
+		entityManager.flush();
+		invalidationRepository.save(new AuthorizedClientInvalidation("google", "john", "node-c"));
+		nodeA.applyInvalidations();
+		assertThat(accessToken(nodeA)).isEqualTo("first");
+
+		jdbcTemplate.update("insert into authorized_client_invalidation "
+						+ "(id, client_registration_id, principal_name, node_id, created_at) values (?, ?, ?, ?, ?)",
+				late.getId(), late.getClientRegistrationId(), late.getPrincipalName(), late.getNodeId(),
+				late.getCreatedAt());
+		nodeA.applyInvalidations();
+		assertThat(accessToken(nodeA)).isEqualTo("second");
+	}
+
+	@Test
+	void appliesAnInvalidationOnce() {
+		startPolling();
+		nodeB.saveAuthorizedClient(client("first"), principal);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		CachingOAuth2AuthorizedClientService nodeC = new CachingOAuth2AuthorizedClientService(jdbcTemplate,
+				new InMemoryClientRegistrationRepository(registration), invalidationRepository,
+				new TransactionTemplate(transactionManager), new AuthorizedClientStoreProperties(), meterRegistry);
+		nodeC.applyInvalidations();
+
+		nodeB.saveAuthorizedClient(client("second"), principal);
+		nodeC.applyInvalidations();
+		nodeC.applyInvalidations();
+
+		assertThat(meterRegistry.counter("oauth2.authorizedClients.invalidations").count()).isEqualTo(1);
+	}
+
+	private CachingOAuth2AuthorizedClientService node(ClientRegistrationRepository registrations) {
+		return new CachingOAuth2AuthorizedClientService(jdbcTemplate, registrations, invalidationRepository,
+				new TransactionTemplate(transactionManager), new AuthorizedClientStoreProperties(),
+				new SimpleMeterRegistry());
+	}
+
+	private void startPolling() {
+		nodeA.applyInvalidations();
+		nodeB.applyInvalidations();
+	}
+
+	private OAuth2AuthorizedClient client(String accessToken) {
+		Instant now = Instant.now();
+		return new OAuth2AuthorizedClient(registration, principal.getName(), new OAuth2AccessToken(
+				OAuth2AccessToken.TokenType.BEARER, accessToken, now, now.plus(Duration.ofHours(1))));
+	}
+
+	private String accessToken(CachingOAuth2AuthorizedClientService node) {
+		OAuth2AuthorizedClient client = node.loadAuthorizedClient("google", principal.getName());
+		return client.getAccessToken().getTokenValue();
+	}
+}
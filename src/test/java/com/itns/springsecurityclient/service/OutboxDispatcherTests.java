@@ -0,0 +1,153 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.OutboxProperties;
+import com.itns.springsecurityclient.entity.OutboxEvent;
+import com.itns.springsecurityclient.event.OutboxEventDeferredException;
+import com.itns.springsecurityclient.event.OutboxEventHandler;
+import com.itns.springsecurityclient.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The outcomes of a poll over a mocked repository that lets it claim a single event.
+class OutboxDispatcherTests {
+
+	private OutboxEventRepository repository;
+
+	private OutboxEventHandler handler;
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private OutboxDispatcher dispatcher;
+
+	private OutboxEvent event;
+
+	@BeforeEach
+	void setUp() {
+		repository = mock(OutboxEventRepository.class);
+		handler = mock(OutboxEventHandler.class);
+		when(handler.getEventType()).thenReturn("Mail");
+		meterRegistry = new SimpleMeterRegistry();
+		dispatcher = new OutboxDispatcher(repository,
+				new TransactionTemplate(mock(PlatformTransactionManager.class)),
+				new OutboxProperties(), List.of(handler), meterRegistry);
+
+		event = new OutboxEvent();
+		event.setId(1L);
+		event.setEventType("Mail");
+		event.setPayload("{}");
+		event.setCreatedAt(new Date());
+		event.setNextAttemptAt(new Date());
+		when(repository.findDueIds(eq(OutboxEvent.Status.PENDING), any(Date.class), any(Pageable.class)))
+				.thenReturn(List.of(1L));
+		when(repository.findByClaimedBy(anyString())).thenAnswer(invocation -> {
+			event.setClaimedBy(invocation.getArgument(0));
+			return List.of(event);
+		});
+		when(repository.findByIdAndClaimedBy(eq(1L), anyString())).thenReturn(Optional.of(event));
+	}
+
+	@Test
+	void deletesTheHandledEvents() throws Exception {
+		dispatcher.dispatch();
+
+		verify(handler).handle("{}");
+		verify(repository).claim(eq(List.of(1L)), eq(event.getClaimedBy()), any(Date.class),
+				eq(OutboxEvent.Status.PENDING), any(Date.class));
+		verify(repository).deleteClaimed(List.of(1L), event.getClaimedBy());
+		assertThat(meterRegistry.counter("outbox.dispatched", "type", "Mail").count()).isEqualTo(1);
+	}
+
+	@Test
+	void handlesTheEventsOutsideTheTransactions() throws Exception {
+		PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+		dispatcher = new OutboxDispatcher(repository, new TransactionTemplate(transactionManager),
+				new OutboxProperties(), List.of(handler), meterRegistry);
+		InOrder inOrder = inOrder(transactionManager, handler);
+
+		dispatcher.dispatch();
+
+		// The claim is committed before the send, the deletion is a transaction of its own.
+		inOrder.verify(transactionManager).commit(any());
+		inOrder.verify(handler).handle("{}");
+		inOrder.verify(transactionManager).getTransaction(any());
+		inOrder.verify(transactionManager).commit(any());
+	}
+
+	@Test
+	void claimsNothingWhenNoEventIsDue() throws Exception {
+		when(repository.findDueIds(eq(OutboxEvent.Status.PENDING), any(Date.class), any(Pageable.class)))
+				.thenReturn(List.of());
+
+		dispatcher.dispatch();
+
+		verify(repository, never()).claim(any(), anyString(), any(), any(), any());
+		verify(handler, never()).handle(anyString());
+	}
+
+	@Test
+	void keepsTheFailedEventsForARetry() throws Exception {
+		doThrowOnHandle(new IllegalStateException("SMTP down"));
+
+		dispatcher.dispatch();
+
+		verify(repository, never()).deleteClaimed(any(), anyString());
+		verify(repository).save(event);
+		assertThat(event.getClaimedBy()).isNull();
+		assertThat(event.getAttempts()).isEqualTo(1);
+		assertThat(event.getStatus()).isEqualTo(OutboxEvent.Status.PENDING);
+		assertThat(event.getLastError()).isEqualTo("SMTP down");
+		assertThat(event.getNextAttemptAt()).isAfter(new Date());
+	}
+
+	@Test
+	void givesUpAfterTheMaximumNumberOfAttempts() throws Exception {
+		doThrowOnHandle(new IllegalStateException("SMTP down"));
+		event.setAttempts(new OutboxProperties().getMaxAttempts() - 1);
+
+		dispatcher.dispatch();
+
+		assertThat(event.getStatus()).isEqualTo(OutboxEvent.Status.FAILED);
+	}
+
+	@Test
+	void defersTheEventsWithoutCountingAnAttempt() throws Exception {
+		doThrowOnHandle(new OutboxEventDeferredException("Rate limit", Duration.ofSeconds(30)));
+
+		dispatcher.dispatch();
+
+		verify(repository, never()).deleteClaimed(any(), anyString());
+		verify(repository).save(event);
+		assertThat(event.getClaimedBy()).isNull();
+		assertThat(event.getAttempts()).isZero();
+		assertThat(event.getLastError()).isNull();
+		assertThat(event.getNextAttemptAt()).isAfter(new Date(System.currentTimeMillis() + 20_000));
+		assertThat(meterRegistry.counter("outbox.deferred", "type", "Mail").count()).isEqualTo(1);
+	}
+
+	private void doThrowOnHandle(RuntimeException error) throws Exception {
+		doThrow(error).when(handler).handle("{}");
+	}
+}
@@ -0,0 +1,112 @@
+package com.itns.springsecurityclient.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The lease and the store are mocks: the nodes are told apart by who holds the lease.
+class RefreshAheadOAuth2AuthorizedClientManagerTests {
+
+	private final ClientRegistration registration = ClientRegistration.withRegistrationId("google")
+			.clientId("client")
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+			.authorizationUri("https://accounts.example.com/authorize")
+			.tokenUri("https://accounts.example.com/token")
+			.build();
+
+	private OAuth2AuthorizedClientManager requestManager;
+
+	private OAuth2AuthorizedClientManager backgroundManager;
+
+	private CachingOAuth2AuthorizedClientService authorizedClientService;
+
+	private TokenRefreshLease refreshLease;
+
+	private RefreshAheadOAuth2AuthorizedClientManager manager;
+
+	@BeforeEach
+	void setUp() {
+		requestManager = mock(OAuth2AuthorizedClientManager.class);
+		backgroundManager = mock(OAuth2AuthorizedClientManager.class);
+		authorizedClientService = mock(CachingOAuth2AuthorizedClientService.class);
+		refreshLease = mock(TokenRefreshLease.class);
+		manager = new RefreshAheadOAuth2AuthorizedClientManager(requestManager, backgroundManager,
+				authorizedClientService, refreshLease, Duration.ofSeconds(60), new SimpleMeterRegistry());
+	}
+
+	@Test
+	void refreshesFromTheStoreWhileHoldingTheLease() {
+		OAuth2AuthorizedClient refreshed = client("refreshed", Duration.ofHours(1));
+		when(authorizedClientService.loadAuthorizedClient("google", "jane"))
+				.thenReturn(client("expiring", Duration.ofSeconds(10)));
+		when(refreshLease.claim("google", "jane")).thenReturn("holder-1");
+		when(backgroundManager.authorize(any())).thenReturn(refreshed);
+
+		assertThat(manager.refreshInBackground("google", "jane")).isSameAs(refreshed);
+
+		InOrder inOrder = inOrder(refreshLease, authorizedClientService, backgroundManager);
+		inOrder.verify(refreshLease).claim("google", "jane");
+		inOrder.verify(authorizedClientService).evictAuthorizedClient("google", "jane");
+		inOrder.verify(backgroundManager).authorize(argThat(request -> request.getAuthorizedClient() == null));
+		inOrder.verify(refreshLease).release("google", "jane", "holder-1");
+	}
+
+	@Test
+	void leavesTheTokenToTheHolderOfTheLeaseInTheBackground() {
+		when(authorizedClientService.loadAuthorizedClient("google", "jane"))
+				.thenReturn(client("expiring", Duration.ofSeconds(10)));
+
+		manager.refreshInBackground("google", "jane");
+
+		verify(backgroundManager, never()).authorize(any());
+		verify(refreshLease, never()).release(any(), any(), any());
+	}
+
+	@Test
+	void waitsForTheRefreshOfAnotherNodeOnTheRequestPath() {
+		OAuth2AuthorizedClient expiring = client("expiring", Duration.ofSeconds(10));
+		OAuth2AuthorizedClient refreshed = client("refreshed", Duration.ofHours(1));
+		// Read by the request, then while the other node holds the lease, then after its refresh.
+		when(authorizedClientService.loadAuthorizedClient("google", "jane"))
+				.thenReturn(expiring, expiring, refreshed);
+		when(requestManager.authorize(any())).thenReturn(refreshed);
+
+		OAuth2AuthorizedClient authorized = manager.authorize(OAuth2AuthorizeRequest.withAuthorizedClient(expiring)
+				.principal("jane")
+				.build());
+
+		assertThat(authorized).isSameAs(refreshed);
+		// Sent without the expiring client, so the manager reads the one the other node stored.
+		verify(requestManager).authorize(argThat(request -> request.getAuthorizedClient() == null));
+		verify(refreshLease, never()).release(any(), any(), any());
+	}
+
+	private OAuth2AuthorizedClient client(String accessToken, Duration expiresIn) {
+		Instant now = Instant.now();
+		return new OAuth2AuthorizedClient(registration, "jane",
+				new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, accessToken, now, now.plus(expiresIn)),
+				new OAuth2RefreshToken("refresh-" + accessToken, now));
+	}
+}
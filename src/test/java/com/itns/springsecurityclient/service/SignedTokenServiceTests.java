@@ -0,0 +1,138 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.TokenProperties;
+import com.itns.springsecurityclient.entity.User;
+import com.itns.springsecurityclient.service.SignedTokenService.Purpose;
+import com.itns.springsecurityclient.service.SignedTokenService.SignedToken;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+// The tokens are signed and checked on fixed clocks, with the default lifetime of 10 minutes.
+class SignedTokenServiceTests {
+
+	private static final Instant NOW = Instant.parse("2026-01-01T10:00:00Z");
+
+	private static final String OLD_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+	private static final String NEW_KEY = Base64.getEncoder()
+			.encodeToString("0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+
+	private TokenProperties properties;
+
+	private User user;
+
+	@BeforeEach
+	void setUp() {
+		properties = new TokenProperties();
+		properties.getSignedLinks().setEnabled(true);
+		properties.getSignedLinks().setActiveKey("k1");
+		properties.getSignedLinks().getKeys().put("k1", OLD_KEY);
+		user = new User();
+		user.setId(42L);
+		user.setPassword("$2a$04$hash");
+	}
+
+	@Test
+	void verifiesTheTokenItSigned() {
+		SignedTokenService service = service(NOW);
+
+		String token = service.sign(Purpose.VERIFICATION, user);
+		SignedToken signedToken = service.verify(token, Purpose.VERIFICATION);
+
+		assertThat(service.isSigned(token)).isTrue();
+		assertThat(signedToken.getKeyId()).isEqualTo("k1");
+		assertThat(signedToken.getUserId()).isEqualTo(42L);
+		assertThat(signedToken.getExpiresAt()).isEqualTo(NOW.plus(Duration.ofMinutes(10)));
+		assertThat(service.isExpired(signedToken)).isFalse();
+		assertThat(service.matches(signedToken, user)).isTrue();
+	}
+
+	@Test
+	void rejectsATamperedToken() {
+		SignedTokenService service = service(NOW);
+		String token = service.sign(Purpose.VERIFICATION, user);
+		String[] parts = token.split("\\.");
+		byte[] payload = Base64.getUrlDecoder().decode(parts[1]);
+		// The last byte of the user id.
+		payload[9]++;
+		String tampered = parts[0] + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(payload)
+				+ "." + parts[2];
+
+		assertThat(service.verify(tampered, Purpose.VERIFICATION)).isNull();
+		assertThat(service.verify(token, Purpose.PASSWORD_RESET)).isNull();
+		assertThat(service.verify("k2." + parts[1] + "." + parts[2], Purpose.VERIFICATION)).isNull();
+		assertThat(service.verify(token + ".x", Purpose.VERIFICATION)).isNull();
+		assertThat(service.verify("k1.%%%." + parts[2], Purpose.VERIFICATION)).isNull();
+	}
+
+	@Test
+	void expiresTheTokenAfterItsLifetime() {
+		String token = service(NOW).sign(Purpose.PASSWORD_RESET, user);
+
+		SignedTokenService justBefore = service(NOW.plus(Duration.ofMinutes(10)).minusSeconds(1));
+		assertThat(justBefore.isExpired(justBefore.verify(token, Purpose.PASSWORD_RESET))).isFalse();
+		SignedTokenService after = service(NOW.plus(Duration.ofMinutes(10)));
+		assertThat(after.isExpired(after.verify(token, Purpose.PASSWORD_RESET))).isTrue();
+	}
+
+	@Test
+	void acceptsTheTokensOfARetiredKeyUntilItIsRemoved() {
+		String oldToken = service(NOW).sign(Purpose.VERIFICATION, user);
+		properties.getSignedLinks().getKeys().put("k2", NEW_KEY);
+		properties.getSignedLinks().setActiveKey("k2");
+		SignedTokenService rotated = service(NOW);
+
+		String newToken = rotated.sign(Purpose.VERIFICATION, user);
+		assertThat(newToken).startsWith("k2.");
+		assertThat(rotated.verify(newToken, Purpose.VERIFICATION)).isNotNull();
+		SignedToken old = rotated.verify(oldToken, Purpose.VERIFICATION);
+		assertThat(old.getKeyId()).isEqualTo("k1");
+		assertThat(rotated.matches(old, user)).isTrue();
+
+		properties.getSignedLinks().setKeys(Map.of("k2", NEW_KEY));
+		assertThat(service(NOW).verify(oldToken, Purpose.VERIFICATION)).isNull();
+	}
+
+	@Test
+	void stopsMatchingOnceTheLinkWasUsed() {
+		SignedTokenService service = service(NOW);
+		SignedToken verification = service.verify(service.sign(Purpose.VERIFICATION, user), Purpose.VERIFICATION);
+		SignedToken reset = service.verify(service.sign(Purpose.PASSWORD_RESET, user), Purpose.PASSWORD_RESET);
+
+		user.setEnabled(true);
+		assertThat(service.matches(verification, user)).isFalse();
+		assertThat(service.matches(reset, user)).isTrue();
+
+		user.setPassword("$2a$04$other");
+		assertThat(service.matches(reset, user)).isFalse();
+
+		User other = new User();
+		other.setId(43L);
+		other.setPassword("$2a$04$other");
+		other.setEnabled(true);
+		assertThat(service.matches(reset, other)).isFalse();
+	}
+
+	@Test
+	void refusesAnActiveKeyThatIsNotListed() {
+		properties.getSignedLinks().setActiveKey("k2");
+
+		assertThatIllegalArgumentException().isThrownBy(() -> service(NOW));
+	}
+
+	private SignedTokenService service(Instant now) {
+		return new SignedTokenService(properties, Clock.fixed(now, ZoneOffset.UTC));
+	}
+}
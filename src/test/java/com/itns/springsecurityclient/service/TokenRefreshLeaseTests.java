@@ -0,0 +1,78 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.TokenRefreshProperties;
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenRefreshLeaseTests {
+
+	private HikariDataSource dataSource;
+
+	private TokenRefreshProperties properties;
+
+	private TokenRefreshLease nodeA;
+
+	private TokenRefreshLease nodeB;
+
+	@BeforeEach
+	void setUp() {
+		dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl("jdbc:h2:mem:lease;DB_CLOSE_DELAY=-1");
+		dataSource.setMaximumPoolSize(2);
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+		new JdbcTemplate(dataSource).update("delete from oauth2_token_refresh_lease");
+		properties = new TokenRefreshProperties();
+		nodeA = lease();
+		nodeB = lease();
+	}
+
+	@AfterEach
+	void tearDown() {
+		dataSource.close();
+	}
+
+	@Test
+	void grantsTheLeaseToOneHolderAtATime() {
+		String holder = nodeA.claim("google", "jane");
+
+		assertThat(holder).isNotNull();
+		assertThat(nodeB.claim("google", "jane")).isNull();
+		assertThat(nodeA.claim("google", "jane")).isNull();
+		assertThat(nodeB.claim("google", "john")).isNotNull();
+
+		nodeA.release("google", "jane", holder);
+		assertThat(nodeB.claim("google", "jane")).isNotNull();
+	}
+
+	@Test
+	void takesOverTheExpiredLeaseOfANodeThatDied() throws InterruptedException {
+		properties.setLease(Duration.ofMillis(10));
+		String expired = nodeA.claim("google", "jane");
+		Thread.sleep(50);
+		properties.setLease(Duration.ofSeconds(30));
+
+		String holder = nodeB.claim("google", "jane");
+		assertThat(holder).isNotNull();
+
+		// The late release of the first holder leaves the new lease alone.
+		nodeA.release("google", "jane", expired);
+		assertThat(nodeA.claim("google", "jane")).isNull();
+	}
+
+	private TokenRefreshLease lease() {
+		return new TokenRefreshLease(new JdbcTemplate(dataSource),
+				new TransactionTemplate(new DataSourceTransactionManager(dataSource)), properties);
+	}
+}
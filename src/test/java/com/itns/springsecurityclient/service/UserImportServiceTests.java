@@ -0,0 +1,163 @@
+package com.itns.springsecurityclient.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itns.springsecurityclient.config.DataSourceRoutingProperties;
+import com.itns.springsecurityclient.config.PasswordHashingProperties;
+import com.itns.springsecurityclient.config.TokenProperties;
+import com.itns.springsecurityclient.config.UserCacheProperties;
+import com.itns.springsecurityclient.config.UserImportProperties;
+import com.itns.springsecurityclient.datasource.ReadYourWrites;
+import com.itns.springsecurityclient.entity.OutboxEvent;
+import com.itns.springsecurityclient.entity.User;
+import com.itns.springsecurityclient.entity.VerificationToken;
+import com.itns.springsecurityclient.mail.MailService;
+import com.itns.springsecurityclient.mail.MailTemplates;
+import com.itns.springsecurityclient.mail.OutgoingMail;
+import com.itns.springsecurityclient.model.UserImportResult;
+import com.itns.springsecurityclient.repository.OutboxEventRepository;
+import com.itns.springsecurityclient.repository.UserRepository;
+import com.itns.springsecurityclient.repository.VerificationTokenRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The import on the embedded database, with the verification emails stored in the outbox.
+// The signing key is there for the test that enables the signed links.
+@DataJpaTest(properties = {
+		"app.users.import.batch-size=2",
+		"app.tokens.signed-links.active-key=k1",
+		"app.tokens.signed-links.keys.k1=MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY="
+})
+@Import({UserImportService.class, UserServiceImpl.class, MailService.class, MailTemplates.class, OutboxService.class,
+		UserCache.class, PasswordHashingService.class, SecureRandomTokenGenerator.class, SignedTokenService.class,
+		TokenCache.class, ReadYourWrites.class})
+class UserImportServiceTests {
+
+	@Autowired
+	private UserImportService userImportService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private VerificationTokenRepository verificationTokenRepository;
+
+	@Autowired
+	private OutboxEventRepository outboxEventRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private TokenProperties tokenProperties;
+
+	@Autowired
+	private SignedTokenService signedTokenService;
+
+	@Test
+	void importsTheUsersWithAVerificationEmailEach() throws Exception {
+		String csv = "firstName,lastName,email,password\n"
+				+ "Jane,Doe,Jane@Example.com,secret\n"
+				+ "John,Doe,john@example.com,secret\n"
+				+ "Ann,Lee,ann@example.com,secret\n";
+
+		UserImportResult result = userImportService.importCsv(body(csv), "http://localhost:8080");
+
+		assertThat(result.getImported()).isEqualTo(3);
+		User jane = userRepository.findByEmail("jane@example.com");
+		assertThat(jane.isEnabled()).isFalse();
+		assertThat(jane.getPassword()).startsWith("$2a$04$");
+		List<VerificationToken> tokens = verificationTokenRepository.findAll();
+		assertThat(tokens).hasSize(3);
+
+		List<OutboxEvent> events = outboxEventRepository.findAll();
+		assertThat(events).hasSize(3);
+		assertThat(events).extracting(OutboxEvent::getEventType).containsOnly(OutgoingMail.EVENT_TYPE);
+		OutgoingMail mail = objectMapper.readValue(events.get(0).getPayload(), OutgoingMail.class);
+		assertThat(tokens).anySatisfy(token -> {
+			assertThat(token.getUser().getEmail()).isEqualTo(mail.getTo());
+			assertThat(mail.getBody()).contains("http://localhost:8080/verifyRegistration?token=" + token.getToken());
+		});
+	}
+
+	@Test
+	void skipsTheInvalidAndExistingUsers() throws Exception {
+		userImportService.importCsv(body("Jane,Doe,jane@example.com,secret\n"), "http://localhost:8080");
+		String json = "[{\"email\":\"JANE@example.com\",\"password\":\"other\"},"
+				+ "{\"email\":\"john@example.com\"},"
+				+ "{\"email\":\"ann@example.com\",\"password\":\"secret\"}]";
+
+		UserImportResult result = userImportService.importJson(body(json), "http://localhost:8080");
+
+		assertThat(result.getImported()).isEqualTo(1);
+		assertThat(result.getSkippedExisting()).isEqualTo(1);
+		assertThat(result.getSkippedInvalid()).isEqualTo(1);
+		assertThat(outboxEventRepository.count()).isEqualTo(2);
+	}
+
+	@Test
+	void sendsASignedLinkWhenTheyAreEnabled() throws Exception {
+		tokenProperties.getSignedLinks().setEnabled(true);
+		try {
+			userImportService.importCsv(body("Jane,Doe,jane@example.com,secret\n"), "http://localhost:8080");
+		} finally {
+			tokenProperties.getSignedLinks().setEnabled(false);
+		}
+
+		assertThat(verificationTokenRepository.count()).isZero();
+		OutgoingMail mail = objectMapper.readValue(outboxEventRepository.findAll().get(0).getPayload(),
+				OutgoingMail.class);
+		String token = mail.getBody().replaceAll("(?s).*/verifyRegistration\\?token=(\\S+).*", "$1");
+		SignedTokenService.SignedToken signedToken = signedTokenService.verify(token,
+				SignedTokenService.Purpose.VERIFICATION);
+		assertThat(signedToken).isNotNull();
+		assertThat(signedTokenService.matches(signedToken, userRepository.findByEmail("jane@example.com"))).isTrue();
+	}
+
+	private static ByteArrayInputStream body(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@TestConfiguration
+	@EnableConfigurationProperties({UserImportProperties.class, UserCacheProperties.class,
+			PasswordHashingProperties.class, TokenProperties.class, DataSourceRoutingProperties.class})
+	static class Configuration {
+
+		@Bean
+		PasswordEncoder passwordEncoder() {
+			return new BCryptPasswordEncoder(4);
+		}
+
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+
+		@Bean
+		ObjectMapper objectMapper() {
+			return new ObjectMapper();
+		}
+
+		@Bean
+		SyncTaskExecutor applicationTaskExecutor() {
+			return new SyncTaskExecutor();
+		}
+	}
+}
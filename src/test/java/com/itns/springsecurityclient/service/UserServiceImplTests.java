@@ -0,0 +1,226 @@
+package com.itns.springsecurityclient.service;
+
+import com.itns.springsecurityclient.config.DataSourceRoutingProperties;
+import com.itns.springsecurityclient.config.TokenProperties;
+import com.itns.springsecurityclient.datasource.ReadYourWrites;
+import com.itns.springsecurityclient.entity.User;
+import com.itns.springsecurityclient.repository.PasswordResetTokenRepository;
+import com.itns.springsecurityclient.repository.TokenOwner;
+import com.itns.springsecurityclient.repository.UserRepository;
+import com.itns.springsecurityclient.repository.VerificationTokenRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// The outcomes of consuming a stored token and of changing a password, from the row counts of mocked
+// repositories. The statements themselves are covered by TokenConsumptionTests.
+@ExtendWith(MockitoExtension.class)
+class UserServiceImplTests {
+
+	private static final TokenOwner OWNER = new TokenOwner(7L, "jane@example.com",
+			new Date(System.currentTimeMillis() + 60_000));
+
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+	private final SimpleTransactionStatus transaction = new SimpleTransactionStatus();
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private VerificationTokenRepository verificationTokenRepository;
+
+	@Mock
+	private PasswordResetTokenRepository passwordResetTokenRepository;
+
+	@Mock
+	private UserCache userCache;
+
+	@Mock
+	private PasswordHashingService passwordHashingService;
+
+	@Spy
+	private TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+	@Spy
+	private TokenCache tokenCache = new TokenCache(new TokenProperties(), new SimpleMeterRegistry());
+
+	@Spy
+	private SignedTokenService signedTokenService = new SignedTokenService(new TokenProperties());
+
+	@Spy
+	private ReadYourWrites readYourWrites = new ReadYourWrites(new DataSourceRoutingProperties());
+
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Spy
+	private SyncTaskExecutor applicationTaskExecutor = new SyncTaskExecutor();
+
+	@InjectMocks
+	private UserServiceImpl userService;
+
+	@BeforeEach
+	void setUp() {
+		lenient().when(transactionManager.getTransaction(any())).thenReturn(transaction);
+	}
+
+	@Test
+	void enablesTheOwnerOfAValidToken() {
+		when(verificationTokenRepository.findOwnerByToken("token")).thenReturn(OWNER);
+		when(userRepository.enableByVerificationToken(eq("token"), any(Date.class))).thenReturn(1);
+		when(verificationTokenRepository.deleteByToken("token")).thenReturn(1);
+
+		assertThat(userService.validateVerificationToken("token")).isEqualTo(TokenValidationResult.VALID);
+
+		verify(transactionManager).commit(transaction);
+		assertThat(transaction.isRollbackOnly()).isFalse();
+		verify(userCache).evict("jane@example.com");
+		assertThat(meterRegistry.counter("tokens.validation", "type", "verification", "outcome", "valid").count())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void deletesAnExpiredTokenAndLeavesItsOwner() {
+		when(verificationTokenRepository.findOwnerByToken("token")).thenReturn(OWNER);
+		when(userRepository.enableByVerificationToken(eq("token"), any(Date.class))).thenReturn(0);
+		when(verificationTokenRepository.deleteByToken("token")).thenReturn(1);
+
+		assertThat(userService.validateVerificationToken("token")).isEqualTo(TokenValidationResult.EXPIRED);
+
+		assertThat(transaction.isRollbackOnly()).isFalse();
+		verify(userCache, never()).evict(anyString());
+	}
+
+	@Test
+	void turnsAnUnknownTokenAwayWithoutATransaction() {
+		assertThat(userService.validateVerificationToken("unknown")).isEqualTo(TokenValidationResult.INVALID);
+
+		verifyNoInteractions(transactionManager, userRepository, userCache);
+		verify(verificationTokenRepository, never()).deleteByToken(anyString());
+	}
+
+	@Test
+	void rollsBackTheSecondUseOfAToken() {
+		when(verificationTokenRepository.findOwnerByToken("token")).thenReturn(OWNER);
+		// A concurrent request deleted the token between the lookup and the delete.
+		when(userRepository.enableByVerificationToken(eq("token"), any(Date.class))).thenReturn(1);
+		when(verificationTokenRepository.deleteByToken("token")).thenReturn(0);
+
+		assertThat(userService.validateVerificationToken("token")).isEqualTo(TokenValidationResult.INVALID);
+
+		assertThat(transaction.isRollbackOnly()).isTrue();
+		verify(userCache, never()).evict(anyString());
+	}
+
+	@Test
+	void rollsBackTheSecondUseOfAResetToken() {
+		when(passwordResetTokenRepository.findOwnerByToken("reset")).thenReturn(OWNER);
+		when(passwordHashingService.encode("new")).thenReturn("new-hash");
+		when(userRepository.updatePasswordByResetToken(eq("reset"), eq("new-hash"), any(Date.class))).thenReturn(1);
+		when(passwordResetTokenRepository.deleteByToken("reset")).thenReturn(0);
+
+		assertThat(userService.resetPassword("reset", "new")).isEqualTo(TokenValidationResult.INVALID);
+
+		assertThat(transaction.isRollbackOnly()).isTrue();
+		verify(userCache, never()).evict(anyString());
+	}
+
+	@Test
+	void hashesNothingForAnExpiredResetToken() {
+		when(passwordResetTokenRepository.findOwnerByToken("reset"))
+				.thenReturn(new TokenOwner(7L, "jane@example.com", new Date(System.currentTimeMillis() - 1000)));
+
+		assertThat(userService.resetPassword("reset", "new")).isEqualTo(TokenValidationResult.EXPIRED);
+
+		verify(passwordResetTokenRepository).deleteByToken("reset");
+		verifyNoInteractions(passwordHashingService, userRepository);
+	}
+
+	@Test
+	void checksTheOldPasswordAgainstTheCommittedHashRatherThanTheCachedOne() {
+		User cached = cachedUser("old-hash");
+		// A reset on another node replaced the hash after the user was cached.
+		when(userRepository.findPasswordById(7L)).thenReturn("reset-hash");
+		when(passwordHashingService.matches("old", "reset-hash")).thenReturn(false);
+
+		assertThat(userService.changePassword(cached, "old", "new")).isFalse();
+
+		verify(passwordHashingService, never()).encode(anyString());
+		verify(userRepository, never()).updatePasswordIfUnchanged(any(), anyString(), anyString());
+		verify(userCache, never()).evict(anyString());
+	}
+
+	@Test
+	void changesThePasswordOnlyIfItIsStillTheCheckedOne() {
+		User cached = cachedUser("old-hash");
+		when(userRepository.findPasswordById(7L)).thenReturn("old-hash");
+		when(passwordHashingService.matches("old", "old-hash")).thenReturn(true);
+		when(passwordHashingService.encode("new")).thenReturn("new-hash");
+		// A concurrent change or reset committed between the check and the update.
+		when(userRepository.updatePasswordIfUnchanged(7L, "new-hash", "old-hash")).thenReturn(0);
+
+		assertThat(userService.changePassword(cached, "old", "new")).isFalse();
+		verify(userCache, never()).evict(anyString());
+
+		when(userRepository.updatePasswordIfUnchanged(7L, "new-hash", "old-hash")).thenReturn(1);
+
+		assertThat(userService.changePassword(cached, "old", "new")).isTrue();
+		verify(userCache).evict("jane@example.com");
+	}
+
+	@Test
+	void updatesThePasswordOffTheHashingPool() {
+		User cached = cachedUser("old-hash");
+		when(userRepository.findPasswordById(7L)).thenReturn("old-hash");
+		when(passwordHashingService.matchesAsync("old", "old-hash")).thenReturn(CompletableFuture.completedFuture(true));
+		when(passwordHashingService.encodeAsync("new")).thenReturn(CompletableFuture.completedFuture("new-hash"));
+		when(userRepository.updatePasswordIfUnchanged(7L, "new-hash", "old-hash")).thenReturn(1);
+
+		assertThat(userService.changePasswordAsync(cached, "old", "new").join()).isTrue();
+
+		verify(applicationTaskExecutor).execute(any());
+	}
+
+	@Test
+	void changesNoPasswordForAnUnknownEmail() {
+		assertThat(userService.changePassword(null, "old", "new")).isFalse();
+		assertThat(userService.changePasswordAsync(null, "old", "new").join()).isFalse();
+
+		verifyNoInteractions(userRepository, passwordHashingService, userCache);
+	}
+
+	private static User cachedUser(String password) {
+		User user = new User();
+		user.setId(7L);
+		user.setEmail("jane@example.com");
+		user.setPassword(password);
+		return user;
+	}
+}